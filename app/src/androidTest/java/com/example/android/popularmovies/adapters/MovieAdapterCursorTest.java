@@ -0,0 +1,227 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.android.popularmovies.adapters;
+
+import android.database.MatrixCursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.View;
+
+import com.example.android.popularmovies.MainActivity;
+import com.example.android.popularmovies.models.Movie;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the cursor mode of {@link MovieAdapter}: the item count follows the cursor, a replaced
+ * cursor is closed, switching back to an array releases the cursor and a single changed
+ * favorite notifies only its item, without searching the cursors. The heap used by 10 and 5000
+ * stored movies is logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MovieAdapterCursorTest {
+
+    private static final String LOG_TAG = MovieAdapterCursorTest.class.getSimpleName();
+
+    private static final int[] FAVORITE_COUNTS = {10, 5000};
+
+    private MovieAdapter mAdapter;
+
+
+    @Before
+    public void setUp() {
+        mAdapter = new MovieAdapter(InstrumentationRegistry.getTargetContext(),
+                new MovieAdapter.MovieAdapterOnClickHandler() {
+                    @Override
+                    public void onClick(Movie movie, View view) {
+                    }
+                });
+    }
+
+    @Test
+    public void itemCountFollowsCursor() {
+        for (int count : FAVORITE_COUNTS) {
+            Runtime runtime = Runtime.getRuntime();
+            runtime.gc();
+            long usedBefore = runtime.totalMemory() - runtime.freeMemory();
+
+            mAdapter.setMovieCursor(createCursor(count));
+
+            runtime.gc();
+            long usedAfter = runtime.totalMemory() - runtime.freeMemory();
+            assertEquals(count, mAdapter.getItemCount());
+
+            Log.i(LOG_TAG, String.format(Locale.US, "%d favorites: %d KB heap",
+                    count, (usedAfter - usedBefore) / 1024));
+        }
+    }
+
+    @Test
+    public void replacedCursorIsClosed() {
+        MatrixCursor first = createCursor(10);
+        MatrixCursor second = createCursor(20);
+
+        mAdapter.setMovieCursor(first);
+        mAdapter.setMovieCursor(second);
+
+        assertTrue(first.isClosed());
+        assertFalse(second.isClosed());
+        assertEquals(20, mAdapter.getItemCount());
+    }
+
+    @Test
+    public void movieArrayReleasesCursor() {
+        MatrixCursor cursor = createCursor(10);
+
+        mAdapter.setMovieCursor(cursor);
+        mAdapter.setMovieData(new Movie[]{new Movie(1, "/1.jpg", null, null, 0)});
+
+        assertTrue(cursor.isClosed());
+        assertEquals(1, mAdapter.getItemCount());
+    }
+
+    @Test
+    public void addedFavoriteInsertsOneItem() {
+        RecordingObserver observer = new RecordingObserver();
+        mAdapter.setMovieCursor(createCursor(10));
+        mAdapter.registerAdapterDataObserver(observer);
+
+        mAdapter.updateMovieCursor(createCursor(11), 10, 10);
+
+        assertEquals("inserted 10 1", observer.mEvents.toString().trim());
+    }
+
+    @Test
+    public void removedFavoriteRemovesOneItem() {
+        final RecordingObserver observer = new RecordingObserver();
+        mAdapter.setMovieCursor(createCursor(10));
+
+        //The old position is taken from the holder bound to the movie
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                bindInRecyclerView(mAdapter);
+                mAdapter.registerAdapterDataObserver(observer);
+                mAdapter.updateMovieCursor(createCursorWithout(10, 4), 4, -1);
+            }
+        });
+
+        assertEquals("removed 4 1", observer.mEvents.toString().trim());
+        assertEquals(9, mAdapter.getItemCount());
+    }
+
+    @Test
+    public void removedUnboundFavoriteChangesAll() {
+        RecordingObserver observer = new RecordingObserver();
+        mAdapter.setMovieCursor(createCursor(10));
+        mAdapter.registerAdapterDataObserver(observer);
+
+        mAdapter.updateMovieCursor(createCursorWithout(10, 4), 4, -1);
+
+        assertEquals("changed", observer.mEvents.toString().trim());
+        assertEquals(9, mAdapter.getItemCount());
+    }
+
+    @Test
+    public void unknownMovieChangesNothing() {
+        RecordingObserver observer = new RecordingObserver();
+        mAdapter.setMovieCursor(createCursor(10));
+        mAdapter.registerAdapterDataObserver(observer);
+
+        mAdapter.updateMovieCursor(createCursor(10), 4711, -1);
+
+        assertEquals("", observer.mEvents.toString());
+    }
+
+    private static MatrixCursor createCursor(int count) {
+        MatrixCursor cursor = new MatrixCursor(MainActivity.MOVIES_PROJECTION, count);
+        for (int i = 0; i < count; i++) {
+            addMovie(cursor, i);
+        }
+        return cursor;
+    }
+
+    private static MatrixCursor createCursorWithout(int count, int missingMovieID) {
+        MatrixCursor cursor = new MatrixCursor(MainActivity.MOVIES_PROJECTION, count);
+        for (int i = 0; i < count; i++) {
+            if (i != missingMovieID) {
+                addMovie(cursor, i);
+            }
+        }
+        return cursor;
+    }
+
+    /**
+     * Lays out a RecyclerView with the adapter, so all its items are bound to holders.
+     */
+    private static void bindInRecyclerView(MovieAdapter adapter) {
+        RecyclerView recyclerView = new RecyclerView(InstrumentationRegistry.getTargetContext());
+        recyclerView.setLayoutManager(
+                new GridLayoutManager(InstrumentationRegistry.getTargetContext(), 2));
+        recyclerView.setAdapter(adapter);
+        int size = View.MeasureSpec.makeMeasureSpec(10000, View.MeasureSpec.EXACTLY);
+        recyclerView.measure(size, size);
+        recyclerView.layout(0, 0, 10000, 10000);
+    }
+
+    private static void addMovie(MatrixCursor cursor, int movieID) {
+        cursor.addRow(new Object[]{movieID, "/" + movieID + ".jpg", movieID + "_w185.jpg", 1});
+    }
+
+    /**
+     * Records the item notifications of the adapter.
+     */
+    private static class RecordingObserver extends RecyclerView.AdapterDataObserver {
+
+        final StringBuilder mEvents = new StringBuilder();
+
+        @Override
+        public void onChanged() {
+            mEvents.append("changed ");
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            mEvents.append("changed ").append(positionStart).append(' ').append(itemCount).append(' ');
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            mEvents.append("inserted ").append(positionStart).append(' ').append(itemCount).append(' ');
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            mEvents.append("removed ").append(positionStart).append(' ').append(itemCount).append(' ');
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.android.popularmovies.adapters;
+
+import android.app.Instrumentation;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.database.MatrixCursor;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.View;
+
+import com.example.android.popularmovies.MainActivity;
+import com.example.android.popularmovies.R;
+import com.example.android.popularmovies.data.PosterStore;
+import com.example.android.popularmovies.models.Movie;
+import com.example.android.popularmovies.utilities.BitmapPool;
+import com.example.android.popularmovies.utilities.NetworkUtils;
+import com.example.android.popularmovies.utilities.PosterCache;
+import com.example.android.popularmovies.utilities.PosterDecoder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scrolls a grid of favorites with the posters decoded on the main thread and with the
+ * {@link PosterDecoder} worker threads. Like in production, the grid is driven by a cursor with
+ * the columns of {@link MainActivity#MOVIES_PROJECTION} and the posters are decoded from their
+ * {@link PosterStore} files.
+ * <p>
+ * The frame times are logged: the average, the 90th percentile and the number of frames taking
+ * longer than two vsync intervals. With the worker threads, the 90th percentile has to stay
+ * within the frame budget.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PosterScrollFrameTimeTest {
+
+    private static final String LOG_TAG = PosterScrollFrameTimeTest.class.getSimpleName();
+
+    private static final int NBR_FAVORITES = 500;
+    private static final int NBR_FRAMES = 300;
+    private static final int SCROLL_PIXELS_PER_FRAME = 40;
+
+    private static final int POSTER_WIDTH = 185;
+    private static final int POSTER_HEIGHT = 277;
+
+    private static final long VSYNC_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+
+    //Frame budget with some tolerance for vsync jitter, a missed frame takes two intervals
+    private static final long FRAME_BUDGET_NANOS = VSYNC_NANOS * 3 / 2;
+
+    //Ids not used by TMDb
+    private static final int FIRST_MOVIE_ID = -200000;
+
+    private static byte[] sPosterBytes;
+
+    @Rule
+    public ActivityTestRule<MainActivity> mActivityRule = new ActivityTestRule<>(MainActivity.class);
+
+
+    @BeforeClass
+    public static void createPoster() {
+        //Random shapes, so the JPEG is about as expensive to decode as a real poster
+        Bitmap bitmap = Bitmap.createBitmap(POSTER_WIDTH, POSTER_HEIGHT, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint();
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            paint.setColor(Color.rgb(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+            canvas.drawCircle(random.nextInt(POSTER_WIDTH), random.nextInt(POSTER_HEIGHT),
+                    random.nextInt(20), paint);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.JPEG, 85, out);
+        bitmap.recycle();
+        sPosterBytes = out.toByteArray();
+    }
+
+    @Before
+    public void storePosters() throws IOException {
+        Context context = InstrumentationRegistry.getTargetContext();
+        for (int i = 0; i < NBR_FAVORITES; i++) {
+            PosterStore.writePoster(context, FIRST_MOVIE_ID + i,
+                    NetworkUtils.IMDB_IMAGE_W185_SIZE, sPosterBytes);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        PosterDecoder.setAsyncDecodingEnabled(true);
+        Context context = InstrumentationRegistry.getTargetContext();
+        for (int i = 0; i < NBR_FAVORITES; i++) {
+            PosterStore.deletePoster(context, FIRST_MOVIE_ID + i,
+                    NetworkUtils.IMDB_IMAGE_W185_SIZE);
+        }
+    }
+
+    @Test
+    public void scrollFavorites() throws Exception {
+        long[] mainThread = scroll(false);
+        long[] workerThreads = scroll(true);
+
+        Log.i(LOG_TAG, "Decoding on main thread: " + summarize(mainThread));
+        Log.i(LOG_TAG, "Decoding on worker threads: " + summarize(workerThreads));
+        Log.i(LOG_TAG, PosterDecoder.getStatistics());
+        Log.i(LOG_TAG, PosterCache.getStatistics());
+        Log.i(LOG_TAG, BitmapPool.getStatistics());
+
+        assertTrue("90th percentile frame time over budget: " + summarize(workerThreads),
+                percentile(workerThreads, 90) <= FRAME_BUDGET_NANOS);
+    }
+
+    /**
+     * Scrolls a fresh grid of favorites by a fixed distance per frame.
+     *
+     * @param asyncDecoding True to decode on the worker threads.
+     * @return The frame times in nanoseconds.
+     */
+    private long[] scroll(boolean asyncDecoding) throws InterruptedException {
+        PosterDecoder.setAsyncDecodingEnabled(asyncDecoding);
+        PosterCache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        final MainActivity activity = mActivityRule.getActivity();
+        final RecyclerView recyclerView = (RecyclerView) activity.findViewById(R.id.rv_movies);
+
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                //Detach the paging and show the favorites only
+                recyclerView.clearOnScrollListeners();
+                MovieAdapter adapter = new MovieAdapter(activity,
+                        new MovieAdapter.MovieAdapterOnClickHandler() {
+                            @Override
+                            public void onClick(Movie movie, View view) {
+                            }
+                        });
+                MatrixCursor cursor =
+                        new MatrixCursor(MainActivity.MOVIES_PROJECTION, NBR_FAVORITES);
+                for (int i = 0; i < NBR_FAVORITES; i++) {
+                    int movieID = FIRST_MOVIE_ID + i;
+                    cursor.addRow(new Object[]{movieID, "/" + movieID + ".jpg",
+                            PosterStore.getPosterFileName(movieID,
+                                    NetworkUtils.IMDB_IMAGE_W185_SIZE), 1});
+                }
+                adapter.setMovieCursor(cursor);
+                recyclerView.setAdapter(adapter);
+                recyclerView.setVisibility(View.VISIBLE);
+            }
+        });
+        instrumentation.waitForIdleSync();
+
+        final long[] frameNanos = new long[NBR_FRAMES];
+        final CountDownLatch scrolled = new CountDownLatch(1);
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+
+                    private long mLastFrameTimeNanos;
+                    private int mFrame;
+
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        if (mLastFrameTimeNanos != 0) {
+                            frameNanos[mFrame++] = frameTimeNanos - mLastFrameTimeNanos;
+                        }
+                        mLastFrameTimeNanos = frameTimeNanos;
+                        if (mFrame < NBR_FRAMES) {
+                            recyclerView.scrollBy(0, SCROLL_PIXELS_PER_FRAME);
+                            Choreographer.getInstance().postFrameCallback(this);
+                        } else {
+                            scrolled.countDown();
+                        }
+                    }
+                });
+            }
+        });
+        assertTrue("Scrolling timed out", scrolled.await(60, TimeUnit.SECONDS));
+
+        return frameNanos;
+    }
+
+    /**
+     * @return The frame time in nanoseconds below which the percentage of frames is.
+     */
+    private static long percentile(long[] frameNanos, int percent) {
+        long[] sorted = Arrays.copyOf(frameNanos, frameNanos.length);
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, sorted.length * percent / 100)];
+    }
+
+    /**
+     * @return Summary of the frame times.
+     */
+    private static String summarize(long[] frameNanos) {
+        long totalNanos = 0;
+        int jankyFrames = 0;
+        for (long nanos : frameNanos) {
+            totalNanos += nanos;
+            if (nanos > 2 * VSYNC_NANOS) {
+                jankyFrames++;
+            }
+        }
+        return String.format(Locale.US,
+                "%d frames, %.1f ms average, %.1f ms 90th percentile, %d frames over %d ms",
+                NBR_FRAMES, totalNanos / 1e6 / NBR_FRAMES, percentile(frameNanos, 90) / 1e6,
+                jankyFrames, TimeUnit.NANOSECONDS.toMillis(2 * VSYNC_NANOS));
+    }
+}
@@ -0,0 +1,139 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.android.popularmovies.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.popularmovies.data.MovieContract.CachedMovieEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares inserting cached movies row by row with {@link SQLiteDatabase#insert} and with a
+ * precompiled {@link InsertStatement}, both inside one transaction. Rows per second are logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BulkInsertBenchmarkTest {
+
+    private static final String LOG_TAG = BulkInsertBenchmarkTest.class.getSimpleName();
+
+    private static final String DATABASE_NAME = "bulkInsertBenchmark.db";
+
+    private static final int NBR_ROWS = 5000;
+
+    private Context mContext;
+    private MovieDBHelper mHelper;
+    private ContentValues[] mValues;
+
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+        mHelper = new MovieDBHelper(mContext, DATABASE_NAME, true);
+
+        mValues = new ContentValues[NBR_ROWS];
+        for (int i = 0; i < NBR_ROWS; i++) {
+            mValues[i] = new ContentValues();
+            mValues[i].put(CachedMovieEntry.COLUMN_MOVIE_ID, i);
+            mValues[i].put(CachedMovieEntry.COLUMN_MOVIE_POSTER_PATH, "/" + i + ".jpg");
+            mValues[i].put(CachedMovieEntry.COLUMN_MOVIE_OVERVIEW, "Overview of movie " + i);
+            mValues[i].put(CachedMovieEntry.COLUMN_MOVIE_RELEASE_DATE, "2017-03-01");
+            mValues[i].put(CachedMovieEntry.COLUMN_MOVIE_TITLE, "Title " + i);
+            mValues[i].put(CachedMovieEntry.COLUMN_MOVIE_VOTE_AVERAGE, 7.5);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void compareBulkInserts() {
+
+        SQLiteDatabase db = mHelper.getWritableDatabase();
+
+        //Warm up both paths
+        insertRowByRow(db);
+        insertPrecompiled(db);
+
+        long start = System.nanoTime();
+        insertRowByRow(db);
+        long rowByRow = System.nanoTime() - start;
+        assertEquals(NBR_ROWS, DatabaseUtils.queryNumEntries(db, CachedMovieEntry.TABLE_NAME));
+
+        start = System.nanoTime();
+        insertPrecompiled(db);
+        long precompiled = System.nanoTime() - start;
+        assertEquals(NBR_ROWS, DatabaseUtils.queryNumEntries(db, CachedMovieEntry.TABLE_NAME));
+
+        Log.i(LOG_TAG, String.format(Locale.US,
+                "%d rows: db.insert %.0f rows/s, precompiled statement %.0f rows/s",
+                NBR_ROWS, NBR_ROWS / (rowByRow / 1e9), NBR_ROWS / (precompiled / 1e9)));
+    }
+
+    /**
+     * The previous path: build and compile the insert for every row.
+     */
+    private void insertRowByRow(SQLiteDatabase db) {
+        db.delete(CachedMovieEntry.TABLE_NAME, null, null);
+        db.beginTransaction();
+        try {
+            for (ContentValues value : mValues) {
+                db.insert(CachedMovieEntry.TABLE_NAME, null, value);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private void insertPrecompiled(SQLiteDatabase db) {
+        db.delete(CachedMovieEntry.TABLE_NAME, null, null);
+        db.beginTransaction();
+        InsertStatement statement = new InsertStatement(db, CachedMovieEntry.TABLE_NAME,
+                MovieContentProvider.CACHED_MOVIE_COLUMNS);
+        try {
+            for (ContentValues value : mValues) {
+                statement.insert(value);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            statement.close();
+            db.endTransaction();
+        }
+    }
+}
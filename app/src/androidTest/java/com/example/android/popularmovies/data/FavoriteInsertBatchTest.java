@@ -0,0 +1,225 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.android.popularmovies.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.BaseColumns;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.popularmovies.data.MovieContract.MovieEntry;
+import com.example.android.popularmovies.data.MovieContract.ReviewEntry;
+import com.example.android.popularmovies.data.MovieContract.TrailerEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that a favorite batch is applied atomically by {@link MovieContentProvider} and
+ * compares the time per favorite of the batch with the previous insert plus two bulk inserts,
+ * for a movie with 20 trailers and 50 reviews.
+ * <p>
+ * Uses movie ids far from TMDb ids and removes each inserted movie again, also when a test fails.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FavoriteInsertBatchTest {
+
+    private static final String LOG_TAG = FavoriteInsertBatchTest.class.getSimpleName();
+
+    private static final int FIRST_MOVIE_ID = 90000000;
+    private static final int NBR_TRAILERS = 20;
+    private static final int NBR_REVIEWS = 50;
+    private static final int ITERATIONS = 50;
+    //One warm up movie before the measured ones
+    private static final int LAST_MOVIE_ID = FIRST_MOVIE_ID + ITERATIONS;
+
+    private ContentResolver mResolver;
+
+
+    @Before
+    public void setUp() {
+        mResolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+    }
+
+    @After
+    public void tearDown() {
+        //Trailers and reviews are deleted with their movie
+        for (int movieID = FIRST_MOVIE_ID; movieID <= LAST_MOVIE_ID; movieID++) {
+            remove(movieID);
+        }
+    }
+
+    @Test
+    public void failedBatchStoresNothing() throws Exception {
+
+        ArrayList<ContentProviderOperation> operations = buildOperations(FIRST_MOVIE_ID);
+        //Review without its NOT NULL columns fails at the end of the batch
+        operations.add(ContentProviderOperation.newInsert(ReviewEntry.CONTENT_URI)
+                .withValue(ReviewEntry.COLUMN_MOVIE_ID, FIRST_MOVIE_ID)
+                .build());
+
+        try {
+            mResolver.applyBatch(MovieContract.AUTHORITY, operations);
+            fail("Batch with invalid review must fail");
+        } catch (Exception e) {
+            Log.d(LOG_TAG, "Batch failed as expected: " + e);
+        }
+
+        assertEquals(0, count(movieUri(FIRST_MOVIE_ID)));
+        assertEquals(0, count(TrailerEntry.CONTENT_URI.buildUpon()
+                .appendPath(String.valueOf(FIRST_MOVIE_ID)).build()));
+        assertEquals(0, count(ReviewEntry.CONTENT_URI.buildUpon()
+                .appendPath(String.valueOf(FIRST_MOVIE_ID)).build()));
+    }
+
+    @Test
+    public void compareInsertPaths() throws Exception {
+
+        int movieID = FIRST_MOVIE_ID;
+
+        //Warm up both paths with the same movie, they must store the same rows
+        insertSeparately(movieID);
+        List<String> separateRows = rows(movieID);
+        remove(movieID);
+        mResolver.applyBatch(MovieContract.AUTHORITY, buildOperations(movieID));
+        assertEquals(1 + NBR_TRAILERS + NBR_REVIEWS, separateRows.size());
+        assertEquals(separateRows, rows(movieID));
+        remove(movieID++);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            insertSeparately(movieID + i);
+        }
+        long separately = (System.nanoTime() - start) / ITERATIONS;
+        for (int i = 0; i < ITERATIONS; i++) {
+            remove(movieID + i);
+        }
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            mResolver.applyBatch(MovieContract.AUTHORITY, buildOperations(movieID + i));
+        }
+        long batched = (System.nanoTime() - start) / ITERATIONS;
+        for (int i = 0; i < ITERATIONS; i++) {
+            remove(movieID + i);
+        }
+
+        Log.i(LOG_TAG, String.format(Locale.US,
+                "Per favorite: insert + 2 bulk inserts %.2f ms, one batch %.2f ms",
+                separately / 1e6, batched / 1e6));
+    }
+
+    /**
+     * The previous path: three calls, three transactions and three notifications.
+     */
+    private void insertSeparately(int movieID) {
+        mResolver.insert(MovieEntry.CONTENT_URI, TestUtilities.createMovieValues(movieID));
+
+        ContentValues[] trailers = new ContentValues[NBR_TRAILERS];
+        for (int i = 0; i < NBR_TRAILERS; i++) {
+            trailers[i] = TestUtilities.createTrailerValues(movieID, i);
+        }
+        mResolver.bulkInsert(TrailerEntry.CONTENT_URI, trailers);
+
+        ContentValues[] reviews = new ContentValues[NBR_REVIEWS];
+        for (int i = 0; i < NBR_REVIEWS; i++) {
+            reviews[i] = TestUtilities.createReviewValues(movieID, i);
+        }
+        mResolver.bulkInsert(ReviewEntry.CONTENT_URI, reviews);
+    }
+
+    private static ArrayList<ContentProviderOperation> buildOperations(int movieID) {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newInsert(MovieEntry.CONTENT_URI)
+                .withValues(TestUtilities.createMovieValues(movieID)).build());
+        for (int i = 0; i < NBR_TRAILERS; i++) {
+            operations.add(ContentProviderOperation.newInsert(TrailerEntry.CONTENT_URI)
+                    .withValues(TestUtilities.createTrailerValues(movieID, i)).build());
+        }
+        for (int i = 0; i < NBR_REVIEWS; i++) {
+            operations.add(ContentProviderOperation.newInsert(ReviewEntry.CONTENT_URI)
+                    .withValues(TestUtilities.createReviewValues(movieID, i)).build());
+        }
+        return operations;
+    }
+
+    private void remove(int movieID) {
+        mResolver.delete(movieUri(movieID), null, null);
+    }
+
+    private int count(Uri uri) {
+        Cursor cursor = mResolver.query(uri, null, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * The movie, trailer and review rows of a movie in a stable order, without their row ids.
+     */
+    private List<String> rows(int movieID) {
+        List<String> rows = new ArrayList<>();
+        addRows(rows, movieUri(movieID), null);
+        addRows(rows, TrailerEntry.CONTENT_URI.buildUpon()
+                .appendPath(String.valueOf(movieID)).build(), TrailerEntry.COLUMN_TRAILER_ID);
+        addRows(rows, ReviewEntry.CONTENT_URI.buildUpon()
+                .appendPath(String.valueOf(movieID)).build(), ReviewEntry.COLUMN_REVIEW_ID);
+        return rows;
+    }
+
+    private void addRows(List<String> rows, Uri uri, String sortOrder) {
+        Cursor cursor = mResolver.query(uri, null, null, null, sortOrder);
+        try {
+            while (cursor.moveToNext()) {
+                StringBuilder row = new StringBuilder();
+                for (int i = 0; i < cursor.getColumnCount(); i++) {
+                    if (!BaseColumns._ID.equals(cursor.getColumnName(i))) {
+                        row.append(cursor.getColumnName(i)).append('=')
+                                .append(cursor.getString(i)).append(';');
+                    }
+                }
+                rows.add(row.toString());
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static Uri movieUri(int movieID) {
+        return MovieEntry.CONTENT_URI.buildUpon().appendPath(String.valueOf(movieID)).build();
+    }
+}
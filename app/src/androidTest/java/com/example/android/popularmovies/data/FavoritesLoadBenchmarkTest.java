@@ -0,0 +1,195 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.android.popularmovies.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Compares loading the favorites list with the posters in BLOB columns (schema version 2) and
+ * with the posters in the {@link PosterStore} (schema version 3) at 100, 500 and 1000 favorites.
+ * The load reads the rows the favorites grid needs, including the w185 poster bytes.
+ * Load times are logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FavoritesLoadBenchmarkTest {
+
+    private static final String LOG_TAG = FavoritesLoadBenchmarkTest.class.getSimpleName();
+
+    private static final String BLOB_TABLE = "movies_blob";
+    private static final String FILE_TABLE = "movies_file";
+
+    private static final String SIZE_W92 = "w92";
+    private static final String SIZE_W185 = "w185";
+
+    //Typical JPEG sizes of the posters compressed by the app
+    private static final int W92_POSTER_SIZE = 6 * 1024;
+    private static final int W185_POSTER_SIZE = 20 * 1024;
+
+    private static final int[] FAVORITE_COUNTS = {100, 500, 1000};
+
+    private static final int FIRST_MOVIE_ID = 100000;
+
+    private Context mContext;
+    private SQLiteDatabase mDb;
+
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mDb = SQLiteDatabase.create(null);
+        mDb.execSQL("CREATE TABLE " + BLOB_TABLE + " (movie_id INTEGER PRIMARY KEY, " +
+                "poster_path TEXT, w92_poster BLOB, w185_poster BLOB, favorite INTEGER)");
+        mDb.execSQL("CREATE TABLE " + FILE_TABLE + " (movie_id INTEGER PRIMARY KEY, " +
+                "poster_path TEXT, w92_poster_file TEXT, w185_poster_file TEXT, favorite INTEGER)");
+    }
+
+    @After
+    public void tearDown() {
+        mDb.close();
+        for (int i = 0; i < FAVORITE_COUNTS[FAVORITE_COUNTS.length - 1]; i++) {
+            PosterStore.deletePoster(mContext, FIRST_MOVIE_ID + i, SIZE_W92);
+            PosterStore.deletePoster(mContext, FIRST_MOVIE_ID + i, SIZE_W185);
+        }
+    }
+
+    @Test
+    public void posterRoundTrip() throws Exception {
+        byte[] poster = createPoster(W185_POSTER_SIZE, 7);
+        String fileName = PosterStore.writePoster(mContext, FIRST_MOVIE_ID, SIZE_W185, poster);
+        assertArrayEquals(poster, PosterStore.readPoster(mContext, FIRST_MOVIE_ID, SIZE_W185));
+        Log.d(LOG_TAG, "Stored poster " + fileName);
+    }
+
+    @Test
+    public void compareFavoritesLoad() throws Exception {
+
+        int inserted = 0;
+        for (int count : FAVORITE_COUNTS) {
+            for (; inserted < count; inserted++) {
+                insertFavorite(FIRST_MOVIE_ID + inserted);
+            }
+
+            //Warm up both paths
+            loadFromBlobs();
+            loadFromFiles();
+
+            long blobs = measure(true);
+            long files = measure(false);
+
+            Log.i(LOG_TAG, String.format(Locale.US,
+                    "%4d favorites: BLOB columns %.1f ms, poster files %.1f ms",
+                    count, blobs / 1e6, files / 1e6));
+        }
+    }
+
+    private long measure(boolean blobs) throws Exception {
+        long start = System.nanoTime();
+        int loaded = blobs ? loadFromBlobs() : loadFromFiles();
+        long elapsed = System.nanoTime() - start;
+        Log.d(LOG_TAG, loaded + " posters loaded");
+        return elapsed;
+    }
+
+    private void insertFavorite(int movieID) throws Exception {
+
+        byte[] w92Poster = createPoster(W92_POSTER_SIZE, movieID);
+        byte[] w185Poster = createPoster(W185_POSTER_SIZE, movieID);
+
+        ContentValues blobValues = new ContentValues();
+        blobValues.put("movie_id", movieID);
+        blobValues.put("poster_path", "/" + movieID + ".jpg");
+        blobValues.put("w92_poster", w92Poster);
+        blobValues.put("w185_poster", w185Poster);
+        blobValues.put("favorite", 1);
+        mDb.insertOrThrow(BLOB_TABLE, null, blobValues);
+
+        ContentValues fileValues = new ContentValues();
+        fileValues.put("movie_id", movieID);
+        fileValues.put("poster_path", "/" + movieID + ".jpg");
+        fileValues.put("w92_poster_file",
+                PosterStore.writePoster(mContext, movieID, SIZE_W92, w92Poster));
+        fileValues.put("w185_poster_file",
+                PosterStore.writePoster(mContext, movieID, SIZE_W185, w185Poster));
+        fileValues.put("favorite", 1);
+        mDb.insertOrThrow(FILE_TABLE, null, fileValues);
+    }
+
+    /**
+     * The version 2 path: both posters of every favorite go through the cursor window.
+     */
+    private int loadFromBlobs() {
+        int loaded = 0;
+        Cursor cursor = mDb.query(BLOB_TABLE, new String[]{"movie_id", "poster_path",
+                "w92_poster", "w185_poster", "favorite"}, null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                cursor.getBlob(2);
+                if (cursor.getBlob(3).length > 0) {
+                    loaded++;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return loaded;
+    }
+
+    /**
+     * The version 3 path: the cursor holds file names, the w185 poster is read from its file.
+     */
+    private int loadFromFiles() throws Exception {
+        int loaded = 0;
+        Cursor cursor = mDb.query(FILE_TABLE, new String[]{"movie_id", "poster_path",
+                "w185_poster_file", "favorite"}, null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                if (PosterStore.readPoster(mContext, cursor.getInt(0), SIZE_W185).length > 0) {
+                    loaded++;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return loaded;
+    }
+
+    private static byte[] createPoster(int size, int seed) {
+        byte[] poster = new byte[size];
+        Arrays.fill(poster, (byte) seed);
+        return poster;
+    }
+}
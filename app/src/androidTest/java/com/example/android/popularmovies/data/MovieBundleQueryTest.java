@@ -0,0 +1,168 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.android.popularmovies.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.popularmovies.data.MovieContract.MovieBundleEntry;
+import com.example.android.popularmovies.data.MovieContract.MovieEntry;
+import com.example.android.popularmovies.data.MovieContract.ReviewEntry;
+import com.example.android.popularmovies.data.MovieContract.TrailerEntry;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the movie bundle query of {@link MovieContentProvider}: one cursor with the movie, its
+ * trailers and its reviews, and an empty cursor for a movie which is not stored. The time of
+ * the "not stored" answer is logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MovieBundleQueryTest {
+
+    private static final String LOG_TAG = MovieBundleQueryTest.class.getSimpleName();
+
+    private static final String DATABASE_NAME = "movieBundleQueryTest.db";
+
+    private static final int NBR_FAVORITES = 500;
+    private static final int NBR_TRAILERS_PER_FAVORITE = 3;
+    private static final int NBR_REVIEWS_PER_FAVORITE = 5;
+
+    private static final int NOT_STORED_MOVIE_ID = 999999;
+    private static final int NBR_PROBES = 1000;
+
+    private static final String[] PROJECTION = {
+            MovieBundleEntry.COLUMN_ROW_TYPE,
+            MovieEntry.COLUMN_MOVIE_TITLE,
+            TrailerEntry.COLUMN_TRAILER_KEY,
+            ReviewEntry.COLUMN_REVIEW_AUTHOR
+    };
+
+    private static Context sContext;
+    private static MovieDBHelper sHelper;
+
+
+    @BeforeClass
+    public static void createStore() {
+        sContext = InstrumentationRegistry.getTargetContext();
+        sContext.deleteDatabase(DATABASE_NAME);
+        sHelper = new MovieDBHelper(sContext, DATABASE_NAME, true);
+        SQLiteDatabase db = sHelper.getWritableDatabase();
+
+        db.beginTransaction();
+        try {
+            for (int movieID = 0; movieID < NBR_FAVORITES; movieID++) {
+                db.insertOrThrow(MovieEntry.TABLE_NAME, null,
+                        TestUtilities.createMovieValues(movieID));
+                for (int j = 0; j < NBR_TRAILERS_PER_FAVORITE; j++) {
+                    db.insertOrThrow(TrailerEntry.TABLE_NAME, null,
+                            TestUtilities.createTrailerValues(movieID, j));
+                }
+                for (int j = 0; j < NBR_REVIEWS_PER_FAVORITE; j++) {
+                    db.insertOrThrow(ReviewEntry.TABLE_NAME, null,
+                            TestUtilities.createReviewValues(movieID, j));
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @AfterClass
+    public static void deleteStore() {
+        sHelper.close();
+        sContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void storedMovieComesWithTrailersAndReviews() {
+        Cursor cursor = MovieContentProvider.queryMovieBundle(sHelper.getReadableDatabase(),
+                PROJECTION, "42");
+        try {
+            assertEquals(1 + NBR_TRAILERS_PER_FAVORITE + NBR_REVIEWS_PER_FAVORITE,
+                    cursor.getCount());
+
+            assertTrue(cursor.moveToFirst());
+            assertEquals(MovieBundleEntry.ROW_TYPE_MOVIE, cursor.getInt(0));
+            assertEquals("Title 42", cursor.getString(1));
+            assertNull(cursor.getString(2));
+            assertNull(cursor.getString(3));
+
+            for (int j = 0; j < NBR_TRAILERS_PER_FAVORITE; j++) {
+                assertTrue(cursor.moveToNext());
+                assertEquals(MovieBundleEntry.ROW_TYPE_TRAILER, cursor.getInt(0));
+                assertNull(cursor.getString(1));
+                assertEquals("key" + j, cursor.getString(2));
+                assertNull(cursor.getString(3));
+            }
+
+            for (int j = 0; j < NBR_REVIEWS_PER_FAVORITE; j++) {
+                assertTrue(cursor.moveToNext());
+                assertEquals(MovieBundleEntry.ROW_TYPE_REVIEW, cursor.getInt(0));
+                assertNull(cursor.getString(1));
+                assertNull(cursor.getString(2));
+                assertEquals("Author " + j, cursor.getString(3));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void notStoredMovieIsEmpty() {
+        SQLiteDatabase db = sHelper.getReadableDatabase();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < NBR_PROBES; i++) {
+            Cursor cursor = MovieContentProvider.queryMovieBundle(db, PROJECTION,
+                    String.valueOf(NOT_STORED_MOVIE_ID));
+            try {
+                assertEquals(0, cursor.getCount());
+                assertEquals(PROJECTION.length, cursor.getColumnCount());
+            } finally {
+                cursor.close();
+            }
+        }
+        long micros = (System.nanoTime() - start) / 1000 / NBR_PROBES;
+
+        Log.i(LOG_TAG, String.format(Locale.US, "Not stored answered in %d us", micros));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void projectionWithoutRowTypeIsRejected() {
+        MovieContentProvider.queryMovieBundle(sHelper.getReadableDatabase(),
+                new String[]{MovieEntry.COLUMN_MOVIE_TITLE}, "42");
+    }
+}
@@ -0,0 +1,252 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.android.popularmovies.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.popularmovies.data.MovieContract.MovieEntry;
+import com.example.android.popularmovies.data.MovieContract.ReviewEntry;
+import com.example.android.popularmovies.data.MovieContract.TrailerEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs favorite inserts and removes concurrently with favorites list and movie detail reads,
+ * once with the rollback journal and once with write-ahead logging. The read latency
+ * percentiles of both modes are logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MovieDBConcurrencyStressTest {
+
+    private static final String LOG_TAG = MovieDBConcurrencyStressTest.class.getSimpleName();
+
+    private static final String JOURNAL_DATABASE_NAME = "stressJournal.db";
+    private static final String WAL_DATABASE_NAME = "stressWal.db";
+
+    private static final int BASE_FAVORITES = 50;
+    private static final int WRITE_ITERATIONS = 100;
+    private static final int READER_THREADS = 3;
+    private static final int NBR_TRAILERS = 20;
+    private static final int NBR_REVIEWS = 50;
+
+    private Context mContext;
+
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(JOURNAL_DATABASE_NAME);
+        mContext.deleteDatabase(WAL_DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        mContext.deleteDatabase(JOURNAL_DATABASE_NAME);
+        mContext.deleteDatabase(WAL_DATABASE_NAME);
+    }
+
+    @Test
+    public void walModeIsEnabled() {
+        MovieDBHelper helper = new MovieDBHelper(mContext, WAL_DATABASE_NAME, true);
+        Cursor cursor = helper.getWritableDatabase().rawQuery("PRAGMA journal_mode", null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("wal", cursor.getString(0).toLowerCase(Locale.US));
+        } finally {
+            cursor.close();
+            helper.close();
+        }
+    }
+
+    @Test
+    public void compareReadLatency() throws Exception {
+        List<Long> journal = stress(JOURNAL_DATABASE_NAME, false);
+        List<Long> wal = stress(WAL_DATABASE_NAME, true);
+
+        log("rollback journal", journal);
+        log("write-ahead log ", wal);
+    }
+
+    /**
+     * @return The latencies in nanoseconds of all reads done while the writer was running.
+     */
+    private List<Long> stress(String databaseName, boolean writeAheadLogging) throws Exception {
+
+        MovieDBHelper helper = new MovieDBHelper(mContext, databaseName, writeAheadLogging);
+        final SQLiteDatabase db = helper.getWritableDatabase();
+
+        for (int i = 0; i < BASE_FAVORITES; i++) {
+            insertFavorite(db, i);
+        }
+
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Long> latencies = Collections.synchronizedList(new ArrayList<Long>());
+
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < READER_THREADS; r++) {
+            final int readerIndex = r;
+            Thread reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    awaitQuietly(start);
+                    int movieID = readerIndex;
+                    while (writing.get()) {
+                        long begin = System.nanoTime();
+                        readFavorites(db);
+                        latencies.add(System.nanoTime() - begin);
+
+                        begin = System.nanoTime();
+                        readDetails(db, movieID);
+                        latencies.add(System.nanoTime() - begin);
+
+                        movieID = (movieID + 1) % BASE_FAVORITES;
+                    }
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+
+        start.countDown();
+        for (int i = 0; i < WRITE_ITERATIONS; i++) {
+            int movieID = BASE_FAVORITES + i;
+            insertFavorite(db, movieID);
+            removeFavorite(db, movieID);
+        }
+        writing.set(false);
+
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        helper.close();
+
+        assertTrue(latencies.size() > 0);
+        return latencies;
+    }
+
+    /**
+     * Writes a movie with its trailers and reviews in one transaction, like the favorite insert.
+     */
+    private static void insertFavorite(SQLiteDatabase db, int movieID) {
+        db.beginTransaction();
+        try {
+            db.insertOrThrow(MovieEntry.TABLE_NAME, null,
+                    TestUtilities.createMovieValues(movieID));
+            for (int i = 0; i < NBR_TRAILERS; i++) {
+                db.insertOrThrow(TrailerEntry.TABLE_NAME, null,
+                        TestUtilities.createTrailerValues(movieID, i));
+            }
+            for (int i = 0; i < NBR_REVIEWS; i++) {
+                db.insertOrThrow(ReviewEntry.TABLE_NAME, null,
+                        TestUtilities.createReviewValues(movieID, i));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static void removeFavorite(SQLiteDatabase db, int movieID) {
+        String[] selectionArgs = {String.valueOf(movieID)};
+        db.beginTransaction();
+        try {
+            db.delete(TrailerEntry.TABLE_NAME, "movie_id = ?", selectionArgs);
+            db.delete(ReviewEntry.TABLE_NAME, "movie_id = ?", selectionArgs);
+            db.delete(MovieEntry.TABLE_NAME, "movie_id = ?", selectionArgs);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static void readFavorites(SQLiteDatabase db) {
+        Cursor cursor = db.query(MovieEntry.TABLE_NAME, new String[]{
+                        MovieEntry.COLUMN_MOVIE_ID,
+                        MovieEntry.COLUMN_MOVIE_POSTER_PATH,
+                        MovieEntry.COLUMN_MOVIE_W185_POSTER_FILE,
+                        MovieEntry.COLUMN_MOVIE_FAVORITE},
+                null, null, null, null, null);
+        drain(cursor);
+    }
+
+    private static void readDetails(SQLiteDatabase db, int movieID) {
+        String[] selectionArgs = {String.valueOf(movieID)};
+        drain(db.query(MovieEntry.TABLE_NAME, null, "movie_id = ?", selectionArgs,
+                null, null, null));
+        drain(db.query(TrailerEntry.TABLE_NAME, null, "movie_id = ?", selectionArgs,
+                null, null, null));
+        drain(db.query(ReviewEntry.TABLE_NAME, null, "movie_id = ?", selectionArgs,
+                null, null, null));
+    }
+
+    private static void drain(Cursor cursor) {
+        try {
+            while (cursor.moveToNext()) {
+                cursor.getString(0);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void log(String mode, List<Long> latencies) {
+        Collections.sort(latencies);
+        Log.i(LOG_TAG, String.format(Locale.US,
+                "%s: %d reads, p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms",
+                mode, latencies.size(),
+                percentile(latencies, 50) / 1e6,
+                percentile(latencies, 90) / 1e6,
+                percentile(latencies, 99) / 1e6,
+                latencies.get(latencies.size() - 1) / 1e6));
+    }
+
+    private static long percentile(List<Long> sortedLatencies, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.size()) - 1;
+        return sortedLatencies.get(Math.max(index, 0));
+    }
+}
@@ -0,0 +1,178 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.android.popularmovies.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.popularmovies.data.MovieContract.MovieEntry;
+import com.example.android.popularmovies.data.MovieContract.ReviewEntry;
+import com.example.android.popularmovies.data.MovieContract.TrailerEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the trailer and review indexes, the cascading delete and the version 4 migration of
+ * {@link MovieDBHelper}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MovieDBHelperTest {
+
+    private static final String DATABASE_NAME = "movieDbHelperTest.db";
+
+    private static final int MOVIE_ID = 550;
+    private static final int REMOVED_MOVIE_ID = 551;
+
+    private Context mContext;
+    private MovieDBHelper mHelper;
+
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        if (mHelper != null) {
+            mHelper.close();
+        }
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void trailerLookupUsesIndex() {
+        SQLiteDatabase db = openHelper().getReadableDatabase();
+        assertTrue(queryPlan(db, TrailerEntry.TABLE_NAME)
+                .contains(MovieDBHelper.TRAILER_MOVIE_ID_INDEX));
+    }
+
+    @Test
+    public void reviewLookupUsesIndex() {
+        SQLiteDatabase db = openHelper().getReadableDatabase();
+        assertTrue(queryPlan(db, ReviewEntry.TABLE_NAME)
+                .contains(MovieDBHelper.REVIEW_MOVIE_ID_INDEX));
+    }
+
+    @Test
+    public void deletingMovieDeletesTrailersAndReviews() {
+        SQLiteDatabase db = openHelper().getWritableDatabase();
+        insertMovie(db, MOVIE_ID);
+        insertTrailerAndReview(db, MOVIE_ID);
+
+        db.delete(MovieEntry.TABLE_NAME, MovieEntry.COLUMN_MOVIE_ID + " = ?",
+                new String[]{String.valueOf(MOVIE_ID)});
+
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, TrailerEntry.TABLE_NAME));
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, ReviewEntry.TABLE_NAME));
+    }
+
+    @Test
+    public void upgradeRemovesOrphans() {
+
+        //Version 3 schema: foreign keys without cascade, no indexes
+        SQLiteDatabase legacyDb = mContext.openOrCreateDatabase(DATABASE_NAME, 0, null);
+        legacyDb.execSQL("CREATE TABLE movies (_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "movie_id INTEGER NOT NULL, overview TEXT NOT NULL, release_date TEXT NOT NULL, " +
+                "title TEXT NOT NULL, runtime INTEGER NOT NULL, vote_average REAL NOT NULL, " +
+                "w92_poster_file TEXT NOT NULL, w185_poster_file TEXT NOT NULL, " +
+                "poster_path TEXT NOT NULL, favorite INTEGER NOT NULL, " +
+                "UNIQUE (movie_id) ON CONFLICT REPLACE);");
+        legacyDb.execSQL("CREATE TABLE trailers (_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "trailer_id TEXT NOT NULL, key TEXT NOT NULL, name TEXT NOT NULL, " +
+                "site TEXT NOT NULL, type TEXT NOT NULL, movie_id INTEGER NOT NULL, " +
+                "FOREIGN KEY(movie_id) REFERENCES movies(movie_id) " +
+                "UNIQUE (trailer_id) ON CONFLICT REPLACE);");
+        legacyDb.execSQL("CREATE TABLE reviews (_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "review_id TEXT NOT NULL, author TEXT NOT NULL, content TEXT NOT NULL, " +
+                "url TEXT NOT NULL, movie_id INTEGER NOT NULL, " +
+                "FOREIGN KEY(movie_id) REFERENCES movies(movie_id) " +
+                "UNIQUE (review_id) ON CONFLICT REPLACE);");
+        legacyDb.execSQL("CREATE TABLE cached_movies (_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "movie_id INTEGER NOT NULL, poster_path TEXT, overview TEXT, " +
+                "release_date TEXT, title TEXT, vote_average REAL NOT NULL, " +
+                "UNIQUE (movie_id) ON CONFLICT REPLACE);");
+        legacyDb.execSQL("CREATE TABLE cached_lists (_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "list_type INTEGER NOT NULL, position INTEGER NOT NULL, " +
+                "movie_id INTEGER NOT NULL, fetched_at INTEGER NOT NULL, " +
+                "UNIQUE (list_type, position) ON CONFLICT REPLACE);");
+        insertMovie(legacyDb, MOVIE_ID);
+        insertTrailerAndReview(legacyDb, MOVIE_ID);
+        insertTrailerAndReview(legacyDb, REMOVED_MOVIE_ID);
+        legacyDb.setVersion(3);
+        legacyDb.close();
+
+        SQLiteDatabase db = openHelper().getWritableDatabase();
+
+        assertEquals(1, DatabaseUtils.queryNumEntries(db, MovieEntry.TABLE_NAME));
+        assertEquals(1, DatabaseUtils.queryNumEntries(db, TrailerEntry.TABLE_NAME,
+                TrailerEntry.COLUMN_MOVIE_ID + " = " + MOVIE_ID));
+        assertEquals(1, DatabaseUtils.queryNumEntries(db, TrailerEntry.TABLE_NAME));
+        assertEquals(1, DatabaseUtils.queryNumEntries(db, ReviewEntry.TABLE_NAME));
+        assertTrue(queryPlan(db, TrailerEntry.TABLE_NAME)
+                .contains(MovieDBHelper.TRAILER_MOVIE_ID_INDEX));
+    }
+
+    private MovieDBHelper openHelper() {
+        mHelper = new MovieDBHelper(mContext, DATABASE_NAME, true);
+        return mHelper;
+    }
+
+    /**
+     * @return The details of the query plan of a lookup by movie id.
+     */
+    private static String queryPlan(SQLiteDatabase db, String tableName) {
+        Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN SELECT * FROM " + tableName +
+                " WHERE movie_id = ?", new String[]{String.valueOf(MOVIE_ID)});
+        StringBuilder plan = new StringBuilder();
+        try {
+            int detailIndex = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detailIndex)).append('\n');
+            }
+        } finally {
+            cursor.close();
+        }
+        return plan.toString();
+    }
+
+    private static void insertMovie(SQLiteDatabase db, int movieID) {
+        db.insertOrThrow(MovieEntry.TABLE_NAME, null, TestUtilities.createMovieValues(movieID));
+    }
+
+    private static void insertTrailerAndReview(SQLiteDatabase db, int movieID) {
+        db.insertOrThrow(TrailerEntry.TABLE_NAME, null,
+                TestUtilities.createTrailerValues(movieID, 0));
+        db.insertOrThrow(ReviewEntry.TABLE_NAME, null,
+                TestUtilities.createReviewValues(movieID, 0));
+    }
+}
@@ -0,0 +1,226 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.android.popularmovies.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.popularmovies.data.MovieContract.CachedMovieEntry;
+import com.example.android.popularmovies.data.MovieContract.MovieEntry;
+import com.example.android.popularmovies.data.MovieContract.ReviewEntry;
+import com.example.android.popularmovies.data.MovieContract.SearchEntry;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the full-text search of {@link MovieContentProvider} and the triggers keeping the
+ * index in sync, on a store of 10k cached movies and favorites with reviews. The search time
+ * per keystroke is logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MovieSearchTest {
+
+    private static final String LOG_TAG = MovieSearchTest.class.getSimpleName();
+
+    private static final String DATABASE_NAME = "movieSearchTest.db";
+
+    private static final int NBR_CACHED_MOVIES = 10000;
+    private static final int NBR_FAVORITES = 200;
+    private static final int NBR_REVIEWS_PER_FAVORITE = 10;
+
+    private static final int FIRST_FAVORITE_ID = 1000000;
+
+    private static final String[] WORDS = {"star", "galaxy", "night", "love", "war", "dark",
+            "city", "return", "legend", "river", "ghost", "summer", "king", "island", "secret",
+            "storm", "shadow", "dream", "garden", "empire"};
+
+    //Unique words to find specific rows
+    private static final String CACHED_TITLE_WORD = "quixotic";
+    private static final String REVIEW_WORD = "zeppelinesque";
+
+    private static Context sContext;
+    private static MovieDBHelper sHelper;
+
+
+    @BeforeClass
+    public static void createStore() {
+        sContext = InstrumentationRegistry.getTargetContext();
+        sContext.deleteDatabase(DATABASE_NAME);
+        sHelper = new MovieDBHelper(sContext, DATABASE_NAME, true);
+        SQLiteDatabase db = sHelper.getWritableDatabase();
+
+        Random random = new Random(42);
+
+        db.beginTransaction();
+        InsertStatement cachedStatement = new InsertStatement(db, CachedMovieEntry.TABLE_NAME,
+                MovieContentProvider.CACHED_MOVIE_COLUMNS);
+        try {
+            for (int i = 0; i < NBR_CACHED_MOVIES; i++) {
+                ContentValues values = new ContentValues();
+                values.put(CachedMovieEntry.COLUMN_MOVIE_ID, i);
+                values.put(CachedMovieEntry.COLUMN_MOVIE_POSTER_PATH, "/" + i + ".jpg");
+                values.put(CachedMovieEntry.COLUMN_MOVIE_OVERVIEW, words(random, 40));
+                values.put(CachedMovieEntry.COLUMN_MOVIE_RELEASE_DATE, "2017-03-01");
+                values.put(CachedMovieEntry.COLUMN_MOVIE_TITLE, i == 0 ?
+                        "The " + CACHED_TITLE_WORD + " knight" : words(random, 3));
+                values.put(CachedMovieEntry.COLUMN_MOVIE_VOTE_AVERAGE, 7.5);
+                cachedStatement.insert(values);
+            }
+
+            for (int i = 0; i < NBR_FAVORITES; i++) {
+                int movieID = FIRST_FAVORITE_ID + i;
+                ContentValues values = TestUtilities.createMovieValues(movieID);
+                values.put(MovieEntry.COLUMN_MOVIE_OVERVIEW, words(random, 40));
+                values.put(MovieEntry.COLUMN_MOVIE_TITLE, words(random, 3));
+                db.insertOrThrow(MovieEntry.TABLE_NAME, null, values);
+
+                for (int j = 0; j < NBR_REVIEWS_PER_FAVORITE; j++) {
+                    ContentValues reviewValues = TestUtilities.createReviewValues(movieID, j);
+                    reviewValues.put(ReviewEntry.COLUMN_REVIEW_CONTENT, i == 0 && j == 0 ?
+                            "A " + REVIEW_WORD + " ride" : words(random, 200));
+                    db.insertOrThrow(ReviewEntry.TABLE_NAME, null, reviewValues);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            cachedStatement.close();
+            db.endTransaction();
+        }
+    }
+
+    @AfterClass
+    public static void deleteStore() {
+        sHelper.close();
+        sContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void matchQueryUsesEveryWordAsPrefix() {
+        assertEquals("star* wars*", MovieContentProvider.toMatchQuery("  Star-WARS "));
+        assertNull(MovieContentProvider.toMatchQuery(" \"*- "));
+    }
+
+    @Test
+    public void findsCachedMovieByTitlePrefix() {
+        List<Integer> movieIDs = search("quixo");
+        assertEquals(1, movieIDs.size());
+        assertEquals(0, (int) movieIDs.get(0));
+    }
+
+    @Test
+    public void findsFavoriteByReviewContent() {
+        List<Integer> movieIDs = search(REVIEW_WORD);
+        assertEquals(1, movieIDs.size());
+        assertEquals(FIRST_FAVORITE_ID, (int) movieIDs.get(0));
+    }
+
+    @Test
+    public void updatedAndDeletedRowsAreReindexed() {
+        SQLiteDatabase db = sHelper.getWritableDatabase();
+        int movieID = FIRST_FAVORITE_ID + 1;
+        String[] selectionArgs = {String.valueOf(movieID)};
+
+        ContentValues values = new ContentValues();
+        values.put(MovieEntry.COLUMN_MOVIE_TITLE, "Renamed xylophonic movie");
+        db.update(MovieEntry.TABLE_NAME, values, MovieEntry.COLUMN_MOVIE_ID + " = ?",
+                selectionArgs);
+        assertEquals(1, search("xylophonic").size());
+
+        String reviewRows = "docid IN (SELECT " + ReviewEntry._ID + " * 2 + 1 FROM " +
+                ReviewEntry.TABLE_NAME + " WHERE " + ReviewEntry.COLUMN_MOVIE_ID + " = " +
+                movieID + ")";
+        assertEquals(NBR_REVIEWS_PER_FAVORITE, countSearchRows(db, reviewRows));
+        long searchRows = countSearchRows(db, "1");
+
+        //Deleting the favorite deletes its reviews too
+        db.delete(MovieEntry.TABLE_NAME, MovieEntry.COLUMN_MOVIE_ID + " = ?", selectionArgs);
+        assertTrue(search("xylophonic").isEmpty());
+        assertEquals(searchRows - 1 - NBR_REVIEWS_PER_FAVORITE, countSearchRows(db, "1"));
+    }
+
+    @Test
+    public void measureKeystrokeLatency() {
+        String typed = "galaxy storm";
+        long total = 0;
+        long max = 0;
+        for (int i = 1; i <= typed.length(); i++) {
+            long start = System.nanoTime();
+            int results = search(typed.substring(0, i)).size();
+            long elapsed = System.nanoTime() - start;
+            total += elapsed;
+            max = Math.max(max, elapsed);
+            Log.d(LOG_TAG, "\"" + typed.substring(0, i) + "\": " + results + " results");
+        }
+        Log.i(LOG_TAG, String.format(Locale.US,
+                "%d cached movies: average %.2f ms, max %.2f ms per keystroke search",
+                NBR_CACHED_MOVIES, total / 1e6 / typed.length(), max / 1e6));
+    }
+
+    private static List<Integer> search(String searchText) {
+        List<Integer> movieIDs = new ArrayList<>();
+        Cursor cursor = MovieContentProvider.search(sHelper.getReadableDatabase(),
+                new String[]{SearchEntry.COLUMN_MOVIE_ID}, searchText);
+        try {
+            while (cursor.moveToNext()) {
+                movieIDs.add(cursor.getInt(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return movieIDs;
+    }
+
+    private static int countSearchRows(SQLiteDatabase db, String selection) {
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + SearchEntry.TABLE_NAME +
+                " WHERE " + selection, null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(i == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+}
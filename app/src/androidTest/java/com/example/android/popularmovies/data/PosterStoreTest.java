@@ -0,0 +1,72 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.example.android.popularmovies.data;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Checks that a poster copied from a stream is stored byte for byte, so a downloaded JPEG is
+ * never encoded again.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PosterStoreTest {
+
+    //Id not used by TMDb
+    private static final int MOVIE_ID = -100000;
+    private static final String SIZE_W185 = "w185";
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+
+    @After
+    public void tearDown() {
+        PosterStore.deletePoster(mContext, MOVIE_ID, SIZE_W185);
+    }
+
+    @Test
+    public void copiedPosterKeepsOriginalBytes() throws IOException {
+        //Larger than the copy buffer
+        byte[] original = new byte[100 * 1024];
+        new Random(MOVIE_ID).nextBytes(original);
+
+        PosterStore.writePoster(mContext, MOVIE_ID, SIZE_W185, new ByteArrayInputStream(original));
+
+        assertArrayEquals(original, PosterStore.readPoster(mContext, MOVIE_ID, SIZE_W185));
+        assertFalse(new File(
+                PosterStore.getPosterFile(mContext, MOVIE_ID, SIZE_W185).getPath() + ".tmp")
+                .exists());
+    }
+}
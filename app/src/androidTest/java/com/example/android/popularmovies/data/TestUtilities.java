@@ -0,0 +1,87 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.android.popularmovies.data;
+
+import android.content.ContentValues;
+
+import com.example.android.popularmovies.data.MovieContract.MovieEntry;
+import com.example.android.popularmovies.data.MovieContract.ReviewEntry;
+import com.example.android.popularmovies.data.MovieContract.TrailerEntry;
+
+/**
+ * Values of a favorite movie with its trailers and reviews, shared by the data tests. Text that
+ * depends on the movie id or index keeps the rows unique.
+ */
+final class TestUtilities {
+
+    private TestUtilities() {
+    }
+
+    /**
+     * @param movieID The movie id.
+     * @return the values of a favorite movie with all NOT NULL columns set.
+     */
+    static ContentValues createMovieValues(int movieID) {
+        ContentValues values = new ContentValues();
+        values.put(MovieEntry.COLUMN_MOVIE_ID, movieID);
+        values.put(MovieEntry.COLUMN_MOVIE_OVERVIEW, "Overview " + movieID);
+        values.put(MovieEntry.COLUMN_MOVIE_RELEASE_DATE, "1999-10-15");
+        values.put(MovieEntry.COLUMN_MOVIE_TITLE, "Title " + movieID);
+        values.put(MovieEntry.COLUMN_MOVIE_RUNTIME, 139);
+        values.put(MovieEntry.COLUMN_MOVIE_VOTE_AVERAGE, 8.3);
+        values.put(MovieEntry.COLUMN_MOVIE_W92_POSTER_FILE, movieID + "_w92.jpg");
+        values.put(MovieEntry.COLUMN_MOVIE_W185_POSTER_FILE, movieID + "_w185.jpg");
+        values.put(MovieEntry.COLUMN_MOVIE_POSTER_PATH, "/" + movieID + ".jpg");
+        values.put(MovieEntry.COLUMN_MOVIE_FAVORITE, 1);
+        return values;
+    }
+
+    /**
+     * @param movieID The movie id.
+     * @param index   The index of the trailer within the movie.
+     * @return the values of a YouTube trailer of the movie.
+     */
+    static ContentValues createTrailerValues(int movieID, int index) {
+        ContentValues values = new ContentValues();
+        values.put(TrailerEntry.COLUMN_TRAILER_ID, movieID + "_trailer" + index);
+        values.put(TrailerEntry.COLUMN_TRAILER_KEY, "key" + index);
+        values.put(TrailerEntry.COLUMN_TRAILER_NAME, "Trailer " + index);
+        values.put(TrailerEntry.COLUMN_TRAILER_SITE, "YouTube");
+        values.put(TrailerEntry.COLUMN_TRAILER_TYPE, "Trailer");
+        values.put(TrailerEntry.COLUMN_MOVIE_ID, movieID);
+        return values;
+    }
+
+    /**
+     * @param movieID The movie id.
+     * @param index   The index of the review within the movie.
+     * @return the values of a review of the movie.
+     */
+    static ContentValues createReviewValues(int movieID, int index) {
+        ContentValues values = new ContentValues();
+        values.put(ReviewEntry.COLUMN_REVIEW_ID, movieID + "_review" + index);
+        values.put(ReviewEntry.COLUMN_REVIEW_AUTHOR, "Author " + index);
+        values.put(ReviewEntry.COLUMN_REVIEW_CONTENT, "Content of review " + index);
+        values.put(ReviewEntry.COLUMN_REVIEW_URL, "https://www.themoviedb.org/");
+        values.put(ReviewEntry.COLUMN_MOVIE_ID, movieID);
+        return values;
+    }
+}
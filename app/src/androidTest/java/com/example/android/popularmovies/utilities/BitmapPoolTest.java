@@ -0,0 +1,107 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.example.android.popularmovies.utilities;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.popularmovies.transform.CutOutTriangleTransform;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts the bitmap allocations per 100 poster binds with and without the {@link BitmapPool},
+ * and checks that a bitmap is only reused after its last reference was released.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BitmapPoolTest {
+
+    private static final String LOG_TAG = BitmapPoolTest.class.getSimpleName();
+
+    private static final int NBR_BINDS = 100;
+
+    private static final int POSTER_WIDTH = 92;
+    private static final int POSTER_HEIGHT = 138;
+
+
+    @After
+    public void tearDown() {
+        BitmapPool.setEnabled(true);
+        BitmapPool.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+    }
+
+    @Test
+    public void poolReducesAllocationsPerBind() {
+        int allocationsWithoutPool = countAllocationsPerBinds(false);
+        int allocationsWithPool = countAllocationsPerBinds(true);
+
+        Log.i(LOG_TAG, "Allocations per " + NBR_BINDS + " binds: " + allocationsWithoutPool +
+                " without pool, " + allocationsWithPool + " with pool");
+        Log.i(LOG_TAG, BitmapPool.getStatistics());
+
+        assertEquals(NBR_BINDS, allocationsWithoutPool);
+        assertTrue(allocationsWithPool < allocationsWithoutPool);
+    }
+
+    @Test
+    public void referencedBitmapIsNotReused() {
+        Bitmap bitmap = BitmapPool.get(POSTER_WIDTH, POSTER_HEIGHT, Bitmap.Config.ARGB_8888);
+        BitmapPool.acquire(bitmap);
+        BitmapPool.acquire(bitmap);
+
+        BitmapPool.release(bitmap);
+        assertNotSame(bitmap,
+                BitmapPool.get(POSTER_WIDTH, POSTER_HEIGHT, Bitmap.Config.ARGB_8888));
+
+        BitmapPool.release(bitmap);
+        assertSame(bitmap, BitmapPool.get(POSTER_WIDTH, POSTER_HEIGHT, Bitmap.Config.ARGB_8888));
+    }
+
+    /**
+     * Binds the triangle cut-out poster NBR_BINDS times, releasing each one like a recycled
+     * ViewHolder.
+     */
+    private static int countAllocationsPerBinds(boolean poolEnabled) {
+        BitmapPool.setEnabled(poolEnabled);
+        BitmapPool.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+
+        Bitmap source = Bitmap.createBitmap(POSTER_WIDTH, POSTER_HEIGHT, Bitmap.Config.ARGB_8888);
+        CutOutTriangleTransform transformation = new CutOutTriangleTransform();
+
+        int allocationsBefore = BitmapPool.getAllocationCount();
+        for (int i = 0; i < NBR_BINDS; i++) {
+            Bitmap poster = transformation.transformToPool(source);
+            BitmapPool.acquire(poster);
+            BitmapPool.release(poster);
+        }
+        return BitmapPool.getAllocationCount() - allocationsBefore;
+    }
+}
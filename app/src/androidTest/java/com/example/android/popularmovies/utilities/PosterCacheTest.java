@@ -0,0 +1,110 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.android.popularmovies.utilities;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the {@link PosterCache} stays within its byte bound, evicts the least recently
+ * used posters first and shrinks on memory pressure. The statistics are logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PosterCacheTest {
+
+    private static final String LOG_TAG = PosterCacheTest.class.getSimpleName();
+
+    private static final String SIZE_W185 = "w185";
+
+    private static final int POSTER_WIDTH = 185;
+    private static final int POSTER_HEIGHT = 277;
+
+    //Ids not used by TMDb
+    private static final int FIRST_MOVIE_ID = -100000;
+
+
+    @After
+    public void tearDown() {
+        PosterCache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+    }
+
+    @Test
+    public void cacheIsBoundedByBytes() {
+        int posterBytes = POSTER_WIDTH * POSTER_HEIGHT * 4;
+        int nbrPosters = 2 * PosterCache.getMaxSize() / posterBytes;
+
+        for (int i = 0; i < nbrPosters; i++) {
+            PosterCache.put(FIRST_MOVIE_ID + i, SIZE_W185, createPoster());
+            assertTrue(PosterCache.getSize() <= PosterCache.getMaxSize());
+        }
+
+        //The first posters were evicted, the last ones are still cached
+        assertNull(PosterCache.get(FIRST_MOVIE_ID, SIZE_W185));
+        assertNotNull(PosterCache.get(FIRST_MOVIE_ID + nbrPosters - 1, SIZE_W185));
+
+        Log.i(LOG_TAG, PosterCache.getStatistics());
+    }
+
+    @Test
+    public void recentlyUsedPosterIsKept() {
+        Bitmap first = createPoster();
+        PosterCache.put(FIRST_MOVIE_ID, SIZE_W185, first);
+
+        int nbrPosters = PosterCache.getMaxSize() / PosterCache.getByteCount(first) - 1;
+        for (int i = 1; i < 2 * nbrPosters; i++) {
+            //Using the first poster keeps it at the head of the LRU order
+            assertSame(first, PosterCache.get(FIRST_MOVIE_ID, SIZE_W185));
+            PosterCache.put(FIRST_MOVIE_ID + i, SIZE_W185, createPoster());
+        }
+
+        assertSame(first, PosterCache.get(FIRST_MOVIE_ID, SIZE_W185));
+    }
+
+    @Test
+    public void memoryPressureShrinksCache() {
+        int nbrPosters = PosterCache.getMaxSize() / (POSTER_WIDTH * POSTER_HEIGHT * 4);
+        for (int i = 0; i < nbrPosters; i++) {
+            PosterCache.put(FIRST_MOVIE_ID + i, SIZE_W185, createPoster());
+        }
+
+        PosterCache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        assertTrue(PosterCache.getSize() <= PosterCache.getMaxSize() / 2);
+
+        PosterCache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_MODERATE);
+        assertEquals(0, PosterCache.getSize());
+    }
+
+    private static Bitmap createPoster() {
+        return Bitmap.createBitmap(POSTER_WIDTH, POSTER_HEIGHT, Bitmap.Config.ARGB_8888);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.example.android.popularmovies.utilities;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the {@link PosterDecoder} decodes no more pixels than requested and logs the
+ * bytes per poster for the full and the downsampled decode.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PosterDecoderTest {
+
+    private static final String LOG_TAG = PosterDecoderTest.class.getSimpleName();
+
+    private static final int POSTER_WIDTH = 185;
+    private static final int POSTER_HEIGHT = 277;
+
+    //Size of the small poster view on a mdpi device
+    private static final int SLOT_WIDTH = 60;
+    private static final int SLOT_HEIGHT = 90;
+
+
+    @After
+    public void tearDown() {
+        BitmapPool.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+    }
+
+    @Test
+    public void sampleSizeKeepsRequestedSize() {
+        assertEquals(1, PosterDecoder.calculateInSampleSize(185, 277, 0, 0));
+        assertEquals(1, PosterDecoder.calculateInSampleSize(185, 277, 185, 277));
+        assertEquals(1, PosterDecoder.calculateInSampleSize(185, 277, 100, 0));
+        assertEquals(2, PosterDecoder.calculateInSampleSize(185, 277, 92, 0));
+        assertEquals(2, PosterDecoder.calculateInSampleSize(185, 277, 60, 90));
+        assertEquals(4, PosterDecoder.calculateInSampleSize(185, 277, 0, 60));
+    }
+
+    @Test
+    public void posterIsDownsampledToRequestedSize() {
+        byte[] jpeg = createJpeg();
+
+        Bitmap full = PosterDecoder.decodeSampled(null, jpeg, 0, 0, Bitmap.Config.ARGB_8888);
+        Bitmap sampled = PosterDecoder.decodeSampled(null, jpeg, SLOT_WIDTH, SLOT_HEIGHT,
+                Bitmap.Config.ARGB_8888);
+        Bitmap opaque = PosterDecoder.decodeSampled(null, jpeg, SLOT_WIDTH, SLOT_HEIGHT,
+                Bitmap.Config.RGB_565);
+
+        assertNotNull(full);
+        assertNotNull(sampled);
+        assertNotNull(opaque);
+        assertEquals(POSTER_WIDTH, full.getWidth());
+        assertEquals(POSTER_HEIGHT, full.getHeight());
+
+        //Never smaller than the view, never more than a pixel larger
+        assertTrue(sampled.getWidth() >= SLOT_WIDTH && sampled.getWidth() <= SLOT_WIDTH + 1);
+        assertTrue(sampled.getHeight() >= SLOT_HEIGHT && sampled.getHeight() <= SLOT_HEIGHT + 1);
+        assertEquals(Bitmap.Config.RGB_565, opaque.getConfig());
+
+        Log.i(LOG_TAG, String.format(Locale.US,
+                "Bytes per poster: %d full, %d downsampled, %d downsampled RGB_565",
+                PosterCache.getByteCount(full), sampled.getByteCount(),
+                opaque.getByteCount()));
+    }
+
+    private static byte[] createJpeg() {
+        Bitmap poster = Bitmap.createBitmap(POSTER_WIDTH, POSTER_HEIGHT, Bitmap.Config.ARGB_8888);
+        poster.eraseColor(Color.DKGRAY);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        poster.compress(Bitmap.CompressFormat.JPEG, 90, outputStream);
+        poster.recycle();
+        return outputStream.toByteArray();
+    }
+}
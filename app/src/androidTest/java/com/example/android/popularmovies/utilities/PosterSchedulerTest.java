@@ -0,0 +1,107 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.example.android.popularmovies.utilities;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.View;
+import android.widget.ImageView;
+
+import com.example.android.popularmovies.R;
+import com.example.android.popularmovies.adapters.MovieAdapter;
+import com.example.android.popularmovies.models.Movie;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the {@link PosterScheduler} defers poster loads while the list flings, starts
+ * them with a thumbnail when it settles and forgets the loads of recycled cells. The
+ * statistics are logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PosterSchedulerTest {
+
+    private static final String LOG_TAG = PosterSchedulerTest.class.getSimpleName();
+
+    //Nothing listens on the port, so the load fails without downloading
+    private static final String POSTER_URL = "http://localhost:1/w185/poster.jpg";
+    private static final String THUMBNAIL_URL = "http://localhost:1/w92/poster.jpg";
+
+
+    @Test
+    public void flingDefersLoads() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Context context = InstrumentationRegistry.getTargetContext();
+                MovieAdapter adapter = new MovieAdapter(context,
+                        new MovieAdapter.MovieAdapterOnClickHandler() {
+                            @Override
+                            public void onClick(Movie movie, View view) {
+                            }
+                        });
+                RecyclerView recyclerView = new RecyclerView(context);
+                GridLayoutManager layoutManager = new GridLayoutManager(context, 2);
+                recyclerView.setLayoutManager(layoutManager);
+                PosterScheduler scheduler =
+                        new PosterScheduler(context, adapter, layoutManager, 2);
+                ImageView poster = new ImageView(context);
+
+                scheduler.onScrollStateChanged(recyclerView,
+                        RecyclerView.SCROLL_STATE_SETTLING);
+                scheduler.load(poster, POSTER_URL, THUMBNAIL_URL, R.drawable.placeholder_185_277);
+                assertEquals(1, scheduler.getDeferredLoadCount());
+                assertEquals(0, scheduler.getPendingLoadCount());
+
+                //A recycled cell is never loaded
+                scheduler.cancel(poster);
+                assertEquals(0, scheduler.getDeferredLoadCount());
+
+                scheduler.load(poster, POSTER_URL, THUMBNAIL_URL, R.drawable.placeholder_185_277);
+                scheduler.onScrollStateChanged(recyclerView, RecyclerView.SCROLL_STATE_IDLE);
+                assertEquals(0, scheduler.getDeferredLoadCount());
+                assertEquals(1, scheduler.getPendingLoadCount());
+                assertEquals(1, scheduler.getThumbnailCount());
+
+                //The recycled cell cancels the thumbnail and the poster
+                scheduler.cancel(poster);
+                assertEquals(0, scheduler.getPendingLoadCount());
+                assertEquals(0, scheduler.getThumbnailCount());
+
+                scheduler.setProgressiveLoadingEnabled(false);
+                scheduler.load(poster, POSTER_URL, THUMBNAIL_URL, R.drawable.placeholder_185_277);
+                assertEquals(0, scheduler.getThumbnailCount());
+                scheduler.cancel(poster);
+
+                Log.i(LOG_TAG, scheduler.getStatistics());
+                scheduler.shutdown();
+            }
+        });
+    }
+}
@@ -0,0 +1,128 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+package com.example.android.popularmovies.utilities;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assume.assumeFalse;
+
+/**
+ * Checks that the {@link PosterSizeSelector} picks the smallest poster size filling the cell and
+ * steps down on slow and up on fast networks. The decisions are logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PosterSizeSelectorTest {
+
+    private static final String LOG_TAG = PosterSizeSelectorTest.class.getSimpleName();
+
+    private static final String[] POSTER_SIZES =
+            {"w92", "w154", "w185", "w342", "w500", "w780", "original"};
+
+    //A 20 KB poster in 1 second and in 10 milliseconds
+    private static final long POSTER_BYTES = 20 * 1024;
+    private static final long SLOW_MILLIS = 1000;
+    private static final long FAST_MILLIS = 10;
+
+
+    @Before
+    public void setUp() {
+        //The selection on metered networks is always one size smaller
+        assumeFalse(ConnectivityMonitor.isMetered());
+        PosterSizeSelector.setConfiguration(NetworkUtils.IMDB_IMAGE_BASE_URL, POSTER_SIZES);
+        PosterSizeSelector.resetThroughput();
+    }
+
+    @After
+    public void tearDown() {
+        PosterSizeSelector.resetThroughput();
+        PosterSizeSelector.setAdaptiveEnabled(true);
+    }
+
+    @Test
+    public void selectsSmallestSizeFillingCell() {
+        assertEquals("w185", PosterSizeSelector.selectPosterSize(160));
+        assertEquals("w185", PosterSizeSelector.selectPosterSize(185));
+        assertEquals("w342", PosterSizeSelector.selectPosterSize(186));
+        //Wider than all sizes
+        assertEquals("w780", PosterSizeSelector.selectPosterSize(1200));
+        Log.d(LOG_TAG, PosterSizeSelector.getStatistics());
+    }
+
+    @Test
+    public void stepsDownOnSlowNetwork() {
+        PosterSizeSelector.onDownloadFinished(POSTER_BYTES, SLOW_MILLIS);
+        assertEquals("w154", PosterSizeSelector.selectPosterSize(160));
+        //Not smaller than the smallest size
+        assertEquals("w92", PosterSizeSelector.selectPosterSize(80));
+        Log.d(LOG_TAG, PosterSizeSelector.getStatistics());
+    }
+
+    @Test
+    public void stepsUpOnFastNetwork() {
+        PosterSizeSelector.onDownloadFinished(POSTER_BYTES * 10, FAST_MILLIS);
+        assertEquals("w342", PosterSizeSelector.selectPosterSize(160));
+        //Not larger than the largest size
+        assertEquals("w780", PosterSizeSelector.selectPosterSize(1200));
+        Log.d(LOG_TAG, PosterSizeSelector.getStatistics());
+    }
+
+    @Test
+    public void keepsSlowSizeUntilWellAboveThreshold() {
+        PosterSizeSelector.onDownloadFinished(POSTER_BYTES, SLOW_MILLIS);
+        assertEquals("w154", PosterSizeSelector.selectPosterSize(160));
+
+        //Estimate about 120 KB/s, above the threshold but within the hysteresis
+        PosterSizeSelector.onDownloadFinished(353 * 1024, 1000);
+        assertEquals("w154", PosterSizeSelector.selectPosterSize(160));
+
+        //Estimate about 380 KB/s
+        PosterSizeSelector.onDownloadFinished(1000 * 1024, 1000);
+        assertEquals("w185", PosterSizeSelector.selectPosterSize(160));
+        Log.d(LOG_TAG, PosterSizeSelector.getStatistics());
+    }
+
+    @Test
+    public void substitutesLargerSizesFirst() {
+        assertEquals(Arrays.asList("w185", "w342", "w500", "w780", "w154", "w92"),
+                PosterSizeSelector.getSubstituteSizes("w185"));
+    }
+
+    @Test
+    public void usesW185WhenDisabled() {
+        PosterSizeSelector.setAdaptiveEnabled(false);
+        assertEquals("w185", PosterSizeSelector.selectPosterSize(500));
+    }
+
+    @Test
+    public void thumbnailIsSmallestSize() {
+        assertEquals("w92", PosterSizeSelector.getThumbnailSize("w185"));
+        assertNull(PosterSizeSelector.getThumbnailSize("w92"));
+    }
+}
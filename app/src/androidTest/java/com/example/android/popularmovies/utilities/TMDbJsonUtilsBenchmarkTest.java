@@ -0,0 +1,176 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.example.android.popularmovies.utilities;
+
+import android.os.Debug;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.popularmovies.models.Movie;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Scanner;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the String/org.json parser with the streaming parser of {@link TMDbJsonUtils} on a
+ * large movie detail response with many reviews. Parse time and allocated bytes are logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TMDbJsonUtilsBenchmarkTest {
+
+    private static final String LOG_TAG = TMDbJsonUtilsBenchmarkTest.class.getSimpleName();
+
+    private static final int MOVIE_ID = 550;
+    private static final int NBR_TRAILERS = 20;
+    private static final int NBR_REVIEWS = 500;
+    private static final int REVIEW_CONTENT_LENGTH = 4000;
+    private static final int ITERATIONS = 10;
+
+    private static byte[] sResponseBytes;
+
+
+    @BeforeClass
+    public static void createResponse() throws Exception {
+
+        StringBuilder content = new StringBuilder();
+        while (content.length() < REVIEW_CONTENT_LENGTH) {
+            content.append("Lorem ipsum movie was very bad and amazing. ");
+        }
+
+        JSONArray videos = new JSONArray();
+        for (int i = 0; i < NBR_TRAILERS; i++) {
+            videos.put(new JSONObject()
+                    .put("id", "video" + i)
+                    .put("key", "key" + i)
+                    .put("name", "Trailer " + i)
+                    .put("site", "YouTube")
+                    .put("type", "Trailer"));
+        }
+
+        JSONArray reviews = new JSONArray();
+        for (int i = 0; i < NBR_REVIEWS; i++) {
+            reviews.put(new JSONObject()
+                    .put("id", "review" + i)
+                    .put("author", "Author " + i)
+                    .put("content", content.toString())
+                    .put("url", "https://www.themoviedb.org/review/" + i));
+        }
+
+        JSONObject movie = new JSONObject()
+                .put("id", MOVIE_ID)
+                .put("overview", "Overview")
+                .put("release_date", "1999-10-15")
+                .put("title", "Title")
+                .put("runtime", 139)
+                .put("vote_average", 8.3)
+                .put("videos", new JSONObject().put("results", videos))
+                .put("reviews", new JSONObject().put("page", 1).put("results", reviews));
+
+        sResponseBytes = movie.toString().getBytes("UTF-8");
+        Log.d(LOG_TAG, "Response size: " + sResponseBytes.length / 1024 + " KB");
+    }
+
+    @Test
+    public void bothParsersReadSameMovie() throws Exception {
+
+        Movie fromJson = TMDbJsonUtils.getMovieFromJson(
+                new String(sResponseBytes, "UTF-8"), new Movie(MOVIE_ID, null, null, null, 0));
+        Movie fromStream = TMDbJsonUtils.readMovieFromStream(
+                new ByteArrayInputStream(sResponseBytes), new Movie(MOVIE_ID, null, null, null, 0));
+
+        assertEquals(fromJson.getTitle(), fromStream.getTitle());
+        assertEquals(fromJson.getRuntime(), fromStream.getRuntime());
+        assertEquals(fromJson.getVoteAverage(), fromStream.getVoteAverage(), 0);
+        assertEquals(fromJson.getTrailerArray().length, fromStream.getTrailerArray().length);
+        assertEquals(fromJson.getReviewArray().length, fromStream.getReviewArray().length);
+        assertEquals(fromJson.getReviewArray()[NBR_REVIEWS - 1].getContent(),
+                fromStream.getReviewArray()[NBR_REVIEWS - 1].getContent());
+    }
+
+    @Test
+    public void compareParsers() throws Exception {
+
+        //Warm up both code paths
+        parseWithJson();
+        parseWithStream();
+
+        long[] json = measure(false);
+        long[] stream = measure(true);
+
+        Log.i(LOG_TAG, String.format(Locale.US,
+                "org.json: %.2f ms, %d KB allocated per parse", json[0] / 1e6, json[1] / 1024));
+        Log.i(LOG_TAG, String.format(Locale.US,
+                "stream:   %.2f ms, %d KB allocated per parse", stream[0] / 1e6, stream[1] / 1024));
+    }
+
+    /**
+     * @param stream True to measure the streaming parser, false for the org.json parser.
+     * @return Average nanoseconds and allocated bytes per parse.
+     */
+    @SuppressWarnings("deprecation")
+    private static long[] measure(boolean stream) throws Exception {
+
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocSize();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            if (stream) {
+                parseWithStream();
+            } else {
+                parseWithJson();
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        long allocated = Debug.getThreadAllocSize();
+        Debug.stopAllocCounting();
+
+        return new long[]{elapsed / ITERATIONS, allocated / ITERATIONS};
+    }
+
+    /**
+     * The previous path: read the whole stream into a String, then build a JSONObject tree.
+     */
+    private static Movie parseWithJson() throws Exception {
+        InputStream in = new ByteArrayInputStream(sResponseBytes);
+        Scanner scanner = new Scanner(in);
+        scanner.useDelimiter("\\A");
+        return TMDbJsonUtils.getMovieFromJson(
+                scanner.next(), new Movie(MOVIE_ID, null, null, null, 0));
+    }
+
+    private static Movie parseWithStream() throws Exception {
+        return TMDbJsonUtils.readMovieFromStream(
+                new ByteArrayInputStream(sResponseBytes), new Movie(MOVIE_ID, null, null, null, 0));
+    }
+}
@@ -22,10 +22,8 @@
 package com.example.android.popularmovies;
 
 import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.drawable.BitmapDrawable;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.support.design.widget.CollapsingToolbarLayout;
@@ -54,11 +52,10 @@ import com.example.android.popularmovies.data.MovieContract;
 import com.example.android.popularmovies.models.Movie;
 import com.example.android.popularmovies.models.Review;
 import com.example.android.popularmovies.models.Trailer;
-import com.example.android.popularmovies.transform.CutOutTriangleTransform;
 import com.example.android.popularmovies.utilities.NetworkUtils;
+import com.example.android.popularmovies.utilities.PosterDecoder;
 import com.squareup.picasso.Picasso;
 
-import java.io.ByteArrayOutputStream;
 import java.util.Locale;
 
 /**
@@ -71,57 +68,40 @@ public class DetailActivity
         TrailerAdapter.TrailerAdapterOnClickHandler,
         ReviewAdapter.ReviewAdapterOnClickHandler {
 
-    // Projection and indices for movie details
-    public static final String[] MOVIE_DETAIL_PROJECTION = {
-            MovieContract.MovieEntry.COLUMN_MOVIE_ID,
-            MovieContract.MovieEntry.COLUMN_MOVIE_W92_POSTER,
-            MovieContract.MovieEntry.COLUMN_MOVIE_W185_POSTER,
-            MovieContract.MovieEntry.COLUMN_MOVIE_POSTER_PATH,
+    // Projection and indices for the movie bundle: movie details, trailers and reviews
+    public static final String[] MOVIE_BUNDLE_PROJECTION = {
+            MovieContract.MovieBundleEntry.COLUMN_ROW_TYPE,
             MovieContract.MovieEntry.COLUMN_MOVIE_OVERVIEW,
             MovieContract.MovieEntry.COLUMN_MOVIE_RELEASE_DATE,
             MovieContract.MovieEntry.COLUMN_MOVIE_RUNTIME,
             MovieContract.MovieEntry.COLUMN_MOVIE_TITLE,
             MovieContract.MovieEntry.COLUMN_MOVIE_VOTE_AVERAGE,
-            MovieContract.MovieEntry.COLUMN_MOVIE_FAVORITE
-    };
-
-    public static final int INDEX_MOVIE_ID = 0;
-    public static final int INDEX_MOVIE_W92_POSTER = 1;
-    public static final int INDEX_MOVIE_W185_POSTER = 2;
-    public static final int INDEX_MOVIE_POSTER_PATH = 3;
-    public static final int INDEX_MOVIE_OVERVIEW = 4;
-    public static final int INDEX_MOVIE_RELEASE_DATE = 5;
-    public static final int INDEX_MOVIE_RUNTIME = 6;
-    public static final int INDEX_MOVIE_TITLE = 7;
-    public static final int INDEX_MOVIE_VOTE_AVERAGE = 8;
-    public static final int INDEX_MOVIE_FAVORITE = 9;
-
-    //Projection and indices for trailers
-    public static final String[] TRAILERS_PROJECTION = {
             MovieContract.TrailerEntry.COLUMN_TRAILER_ID,
             MovieContract.TrailerEntry.COLUMN_TRAILER_KEY,
             MovieContract.TrailerEntry.COLUMN_TRAILER_NAME,
             MovieContract.TrailerEntry.COLUMN_TRAILER_SITE,
-            MovieContract.TrailerEntry.COLUMN_TRAILER_TYPE
-    };
-
-    public static final int INDEX_TRAILER_ID = 0;
-    public static final int INDEX_TRAILER_KEY = 1;
-    public static final int INDEX_TRAILER_NAME = 2;
-    public static final int INDEX_TRAILER_SITE = 3;
-    public static final int INDEX_TRAILER_TYPE = 4;
-
-    //Projection and indices for reviews
-    public static final String[] REVIEWS_PROJECTION = {
+            MovieContract.TrailerEntry.COLUMN_TRAILER_TYPE,
             MovieContract.ReviewEntry.COLUMN_REVIEW_ID,
             MovieContract.ReviewEntry.COLUMN_REVIEW_AUTHOR,
             MovieContract.ReviewEntry.COLUMN_REVIEW_CONTENT,
             MovieContract.ReviewEntry.COLUMN_REVIEW_URL
     };
-    public static final int INDEX_REVIEW_ID = 0;
-    public static final int INDEX_REVIEW_AUTHOR = 1;
-    public static final int INDEX_REVIEW_CONTENT = 2;
-    public static final int INDEX_REVIEW_URL = 3;
+
+    public static final int INDEX_BUNDLE_ROW_TYPE = 0;
+    public static final int INDEX_MOVIE_OVERVIEW = 1;
+    public static final int INDEX_MOVIE_RELEASE_DATE = 2;
+    public static final int INDEX_MOVIE_RUNTIME = 3;
+    public static final int INDEX_MOVIE_TITLE = 4;
+    public static final int INDEX_MOVIE_VOTE_AVERAGE = 5;
+    public static final int INDEX_TRAILER_ID = 6;
+    public static final int INDEX_TRAILER_KEY = 7;
+    public static final int INDEX_TRAILER_NAME = 8;
+    public static final int INDEX_TRAILER_SITE = 9;
+    public static final int INDEX_TRAILER_TYPE = 10;
+    public static final int INDEX_REVIEW_ID = 11;
+    public static final int INDEX_REVIEW_AUTHOR = 12;
+    public static final int INDEX_REVIEW_CONTENT = 13;
+    public static final int INDEX_REVIEW_URL = 14;
 
     private static final String LOG_TAG = DetailActivity.class.getSimpleName();
 
@@ -246,8 +226,9 @@ public class DetailActivity
             collapsingToolbarLayout.setExpandedTitleColor(
                     ContextCompat.getColor(this, android.R.color.transparent));
 
-            //Load the data
-            new MovieDetailsQueryTask(this, new MovieDetailsQueryTaskListener()).execute(mMovie);
+            //Load the data (in parallel, so a slow download does not hold up other tasks)
+            new MovieDetailsQueryTask(this, new MovieDetailsQueryTaskListener())
+                    .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, mMovie);
         }
 
     }
@@ -298,18 +279,7 @@ public class DetailActivity
 
         } else {
 
-            if (mMovie.getW92Poster() == null) {
-                //Save the image bytes in movie in case it is added to favorites
-                Bitmap bitmap = ((BitmapDrawable) mIVw92Poster.getDrawable()).getBitmap();
-                ByteArrayOutputStream binOutStream = new ByteArrayOutputStream();
-                bitmap.compress(Bitmap.CompressFormat.JPEG, 85, binOutStream);
-                byte[] imageInByte = binOutStream.toByteArray();
-                mMovie.setW92Poster(imageInByte);
-
-                Log.d(LOG_TAG, "W92 poster added to movie. Size is " + binOutStream.size() / 1024 + " KB.");
-            }
-
-            //Add movie to database
+            //Add movie to database. The posters are copied from their downloads.
             Log.d(LOG_TAG, "Adding movie: " + mMovie.getMovieID());
             new MovieInsertTask(this, new MovieInsertTaskListener()).execute(mMovie);
         }
@@ -348,18 +318,23 @@ public class DetailActivity
                 //If movie is in the favorites, display poster from cache.
                 //Otherwise display poster from "internet".
                 //Set the favorites button accordingly
-                String posterURLString =
-                        NetworkUtils.IMDB_IMAGE_BASE_URL +
-                                NetworkUtils.IMDB_IMAGE_W92_SIZE +
-                                movie.getPosterPath();
+                String posterURLString = NetworkUtils.buildPosterURLString(
+                        NetworkUtils.IMDB_IMAGE_W92_SIZE, movie.getPosterPath());
 
                 if (movie.isFavorite()) {
 
 
-                    //Image is in database
-                    byte[] imageBytes = movie.getW185Poster();
-                    Bitmap bitmap = BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
-                    mIVw92Poster.setImageBitmap(new CutOutTriangleTransform().transform(bitmap));
+                    //Image is in database, decode it in the background, downsampled to the
+                    //size of the poster view. The view cuts out the corner while drawing.
+                    if (movie.getW185Poster() != null) {
+                        PosterDecoder.loadPoster(movie.getMovieID(),
+                                NetworkUtils.IMDB_IMAGE_W185_SIZE, movie.getW185Poster(),
+                                mIVw92Poster, R.drawable.placeholder_92_138, null);
+                    } else {
+                        PosterDecoder.loadStoredPoster(DetailActivity.this, movie.getMovieID(),
+                                NetworkUtils.IMDB_IMAGE_W185_SIZE, mIVw92Poster,
+                                R.drawable.placeholder_92_138, null);
+                    }
 
                     mTVIsFavorite.setText(getString(R.string.remove_from_favorite));
                     mTVIsFavorite.setCompoundDrawablesWithIntrinsicBounds(android.R.drawable.btn_star_big_on, 0, 0, 0);
@@ -371,7 +346,6 @@ public class DetailActivity
                     //get image from image server
                     Picasso.with(DetailActivity.this)
                             .load(posterURLString)
-                            .transform(new CutOutTriangleTransform())
                             .placeholder(R.drawable.placeholder_92_138)
                             .error(R.drawable.placeholder_92_138)
                             .into(mIVw92Poster);
@@ -460,6 +434,10 @@ public class DetailActivity
          */
         @Override
         public void onTaskComplete(Uri uri) {
+            if (uri == null) {
+                Log.d(LOG_TAG, "Movie not inserted");
+                return;
+            }
             mTVIsFavorite.setText(getString(R.string.remove_from_favorite));
             mTVIsFavorite.setCompoundDrawablesWithIntrinsicBounds(
                     android.R.drawable.btn_star_big_on, 0, 0, 0
@@ -21,42 +21,50 @@
 
 package com.example.android.popularmovies;
 
+import android.content.ContentUris;
 import android.content.Context;
 import android.content.Intent;
 import android.content.res.Configuration;
-import android.graphics.Bitmap;
-import android.graphics.drawable.BitmapDrawable;
+import android.database.ContentObserver;
+import android.database.Cursor;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
 import android.os.Parcelable;
 import android.support.annotation.IntDef;
 import android.support.v4.view.MenuItemCompat;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
-import android.widget.ImageView;
 import android.widget.ProgressBar;
 import android.widget.Spinner;
 import android.widget.TextView;
 
 import com.example.android.popularmovies.adapters.MovieAdapter;
 import com.example.android.popularmovies.asyncTasks.AsyncTaskListener;
+import com.example.android.popularmovies.asyncTasks.CachedMoviesInsertTask;
+import com.example.android.popularmovies.asyncTasks.CachedMoviesQueryTask;
 import com.example.android.popularmovies.asyncTasks.MoviesLocalQueryTask;
 import com.example.android.popularmovies.asyncTasks.MoviesQueryTask;
+import com.example.android.popularmovies.asyncTasks.SearchMoviesTask;
 import com.example.android.popularmovies.data.MovieContract;
 import com.example.android.popularmovies.models.Movie;
+import com.example.android.popularmovies.utilities.ConnectivityMonitor;
+import com.example.android.popularmovies.utilities.MoviePager;
 import com.example.android.popularmovies.utilities.NetworkUtils;
+import com.example.android.popularmovies.utilities.PosterScheduler;
+import com.example.android.popularmovies.utilities.PosterSizeSelector;
 
-import java.io.ByteArrayOutputStream;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
-import java.net.URL;
 
 /**
  * {@link MainActivity} displaying selectable movie posters in a grid (based on LinearLayout).
@@ -65,22 +73,58 @@ import java.net.URL;
 
 public class MainActivity extends AppCompatActivity implements
         AdapterView.OnItemSelectedListener,
-        MovieAdapter.MovieAdapterOnClickHandler {
+        MovieAdapter.MovieAdapterOnClickHandler,
+        ConnectivityMonitor.ConnectivityListener {
 
     // Projection and indices for movies
     public static final String[] MOVIES_PROJECTION = {
             MovieContract.MovieEntry.COLUMN_MOVIE_ID,
             MovieContract.MovieEntry.COLUMN_MOVIE_POSTER_PATH,
-            MovieContract.MovieEntry.COLUMN_MOVIE_W92_POSTER,
-            MovieContract.MovieEntry.COLUMN_MOVIE_W185_POSTER,
+            MovieContract.MovieEntry.COLUMN_MOVIE_W185_POSTER_FILE,
             MovieContract.MovieEntry.COLUMN_MOVIE_FAVORITE
     };
 
     public static final int INDEX_MOVIE_ID = 0;
     public static final int INDEX_MOVIE_POSTER_PATH = 1;
-    public static final int INDEX_MOVIE_W92_POSTER = 2;
-    public static final int INDEX_MOVIE_W185_POSTER = 3;
-    public static final int INDEX_MOVIE_FAVORITE = 4;
+    public static final int INDEX_MOVIE_W185_POSTER_FILE = 2;
+    public static final int INDEX_MOVIE_FAVORITE = 3;
+
+    // Projection and indices for cached popular and top-rated movies
+    public static final String[] CACHED_MOVIES_PROJECTION = {
+            MovieContract.CachedMovieEntry.TABLE_NAME + "." +
+                    MovieContract.CachedMovieEntry.COLUMN_MOVIE_ID,
+            MovieContract.CachedMovieEntry.COLUMN_MOVIE_POSTER_PATH,
+            MovieContract.CachedMovieEntry.COLUMN_MOVIE_OVERVIEW,
+            MovieContract.CachedMovieEntry.COLUMN_MOVIE_RELEASE_DATE,
+            MovieContract.CachedMovieEntry.COLUMN_MOVIE_TITLE,
+            MovieContract.CachedMovieEntry.COLUMN_MOVIE_VOTE_AVERAGE
+    };
+
+    public static final int INDEX_CACHED_MOVIE_ID = 0;
+    public static final int INDEX_CACHED_MOVIE_POSTER_PATH = 1;
+    public static final int INDEX_CACHED_MOVIE_OVERVIEW = 2;
+    public static final int INDEX_CACHED_MOVIE_RELEASE_DATE = 3;
+    public static final int INDEX_CACHED_MOVIE_TITLE = 4;
+    public static final int INDEX_CACHED_MOVIE_VOTE_AVERAGE = 5;
+
+    // Projection and indices for search results
+    public static final String[] SEARCH_PROJECTION = {
+            MovieContract.SearchEntry.COLUMN_MOVIE_ID,
+            MovieContract.SearchEntry.COLUMN_MOVIE_POSTER_PATH,
+            MovieContract.SearchEntry.COLUMN_MOVIE_OVERVIEW,
+            MovieContract.SearchEntry.COLUMN_MOVIE_RELEASE_DATE,
+            MovieContract.SearchEntry.COLUMN_MOVIE_TITLE,
+            MovieContract.SearchEntry.COLUMN_MOVIE_VOTE_AVERAGE,
+            MovieContract.SearchEntry.COLUMN_MOVIE_FAVORITE
+    };
+
+    public static final int INDEX_SEARCH_MOVIE_ID = 0;
+    public static final int INDEX_SEARCH_MOVIE_POSTER_PATH = 1;
+    public static final int INDEX_SEARCH_MOVIE_OVERVIEW = 2;
+    public static final int INDEX_SEARCH_MOVIE_RELEASE_DATE = 3;
+    public static final int INDEX_SEARCH_MOVIE_TITLE = 4;
+    public static final int INDEX_SEARCH_MOVIE_VOTE_AVERAGE = 5;
+    public static final int INDEX_SEARCH_MOVIE_FAVORITE = 6;
 
 
     //Define three queries: popular, top rated and favorite
@@ -96,11 +140,19 @@ public class MainActivity extends AppCompatActivity implements
 
     private static final String LOG_TAG = MainActivity.class.getSimpleName();
 
+    //No single movie changed, see MoviesLocalQueryTaskListener
+    private static final int NO_MOVIE_ID = -1;
+
+    //Wait for a typing pause before searching
+    private static final long SEARCH_DEBOUNCE_MILLIS = 250;
+
 
     private MovieAdapter mMovieAdapter;
     private RecyclerView mRecyclerViewMovies;
     private Parcelable mRecyclerViewMoviesState;
     private GridLayoutManager mLayoutManager;
+    private MoviePager mMoviePager;
+    private PosterScheduler mPosterScheduler;
 
     private ProgressBar mLoadingIndicator;
 
@@ -109,6 +161,25 @@ public class MainActivity extends AppCompatActivity implements
 
     private int mMovieQuery;
 
+    //True if the last network query failed, so it is retried on reconnect
+    private boolean mNetworkQueryFailed;
+
+    //Cached snapshot of the popular or top-rated list currently displayed, if any
+    private Movie[] mCachedMovies;
+
+    //Search text while the search view is expanded, otherwise null
+    private String mSearchText;
+    private SearchMoviesTask mSearchTask;
+    private final Handler mSearchHandler = new Handler();
+    private final Runnable mSearchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            searchMovies();
+        }
+    };
+
+    private final FavoritesObserver mFavoritesObserver = new FavoritesObserver(new Handler());
+
 
     /**
      * Sets up {@link MainActivity} and initially queries database.
@@ -135,18 +206,62 @@ public class MainActivity extends AppCompatActivity implements
         mRecyclerViewMovies.setLayoutManager(mLayoutManager);
         mMovieAdapter = new MovieAdapter(this, this);
 
+        //The poster size is selected by the cell width, estimated until the grid is laid out
+        mMovieAdapter.setPosterWidth(
+                getResources().getDisplayMetrics().widthPixels / mLayoutManager.getSpanCount());
+        mRecyclerViewMovies.addOnLayoutChangeListener(new View.OnLayoutChangeListener() {
+            @Override
+            public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                                       int oldLeft, int oldTop, int oldRight, int oldBottom) {
+                int width = right - left - v.getPaddingLeft() - v.getPaddingRight();
+                if (width > 0) {
+                    mMovieAdapter.setPosterWidth(width / mLayoutManager.getSpanCount());
+                }
+            }
+        });
+
         //Setting the adapter will execute notifyDataSetChanged, so no need to query twice
         mRecyclerViewMovies.setAdapter(mMovieAdapter);
+
+        //Load popular and top-rated movies page by page while scrolling
+        mMoviePager = new MoviePager(this, mMovieAdapter, mLayoutManager,
+                getResources().getInteger(R.integer.movies_prefetch_distance),
+                new MoviesQueryTaskListener());
+        mRecyclerViewMovies.addOnScrollListener(mMoviePager);
+
+        //Defer poster downloads while flinging and prefetch the next rows
+        mPosterScheduler = new PosterScheduler(this, mMovieAdapter, mLayoutManager,
+                getResources().getInteger(R.integer.poster_prefetch_rows));
+        mMovieAdapter.setPosterScheduler(mPosterScheduler);
+        mRecyclerViewMovies.addOnScrollListener(mPosterScheduler);
         //Picasso.with(this).setIndicatorsEnabled(true);
+
+        //Favorites added or removed (e.g. in the DetailActivity) update the favorites grid
+        getContentResolver().registerContentObserver(MovieContract.MovieEntry.CONTENT_URI,
+                true, mFavoritesObserver);
     }
 
     @Override
-    protected void onResume() {
-        super.onResume();
-        if (mMovieQuery == FAVORITE_MOVIES) {
-            Log.d(LOG_TAG, "Querying favorite database afresh");
-            queryMovieDatabase(FAVORITE_MOVIES);
-        }
+    protected void onStart() {
+        super.onStart();
+        ConnectivityMonitor.addListener(this);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        ConnectivityMonitor.removeListener(this);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        getContentResolver().unregisterContentObserver(mFavoritesObserver);
+        //Closes the favorites cursor
+        mMovieAdapter.setMovieData(null);
+        mPosterScheduler.shutdown();
+        Log.d(LOG_TAG, mPosterScheduler.getStatistics());
+        Log.d(LOG_TAG, PosterSizeSelector.getStatistics());
     }
 
     /**
@@ -188,9 +303,10 @@ public class MainActivity extends AppCompatActivity implements
     /**
      * Depending on the movie query either
      * <p>
-     * - Constructs the URL (using {@link NetworkUtils}) and fires off
-     * an AsyncTask to perform the GET request using our {@link MoviesQueryTask}.
-     * If there is no internet connection a message is displayed.
+     * - Displays the cached snapshot of the list read by {@link CachedMoviesQueryTask} and starts
+     * the {@link MoviePager}, which fires off an AsyncTask to perform the GET request using our
+     * {@link MoviesQueryTask} for each page. The first page replaces the snapshot if it differs.
+     * If there is no internet connection and no snapshot a message is displayed.
      * <p>
      * - Fires off an AsyncTask to perform a query on local storage
      * ({@link com.example.android.popularmovies.data.MovieContentProvider}) using
@@ -201,21 +317,53 @@ public class MainActivity extends AppCompatActivity implements
     private void queryMovieDatabase(@MOVIES_QUERY int movieQuery) {
 
         if (movieQuery == POPULAR_MOVIES || movieQuery == TOP_RATED_MOVIES) {
+            mCachedMovies = null;
+            new CachedMoviesQueryTask(this, new CachedMoviesQueryTaskListener(movieQuery))
+                    .execute(buildCachedListUri(movieQuery));
+
             if (NetworkUtils.isOnline()) {
-                URL url = NetworkUtils.buildMoviesURL(movieQuery);
-                new MoviesQueryTask(this, new MoviesQueryTaskListener()).execute(url);
+                mNetworkQueryFailed = false;
+                mMoviePager.start(movieQuery);
             } else {
-                mRecyclerViewMovies.setVisibility(View.INVISIBLE);
-                mErrorMessageDisplay.setVisibility(View.VISIBLE);
+                //The error message is displayed if there is no cached snapshot either
+                mNetworkQueryFailed = true;
+                mMoviePager.stop();
             }
         } else if (movieQuery == FAVORITE_MOVIES) {
+            mMoviePager.stop();
             Uri uri = MovieContract.MovieEntry.CONTENT_URI;
-            new MoviesLocalQueryTask(this, new MoviesLocalQueryTaskListener()).execute(uri);
+            new MoviesLocalQueryTask(this, new MoviesLocalQueryTaskListener(NO_MOVIE_ID))
+                    .execute(uri);
         } else {
             Log.d(LOG_TAG, "Did not query any database.");
         }
     }
 
+    /**
+     * @param movieQuery Either popular or top-rated movies.
+     * @return The Uri of the cached list snapshot.
+     */
+    private static Uri buildCachedListUri(@MOVIES_QUERY int movieQuery) {
+        return ContentUris.withAppendedId(MovieContract.CachedListEntry.CONTENT_URI, movieQuery);
+    }
+
+    /**
+     * @param movies      Movies, may be null.
+     * @param otherMovies Other movies, may be null.
+     * @return true if both contain the same movies in the same order.
+     */
+    private static boolean haveSameMovies(Movie[] movies, Movie[] otherMovies) {
+        if (movies == null || otherMovies == null || movies.length != otherMovies.length) {
+            return false;
+        }
+        for (int i = 0; i < movies.length; i++) {
+            if (movies[i].getMovieID() != otherMovies[i].getMovieID()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Add a spinner with three options (popular, top-rated and favorites) to the menu.
      *
@@ -242,9 +390,50 @@ public class MainActivity extends AppCompatActivity implements
         //Should be set after the setAdapter is called, otherwise will trigger with default option
         spinner.setOnItemSelectedListener(this);
 
+        //Search as the user types
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+        SearchView searchView = (SearchView) MenuItemCompat.getActionView(searchItem);
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchQueryTextListener());
+        MenuItemCompat.setOnActionExpandListener(searchItem, new SearchExpandListener());
+
         return true;
     }
 
+    /**
+     * @return true if search results (or the search for them) are displayed.
+     */
+    private boolean isSearching() {
+        return mSearchText != null && !mSearchText.isEmpty();
+    }
+
+    /**
+     * Cancels a running search, so that its results are not displayed.
+     */
+    private void cancelSearch() {
+        mSearchHandler.removeCallbacks(mSearchRunnable);
+        if (mSearchTask != null) {
+            mSearchTask.cancel(true);
+            mSearchTask = null;
+        }
+    }
+
+    /**
+     * Searches the movies for the current search text with a {@link SearchMoviesTask}. A search
+     * still running for a previous text is cancelled.
+     */
+    private void searchMovies() {
+        cancelSearch();
+        if (!isSearching()) {
+            return;
+        }
+
+        mMoviePager.stop();
+        Uri uri = MovieContract.SearchEntry.buildSearchUri(mSearchText);
+        mSearchTask = new SearchMoviesTask(this, new SearchMoviesTaskListener(mSearchText));
+        mSearchTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, uri);
+    }
+
     /**
      * Queries the movie database for selected item: popular or top-rated or favorites
      * The Favorites are from the local storage
@@ -292,6 +481,23 @@ public class MainActivity extends AppCompatActivity implements
         Log.v(LOG_TAG, "Nothing selected");
     }
 
+    /**
+     * Retries the popular or top-rated query if it failed while the device was offline, or the
+     * next page if only that failed.
+     */
+    @Override
+    public void onReconnected() {
+        if (mMovieQuery != POPULAR_MOVIES && mMovieQuery != TOP_RATED_MOVIES) {
+            return;
+        }
+        if (mNetworkQueryFailed) {
+            Log.d(LOG_TAG, "Reconnected. Querying movies again.");
+            queryMovieDatabase(mMovieQuery);
+        } else {
+            mMoviePager.retry();
+        }
+    }
+
     /**
      * Shows details of a selected movie in a new Activity.
      *
@@ -300,18 +506,8 @@ public class MainActivity extends AppCompatActivity implements
     @Override
     public void onClick(Movie movie, View view) {
 
-        if (movie.getW185Poster() == null) {
-
-            //Save the image bytes in movie in case it is added to favorites
-            ImageView imageView = (ImageView) view.findViewById(R.id.iv_w185_poster);
-            Bitmap bitmap = ((BitmapDrawable) imageView.getDrawable()).getBitmap();
-            ByteArrayOutputStream binOutStream = new ByteArrayOutputStream();
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 85, binOutStream);
-            byte[] imageInByte = binOutStream.toByteArray();
-            movie.setW185Poster(imageInByte);
-
-            Log.d(LOG_TAG, "W185 poster added to movie. Size is " + binOutStream.size() / 1024 + " KB.");
-        }
+        //The poster is not encoded from the view. If the movie is added to the favorites, the
+        //original download is copied in the background (see MovieInsertTask).
 
         //Now start the detail activity
         Context context = MainActivity.this;
@@ -323,8 +519,8 @@ public class MainActivity extends AppCompatActivity implements
 
 
     /**
-     * Listener executed by onPreExecute and onPostExecute functionality of corresponding
-     * AsyncTasks (see {@link MoviesQueryTask} and {@link MoviesLocalQueryTask}).
+     * Listener executed by onPreExecute and onPostExecute functionality of the
+     * {@link MoviesQueryTask} of the first page (see {@link MoviePager}).
      * <p>
      * Suitable in order to access activity's members (views, adapter, etc.)
      */
@@ -332,7 +528,8 @@ public class MainActivity extends AppCompatActivity implements
 
         /**
          * Executed in the corresponding onPostExecute method of the AsyncTask.
-         * Display result if there is any, otherwise display error message.
+         * Display result if there is any and it differs from the cached snapshot (which is
+         * replaced then). Otherwise display error message, unless the cached snapshot is displayed.
          *
          * @param movieArray Array of movies returned from the AsyncTask.
          */
@@ -343,11 +540,25 @@ public class MainActivity extends AppCompatActivity implements
             if (movieArray != null) {
                 mRecyclerViewMovies.setVisibility(View.VISIBLE);
                 mErrorMessageDisplay.setVisibility(View.INVISIBLE);
+
+                if (haveSameMovies(mCachedMovies, movieArray)) {
+                    Log.d(LOG_TAG, "Cached snapshot is up to date");
+                    return;
+                }
+
                 mMovieAdapter.setMovieData(movieArray);
                 //Restore the layout/position of the RecyclerView
                 Log.d(LOG_TAG, "Trying to restore state of layout");
                 mRecyclerViewMovies.getLayoutManager().onRestoreInstanceState(mRecyclerViewMoviesState);//restore
+
+                new CachedMoviesInsertTask(MainActivity.this, buildCachedListUri(mMovieQuery))
+                        .execute(movieArray);
             } else {
+                mNetworkQueryFailed = true;
+                if (mCachedMovies != null) {
+                    Log.d(LOG_TAG, "Network query failed. Keep displaying cached snapshot.");
+                    return;
+                }
                 mRecyclerViewMovies.setVisibility(View.INVISIBLE);
                 mErrorMessageDisplay.setText(getString(R.string.no_internet_access));
                 mErrorMessageDisplay.setVisibility(View.VISIBLE);
@@ -366,39 +577,281 @@ public class MainActivity extends AppCompatActivity implements
 
     /**
      * Listener executed by onPreExecute and onPostExecute functionality of corresponding
-     * AsyncTasks (see {@link MoviesQueryTask} and {@link MoviesLocalQueryTask}).
+     * {@link CachedMoviesQueryTask}.
      * <p>
      * Suitable in order to access activity's members (views, adapter, etc.)
      */
-    private class MoviesLocalQueryTaskListener implements AsyncTaskListener<Movie[]> {
+    private class CachedMoviesQueryTaskListener implements AsyncTaskListener<Movie[]> {
+
+        private final int mListType;
+
+        /**
+         * @param listType The list the snapshot belongs to (popular or top-rated).
+         */
+        CachedMoviesQueryTaskListener(@MOVIES_QUERY int listType) {
+            this.mListType = listType;
+        }
 
         /**
          * Executed in the corresponding onPostExecute method of the AsyncTask.
-         * Display result if there is any, otherwise display error message.
+         * Display the snapshot unless another list was selected, the first page was already
+         * downloaded or search results are displayed. Display error message if there is no
+         * snapshot and the network query failed.
          *
-         * @param movieArray Array of movies returned from the AsyncTask.
+         * @param movieArray Array of cached movies returned from the AsyncTask.
          */
         @Override
         public void onTaskComplete(Movie[] movieArray) {
-            mLoadingIndicator.setVisibility(View.INVISIBLE);
+            if (mMovieQuery != mListType || mMoviePager.hasLoadedFirstPage() || isSearching()) {
+                return;
+            }
+
+            if (movieArray.length > 0) {
+                mCachedMovies = movieArray;
+                mRecyclerViewMovies.setVisibility(View.VISIBLE);
+                mErrorMessageDisplay.setVisibility(View.INVISIBLE);
+                mMovieAdapter.setMovieData(movieArray);
+                //Restore the layout/position of the RecyclerView
+                mRecyclerViewMovies.getLayoutManager().onRestoreInstanceState(mRecyclerViewMoviesState);//restore
+                Log.d(LOG_TAG, "Cached snapshot displayed");
+            } else if (mNetworkQueryFailed) {
+                mRecyclerViewMovies.setVisibility(View.INVISIBLE);
+                mErrorMessageDisplay.setText(getString(R.string.no_internet_access));
+                mErrorMessageDisplay.setVisibility(View.VISIBLE);
+            }
+        }
+
+        /**
+         * Executed in the corresponding onPreExecute method of the AsyncTask.
+         */
+        @Override
+        public void beforeTaskExecution() {
+        }
+
+    }
+
+    /**
+     * Debounces the typed search text. Only a pause in typing starts a search; submitting
+     * searches at once.
+     */
+    private class SearchQueryTextListener implements SearchView.OnQueryTextListener {
+
+        @Override
+        public boolean onQueryTextSubmit(String query) {
+            mSearchText = query.trim();
+            searchMovies();
+            return false;
+        }
+
+        @Override
+        public boolean onQueryTextChange(String newText) {
+            String searchText = newText.trim();
+            if (searchText.equals(mSearchText)) {
+                return true;
+            }
+            boolean wasSearching = isSearching();
+            mSearchText = searchText;
+            cancelSearch();
+
+            if (isSearching()) {
+                mSearchHandler.postDelayed(mSearchRunnable, SEARCH_DEBOUNCE_MILLIS);
+            } else if (wasSearching) {
+                //Search text cleared, display the selected list again
+                queryMovieDatabase(mMovieQuery);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Displays the selected list again when the search view is closed.
+     */
+    private class SearchExpandListener implements MenuItemCompat.OnActionExpandListener {
+
+        @Override
+        public boolean onMenuItemActionExpand(MenuItem item) {
+            mSearchText = "";
+            return true;
+        }
+
+        @Override
+        public boolean onMenuItemActionCollapse(MenuItem item) {
+            boolean wasSearching = isSearching();
+            cancelSearch();
+            mSearchText = null;
+            if (wasSearching) {
+                queryMovieDatabase(mMovieQuery);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Listener executed by onPreExecute and onPostExecute functionality of corresponding
+     * {@link SearchMoviesTask}.
+     * <p>
+     * Suitable in order to access activity's members (views, adapter, etc.)
+     */
+    private class SearchMoviesTaskListener implements AsyncTaskListener<Movie[]> {
+
+        private final String mTaskSearchText;
+
+        /**
+         * @param searchText The search text of the task.
+         */
+        SearchMoviesTaskListener(String searchText) {
+            this.mTaskSearchText = searchText;
+        }
 
-            Log.d(LOG_TAG, "movieArray has size " + movieArray.length);
+        /**
+         * Executed in the corresponding onPostExecute method of the AsyncTask.
+         * Display the matching movies unless the search text changed meanwhile. Display a
+         * message if no movie matches.
+         *
+         * @param movieArray Array of matching movies returned from the AsyncTask.
+         */
+        @Override
+        public void onTaskComplete(Movie[] movieArray) {
+            if (!mTaskSearchText.equals(mSearchText)) {
+                return;
+            }
+            mSearchTask = null;
+            mLoadingIndicator.setVisibility(View.INVISIBLE);
 
-            if (movieArray != null && movieArray.length > 0) {
+            if (movieArray.length > 0) {
                 mRecyclerViewMovies.setVisibility(View.VISIBLE);
                 mErrorMessageDisplay.setVisibility(View.INVISIBLE);
                 mMovieAdapter.setMovieData(movieArray);
+                mRecyclerViewMovies.scrollToPosition(0);
+            } else {
+                mRecyclerViewMovies.setVisibility(View.INVISIBLE);
+                mErrorMessageDisplay.setText(getString(R.string.no_search_results, mTaskSearchText));
+                mErrorMessageDisplay.setVisibility(View.VISIBLE);
+            }
+        }
+
+        /**
+         * Executed in the corresponding onPreExecute method of the AsyncTask.
+         */
+        @Override
+        public void beforeTaskExecution() {
+        }
+
+    }
+
+    /**
+     * Observes the stored movies. While the favorites are displayed, a change of a single
+     * movie (Uri movies/id) updates the affected grid item only, any other change reloads the
+     * list. Nothing is queried if no favorite changed.
+     */
+    private class FavoritesObserver extends ContentObserver {
+
+        FavoritesObserver(Handler handler) {
+            super(handler);
+        }
+
+        /**
+         * Below API 16 the changed Uri is not passed.
+         *
+         * @param selfChange True if the change was caused by this observer.
+         */
+        @Override
+        public void onChange(boolean selfChange) {
+            onChange(selfChange, null);
+        }
+
+        /**
+         * @param selfChange True if the change was caused by this observer.
+         * @param uri        The changed Uri, null if unknown.
+         */
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            if (mMovieQuery != FAVORITE_MOVIES || isSearching()) {
+                return;
+            }
+
+            int movieID = NO_MOVIE_ID;
+            if (uri != null && uri.getPathSegments().size() == 2) {
+                try {
+                    movieID = (int) ContentUris.parseId(uri);
+                } catch (NumberFormatException e) {
+                    Log.w(LOG_TAG, "No movie id in changed Uri " + uri);
+                }
+            }
+
+            Log.d(LOG_TAG, "Favorites changed: " + uri);
+            new MoviesLocalQueryTask(MainActivity.this, new MoviesLocalQueryTaskListener(movieID),
+                    movieID).execute(MovieContract.MovieEntry.CONTENT_URI);
+        }
+    }
+
+    /**
+     * Listener executed by onPreExecute and onPostExecute functionality of corresponding
+     * AsyncTasks (see {@link MoviesQueryTask} and {@link MoviesLocalQueryTask}).
+     * <p>
+     * Suitable in order to access activity's members (views, adapter, etc.)
+     */
+    private class MoviesLocalQueryTaskListener
+            implements MoviesLocalQueryTask.MoviePositionListener {
+
+        //The movie that changed, or NO_MOVIE_ID to display the whole list afresh
+        private final int mChangedMovieID;
+
+        //Position of the changed movie in the result, found by the task in the background
+        private int mChangedPosition = MoviesLocalQueryTask.NO_POSITION;
+
+        /**
+         * @param changedMovieID The movie that changed, {@link #NO_MOVIE_ID} for a full load.
+         */
+        MoviesLocalQueryTaskListener(int changedMovieID) {
+            this.mChangedMovieID = changedMovieID;
+        }
+
+        /**
+         * Executed in the corresponding onPostExecute method of the AsyncTask.
+         * Display result if there is any, otherwise display error message.
+         *
+         * @param cursor Cursor of the stored movies returned from the AsyncTask.
+         */
+        @Override
+        public void onTaskComplete(Cursor cursor) {
+            mLoadingIndicator.setVisibility(View.INVISIBLE);
+            if (isSearching() || isFinishing()) {
+                if (cursor != null) {
+                    cursor.close();
+                }
+                return;
+            }
+
+            if (cursor != null && cursor.getCount() > 0) {
+                Log.d(LOG_TAG, "cursor has size " + cursor.getCount());
+                mRecyclerViewMovies.setVisibility(View.VISIBLE);
+                mErrorMessageDisplay.setVisibility(View.INVISIBLE);
+                if (mChangedMovieID != NO_MOVIE_ID) {
+                    mMovieAdapter.updateMovieCursor(cursor, mChangedMovieID, mChangedPosition);
+                    return;
+                }
+                mMovieAdapter.setMovieCursor(cursor);
                 //Restore the layout/position of the RecyclerView
                 Log.d(LOG_TAG, "Trying to restore state of layout");
                 mRecyclerViewMovies.getLayoutManager().onRestoreInstanceState(mRecyclerViewMoviesState);//restore
 
             } else {
+                if (cursor != null) {
+                    cursor.close();
+                }
+                mMovieAdapter.setMovieData(null);
                 mRecyclerViewMovies.setVisibility(View.INVISIBLE);
                 mErrorMessageDisplay.setText(getString(R.string.no_favorites_in_list));
                 mErrorMessageDisplay.setVisibility(View.VISIBLE);
             }
         }
 
+        @Override
+        public void onMoviePositionFound(int position) {
+            mChangedPosition = position;
+        }
+
         /**
          * Executed in the corresponding onPreExecute method of the AsyncTask.
          */
@@ -0,0 +1,80 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.example.android.popularmovies;
+
+import android.app.Application;
+
+import com.example.android.popularmovies.utilities.BitmapPool;
+import com.example.android.popularmovies.utilities.ConnectivityMonitor;
+import com.example.android.popularmovies.utilities.HttpClient;
+import com.example.android.popularmovies.utilities.PosterCache;
+import com.example.android.popularmovies.utilities.PosterDownloader;
+import com.example.android.popularmovies.utilities.PosterSizeSelector;
+import com.squareup.picasso.Picasso;
+
+/**
+ * {@link PopularMoviesApplication} sets up application wide components before any activity is
+ * created.
+ */
+public class PopularMoviesApplication extends Application {
+
+    /**
+     * Enables the disk response cache of the {@link HttpClient}, starts the
+     * {@link ConnectivityMonitor} and sizes the {@link PosterCache} and the {@link BitmapPool}.
+     * Picasso downloads the posters through the {@link PosterDownloader}, in the size picked by
+     * the {@link PosterSizeSelector}.
+     */
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        HttpClient.init(this);
+        ConnectivityMonitor.init(this);
+        PosterSizeSelector.init(this);
+        PosterCache.init(this);
+        BitmapPool.init(this);
+        Picasso.setSingletonInstance(new Picasso.Builder(this)
+                .downloader(new PosterDownloader(this))
+                .build());
+    }
+
+    /**
+     * Shrinks the {@link PosterCache} and the {@link BitmapPool} when the system is low on memory.
+     *
+     * @param level The memory trim level.
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        PosterCache.trimMemory(level);
+        BitmapPool.trimMemory(level);
+    }
+
+    /**
+     * Clears the {@link PosterCache} and the {@link BitmapPool}, like the highest memory trim level.
+     */
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        PosterCache.trimMemory(TRIM_MEMORY_COMPLETE);
+        BitmapPool.trimMemory(TRIM_MEMORY_COMPLETE);
+    }
+}
@@ -22,22 +22,39 @@
 package com.example.android.popularmovies.adapters;
 
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
+import android.database.Cursor;
 import android.support.v7.widget.RecyclerView;
 import android.util.Log;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 
 import com.example.android.popularmovies.R;
+import com.example.android.popularmovies.data.PosterStore;
 import com.example.android.popularmovies.models.Movie;
 import com.example.android.popularmovies.utilities.NetworkUtils;
+import com.example.android.popularmovies.utilities.PosterDecoder;
+import com.example.android.popularmovies.utilities.PosterScheduler;
+import com.example.android.popularmovies.utilities.PosterSizeSelector;
 import com.squareup.picasso.Picasso;
 
+import java.util.Arrays;
+
+import static com.example.android.popularmovies.MainActivity.INDEX_MOVIE_FAVORITE;
+import static com.example.android.popularmovies.MainActivity.INDEX_MOVIE_ID;
+import static com.example.android.popularmovies.MainActivity.INDEX_MOVIE_POSTER_PATH;
+import static com.example.android.popularmovies.MainActivity.INDEX_MOVIE_W185_POSTER_FILE;
+
 /**
- * MovieAdapter holds an array of Movie objects.
+ * MovieAdapter holds either an array of Movie objects or a cursor of stored movies
+ * (see {@link com.example.android.popularmovies.MainActivity#MOVIES_PROJECTION}).
+ * <p>
+ * In cursor mode the rows are bound lazily by position. Only the columns of a grid cell are
+ * read and the posters are loaded from the {@link PosterStore} files, so no Movie objects or
+ * poster bytes are kept for the rows.
+ * <p>
  * A MovieAdapter object must have a Context and a MovieAdapterOnClickHandler.
  */
 public class MovieAdapter
@@ -45,13 +62,27 @@ public class MovieAdapter
 
     private static final String LOG_TAG = MovieAdapter.class.getSimpleName();
 
+    private static final int NO_MOVIE_ID = -1;
+
 
     private Movie[] mMovies;
 
+    //Stored movies, used instead of mMovies if not null. Owned and closed by this adapter.
+    private Cursor mCursor;
+
     private Context mContext;
 
     private MovieAdapterOnClickHandler mClickHandler;
 
+    //Schedules the poster downloads, if set
+    private PosterScheduler mPosterScheduler;
+
+    //Width of a grid cell in pixels, 0 if not known yet
+    private int mPosterWidth;
+
+    //Holders bound to stored movies by movie id, to find the old position of a changed movie
+    private final SparseArray<MovieAdapterViewHolder> mBoundHolders = new SparseArray<>();
+
     /**
      * Keeps references to context and listener. Listener are informed in onPreExecute and
      * onPostExecute.
@@ -64,6 +95,25 @@ public class MovieAdapter
         this.mClickHandler = clickHandler;
     }
 
+    /**
+     * Lets the scheduler load the posters from the server, instead of loading them right away.
+     *
+     * @param posterScheduler The scheduler, registered as scroll listener of the RecyclerView.
+     */
+    public void setPosterScheduler(PosterScheduler posterScheduler) {
+        this.mPosterScheduler = posterScheduler;
+    }
+
+    /**
+     * Sets the width of the grid cells, used to select the size of the posters loaded from the
+     * server (see {@link PosterSizeSelector}).
+     *
+     * @param posterWidth The width of a grid cell in pixels.
+     */
+    public void setPosterWidth(int posterWidth) {
+        this.mPosterWidth = posterWidth;
+    }
+
     /**
      * Inflate the movie grid item into the layout.
      *
@@ -88,32 +138,137 @@ public class MovieAdapter
     @Override
     public void onBindViewHolder(MovieAdapterViewHolder holder, int position) {
 
-        String posterURLString =
-                NetworkUtils.IMDB_IMAGE_BASE_URL + NetworkUtils.IMDB_IMAGE_W185_SIZE +
-                        mMovies[position].getPosterPath();
+        if (mCursor != null) {
+            bindStoredMovie(holder, position);
+            return;
+        }
+
+        unbindStoredMovie(holder);
+        String posterPath = mMovies[position].getPosterPath();
         boolean isFavorite = mMovies[holder.getAdapterPosition()].isFavorite();
 
         if (isFavorite) {
 
-            //Image is in database
-            byte[] imageBytes = mMovies[position].getW185Poster();
-            Bitmap bitmap = BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
-            holder.mPoster.setImageBitmap(bitmap);
+            //Image is in database, decoded from its bytes or, without them, from its file
+            cancelPosterFromServer(holder);
+            if (mMovies[position].getW185Poster() != null) {
+                PosterDecoder.loadPoster(mMovies[position].getMovieID(),
+                        NetworkUtils.IMDB_IMAGE_W185_SIZE, mMovies[position].getW185Poster(),
+                        holder.mPoster, R.drawable.placeholder_185_277, null);
+            } else {
+                PosterDecoder.loadStoredPoster(mContext, mMovies[position].getMovieID(),
+                        NetworkUtils.IMDB_IMAGE_W185_SIZE, holder.mPoster,
+                        R.drawable.placeholder_185_277, null);
+            }
 
             Log.d(LOG_TAG, "Image loaded from database.");
 
         } else {
 
+            loadPosterFromServer(holder, posterPath);
+
+        }
+
+    }
+
+    /**
+     * Binds the cursor row at the position. The poster is decoded from its file by the
+     * {@link PosterDecoder}.
+     */
+    private void bindStoredMovie(MovieAdapterViewHolder holder, int position) {
+
+        mCursor.moveToPosition(position);
+        int movieID = mCursor.getInt(INDEX_MOVIE_ID);
+        unbindStoredMovie(holder);
+        holder.mMovieID = movieID;
+        mBoundHolders.put(movieID, holder);
+        if (mCursor.isNull(INDEX_MOVIE_W185_POSTER_FILE)) {
+            loadPosterFromServer(holder, mCursor.getString(INDEX_MOVIE_POSTER_PATH));
+            return;
+        }
+
+        cancelPosterFromServer(holder);
+        PosterDecoder.loadStoredPoster(mContext, movieID, NetworkUtils.IMDB_IMAGE_W185_SIZE,
+                holder.mPoster, R.drawable.placeholder_185_277, null);
+    }
+
+    /**
+     * Loads the poster in the size selected for the cells. With a {@link PosterScheduler}, the
+     * smallest poster is shown first.
+     */
+    private void loadPosterFromServer(MovieAdapterViewHolder holder, String posterPath) {
+
+        String posterSize = PosterSizeSelector.selectPosterSize(mPosterWidth);
+        String posterURLString = NetworkUtils.buildPosterURLString(posterSize, posterPath);
+
+        PosterDecoder.release(holder.mPoster);
+        if (mPosterScheduler != null) {
+            String thumbnailSize = PosterSizeSelector.getThumbnailSize(posterSize);
+            String thumbnailURLString = thumbnailSize == null ? null :
+                    NetworkUtils.buildPosterURLString(thumbnailSize, posterPath);
+            mPosterScheduler.load(holder.mPoster, posterURLString, thumbnailURLString,
+                    R.drawable.placeholder_185_277);
+        } else {
             Picasso.with(mContext)
                     .load(posterURLString)
                     .placeholder(R.drawable.placeholder_185_277)
                     .error(R.drawable.placeholder_185_277)
                     .into(holder.mPoster);
+        }
 
-            Log.d(LOG_TAG, "Image loaded from server: " + posterURLString);
+        Log.d(LOG_TAG, "Image loaded from server: " + posterURLString);
+    }
 
+    /**
+     * Cancels the pending poster load of the recycled holder, so it is neither decoded nor
+     * downloaded for a position that is gone. Its decoded poster goes back to the bitmap pool.
+     *
+     * @param holder The recycled holder.
+     */
+    @Override
+    public void onViewRecycled(MovieAdapterViewHolder holder) {
+        super.onViewRecycled(holder);
+        unbindStoredMovie(holder);
+        PosterDecoder.release(holder.mPoster);
+        cancelPosterFromServer(holder);
+    }
+
+    private void unbindStoredMovie(MovieAdapterViewHolder holder) {
+        if (holder.mMovieID != NO_MOVIE_ID && mBoundHolders.get(holder.mMovieID) == holder) {
+            mBoundHolders.remove(holder.mMovieID);
+        }
+        holder.mMovieID = NO_MOVIE_ID;
+    }
+
+    private void cancelPosterFromServer(MovieAdapterViewHolder holder) {
+        if (mPosterScheduler != null) {
+            mPosterScheduler.cancel(holder.mPoster);
+        } else {
+            Picasso.with(mContext).cancelRequest(holder.mPoster);
         }
+    }
 
+    /**
+     * @param position Position of the movie.
+     * @return The URL of the poster in the selected size if it is loaded from the server, null
+     * if the poster is stored.
+     */
+    public String getPosterURLString(int position) {
+        String posterPath;
+        if (mCursor != null) {
+            mCursor.moveToPosition(position);
+            if (!mCursor.isNull(INDEX_MOVIE_W185_POSTER_FILE)) {
+                return null;
+            }
+            posterPath = mCursor.getString(INDEX_MOVIE_POSTER_PATH);
+        } else {
+            if (mMovies[position].isFavorite()) {
+                return null;
+            }
+            posterPath = mMovies[position].getPosterPath();
+        }
+        return NetworkUtils.buildPosterURLString(
+                PosterSizeSelector.selectPosterSize(mPosterWidth), posterPath);
     }
 
     /**
@@ -123,21 +278,137 @@ public class MovieAdapter
      */
     @Override
     public int getItemCount() {
+        if (null != mCursor) return mCursor.getCount();
         if (null == mMovies) return 0;
         return mMovies.length;
     }
 
     /**
-     * Sets new movie data and notifies of data changes.
+     * Sets new movie data and notifies of data changes. A cursor set before is closed.
      *
      * @param newMovieArray Movie array to be set for this MovieAdapter.
      */
     public void setMovieData(Movie[] newMovieArray) {
+        closeCursor();
         mMovies = newMovieArray;
         Log.d(LOG_TAG, "Notifiy about changes in movie adapter.");
         notifyDataSetChanged();
     }
 
+    /**
+     * Appends movies (e.g. the next page) and notifies about the inserted range only.
+     *
+     * @param moreMovies Movie array to be appended to the movies of this MovieAdapter.
+     */
+    public void addMovieData(Movie[] moreMovies) {
+        if (mMovies == null || mCursor != null) {
+            setMovieData(moreMovies);
+            return;
+        }
+
+        int positionStart = mMovies.length;
+        Movie[] newMovieArray = Arrays.copyOf(mMovies, mMovies.length + moreMovies.length);
+        System.arraycopy(moreMovies, 0, newMovieArray, positionStart, moreMovies.length);
+        mMovies = newMovieArray;
+        Log.d(LOG_TAG, "Notify about " + moreMovies.length + " movies added to movie adapter.");
+        notifyItemRangeInserted(positionStart, moreMovies.length);
+    }
+
+    /**
+     * Switches to cursor mode, or replaces the cursor, and notifies of data changes. The
+     * previous cursor is closed after the new one was set.
+     *
+     * @param newCursor Cursor of stored movies with the columns of
+     *                  {@link com.example.android.popularmovies.MainActivity#MOVIES_PROJECTION},
+     *                  null to release the current cursor.
+     */
+    public void setMovieCursor(Cursor newCursor) {
+        if (newCursor == mCursor) {
+            return;
+        }
+        Cursor oldCursor = mCursor;
+        mCursor = newCursor;
+        mMovies = null;
+        Log.d(LOG_TAG, "Notifiy about new cursor in movie adapter.");
+        notifyDataSetChanged();
+        if (oldCursor != null) {
+            oldCursor.close();
+        }
+    }
+
+    /**
+     * Replaces the cursor after a single movie changed and notifies about the affected row
+     * only: an inserted, removed or changed item. Falls back to a full change notification if
+     * the cursors differ in more than that movie, or the old position is not known.
+     * <p>
+     * Neither cursor is searched here: the new position is found by the query in the
+     * background, the old one is taken from the holder bound to the movie.
+     *
+     * @param newCursor   Cursor of stored movies, like in {@link #setMovieCursor(Cursor)}.
+     * @param movieID     The id of the changed movie.
+     * @param newPosition Position of the movie in the new cursor, negative if not in it.
+     */
+    public void updateMovieCursor(Cursor newCursor, int movieID, int newPosition) {
+        if (mCursor == null || newCursor == null) {
+            setMovieCursor(newCursor);
+            return;
+        }
+
+        Cursor oldCursor = mCursor;
+        int oldPosition = findBoundPosition(movieID);
+        int countChange = newCursor.getCount() - oldCursor.getCount();
+        mCursor = newCursor;
+
+        if (newPosition >= 0 && countChange == 1) {
+            notifyItemInserted(newPosition);
+        } else if (oldPosition >= 0 && newPosition < 0 && countChange == -1) {
+            notifyItemRemoved(oldPosition);
+        } else if (oldPosition >= 0 && oldPosition == newPosition && countChange == 0) {
+            notifyItemChanged(newPosition);
+        } else if (oldPosition >= 0 || newPosition >= 0 || countChange != 0) {
+            notifyDataSetChanged();
+        }
+        Log.d(LOG_TAG, "Movie " + movieID + " updated in movie adapter.");
+
+        oldCursor.close();
+    }
+
+    /**
+     * @return The adapter position of the holder bound to the movie, -1 if none is bound.
+     */
+    private int findBoundPosition(int movieID) {
+        MovieAdapterViewHolder holder = mBoundHolders.get(movieID);
+        if (holder == null || holder.mMovieID != movieID) {
+            return -1;
+        }
+        return holder.getAdapterPosition();
+    }
+
+    private void closeCursor() {
+        if (mCursor != null) {
+            mCursor.close();
+            mCursor = null;
+        }
+    }
+
+    /**
+     * @param position Position of the movie.
+     * @return The movie at the position. In cursor mode a new movie without poster bytes, the
+     * DetailActivity decodes the stored poster from its file.
+     */
+    private Movie getMovie(int position) {
+        if (mCursor == null) {
+            return mMovies[position];
+        }
+
+        mCursor.moveToPosition(position);
+        return new Movie(mCursor.getInt(INDEX_MOVIE_ID),
+                mCursor.getString(INDEX_MOVIE_POSTER_PATH),
+                null,
+                null,
+                mCursor.getInt(INDEX_MOVIE_FAVORITE));
+    }
+
     /**
      * Interface for onClick(Movie, View) method.
      */
@@ -164,6 +435,9 @@ public class MovieAdapter
 
         ImageView mPoster;
 
+        //The stored movie bound to this holder, NO_MOVIE_ID in array mode
+        int mMovieID = NO_MOVIE_ID;
+
         /**
          * Poster reference and register as listener to the view holder.
          *
@@ -182,7 +456,11 @@ public class MovieAdapter
          */
         @Override
         public void onClick(View view) {
-            Movie movie = mMovies[getAdapterPosition()];
+            int position = getAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) {
+                return;
+            }
+            Movie movie = getMovie(position);
             mClickHandler.onClick(movie, view);
         }
     }
@@ -0,0 +1,98 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.example.android.popularmovies.asyncTasks;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.util.Log;
+
+import com.example.android.popularmovies.data.MovieContract;
+import com.example.android.popularmovies.models.Movie;
+
+/**
+ * AsyncTask to replace the cached snapshot of a movie list in
+ * {@link com.example.android.popularmovies.data.MovieContentProvider}.
+ * Params is the movie array in list order.
+ * Result is the number of cached list entries.
+ */
+public class CachedMoviesInsertTask extends AsyncTask<Movie[], Void, Integer> {
+
+    private static final String LOG_TAG = CachedMoviesInsertTask.class.getSimpleName();
+
+
+    private final Context mContext;
+
+    private final Uri mUri;
+
+    /**
+     * The snapshot is written in the background only, so there is no listener.
+     *
+     * @param context The activity using this task.
+     * @param uri     The cached list Uri.
+     */
+    public CachedMoviesInsertTask(Context context, Uri uri) {
+        this.mContext = context.getApplicationContext();
+        this.mUri = uri;
+    }
+
+    /**
+     * Replaces the cached list with the movies.
+     *
+     * @param params The movie array (at position 0).
+     * @return The number of cached list entries.
+     */
+    @Override
+    protected Integer doInBackground(Movie[]... params) {
+
+        Movie[] movies = params[0];
+        long fetchedAt = System.currentTimeMillis();
+
+        ContentValues[] contentValuesArray = new ContentValues[movies.length];
+        for (int i = 0; i < movies.length; i++) {
+            contentValuesArray[i] = new ContentValues();
+            contentValuesArray[i].put(
+                    MovieContract.CachedListEntry.COLUMN_POSITION, i);
+            contentValuesArray[i].put(
+                    MovieContract.CachedListEntry.COLUMN_FETCHED_AT, fetchedAt);
+            contentValuesArray[i].put(
+                    MovieContract.CachedMovieEntry.COLUMN_MOVIE_ID, movies[i].getMovieID());
+            contentValuesArray[i].put(
+                    MovieContract.CachedMovieEntry.COLUMN_MOVIE_POSTER_PATH, movies[i].getPosterPath());
+            contentValuesArray[i].put(
+                    MovieContract.CachedMovieEntry.COLUMN_MOVIE_OVERVIEW, movies[i].getOverview());
+            contentValuesArray[i].put(
+                    MovieContract.CachedMovieEntry.COLUMN_MOVIE_RELEASE_DATE, movies[i].getReleaseDate());
+            contentValuesArray[i].put(
+                    MovieContract.CachedMovieEntry.COLUMN_MOVIE_TITLE, movies[i].getTitle());
+            contentValuesArray[i].put(
+                    MovieContract.CachedMovieEntry.COLUMN_MOVIE_VOTE_AVERAGE, movies[i].getVoteAverage());
+        }
+
+        int rowsInserted = this.mContext.getContentResolver().bulkInsert(mUri, contentValuesArray);
+
+        Log.d(LOG_TAG, rowsInserted + " movies cached for " + mUri);
+
+        return rowsInserted;
+    }
+}
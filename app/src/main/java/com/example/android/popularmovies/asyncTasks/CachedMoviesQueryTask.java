@@ -0,0 +1,126 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.example.android.popularmovies.asyncTasks;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.util.Log;
+
+import com.example.android.popularmovies.models.Movie;
+
+import static com.example.android.popularmovies.MainActivity.CACHED_MOVIES_PROJECTION;
+import static com.example.android.popularmovies.MainActivity.INDEX_CACHED_MOVIE_ID;
+import static com.example.android.popularmovies.MainActivity.INDEX_CACHED_MOVIE_OVERVIEW;
+import static com.example.android.popularmovies.MainActivity.INDEX_CACHED_MOVIE_POSTER_PATH;
+import static com.example.android.popularmovies.MainActivity.INDEX_CACHED_MOVIE_RELEASE_DATE;
+import static com.example.android.popularmovies.MainActivity.INDEX_CACHED_MOVIE_TITLE;
+import static com.example.android.popularmovies.MainActivity.INDEX_CACHED_MOVIE_VOTE_AVERAGE;
+
+/**
+ * AsyncTask to read the cached snapshot of a movie list from
+ * {@link com.example.android.popularmovies.data.MovieContentProvider}.
+ * Params is the cached list Uri.
+ * Result is an array of Movie objects in list order, empty if nothing is cached.
+ */
+public class CachedMoviesQueryTask extends AsyncTask<Uri, Void, Movie[]> {
+
+    private static final String LOG_TAG = CachedMoviesQueryTask.class.getSimpleName();
+
+
+    private AsyncTaskListener<Movie[]> mListener;
+
+    private Context mContext;
+
+    /**
+     * References to activity and listener(, which are usually both the same class).
+     *
+     * @param context  The activity using this task.
+     * @param listener Listener to this task. Triggered before and after task completion.
+     */
+    public CachedMoviesQueryTask(Context context, AsyncTaskListener<Movie[]> listener) {
+        this.mContext = context;
+        this.mListener = listener;
+    }
+
+    /**
+     * Delegate to listener.
+     */
+    @Override
+    protected void onPreExecute() {
+        super.onPreExecute();
+        this.mListener.beforeTaskExecution();
+    }
+
+    /**
+     * Retrieval of cached movie data in form of an Movie[] array.
+     *
+     * @param params Contains the Uri at position 0.
+     * @return Movie array containing the cached movies in list order.
+     */
+    @Override
+    protected Movie[] doInBackground(Uri... params) {
+        Uri uri = params[0];
+        Movie movieArray[] = new Movie[0];
+
+        Cursor cursor = this.mContext.getContentResolver().query(
+                uri, CACHED_MOVIES_PROJECTION, null, null, null);
+
+        if (cursor == null) {
+            return movieArray;
+        }
+
+        try {
+            movieArray = new Movie[cursor.getCount()];
+            while (cursor.moveToNext()) {
+                movieArray[cursor.getPosition()] = new Movie(
+                        cursor.getInt(INDEX_CACHED_MOVIE_ID),
+                        cursor.getString(INDEX_CACHED_MOVIE_POSTER_PATH),
+                        cursor.getString(INDEX_CACHED_MOVIE_OVERVIEW),
+                        cursor.getString(INDEX_CACHED_MOVIE_RELEASE_DATE),
+                        cursor.getString(INDEX_CACHED_MOVIE_TITLE),
+                        0,
+                        cursor.getDouble(INDEX_CACHED_MOVIE_VOTE_AVERAGE),
+                        null, null, 0
+                );
+            }
+        } finally {
+            cursor.close();
+        }
+
+        Log.d(LOG_TAG, movieArray.length + " cached movies retrieved.");
+
+        return movieArray;
+    }
+
+    /**
+     * Delegate to listener.
+     *
+     * @param movieArray The movie array.
+     */
+    @Override
+    protected void onPostExecute(Movie[] movieArray) {
+        super.onPostExecute(movieArray);
+        this.mListener.onTaskComplete(movieArray);
+    }
+}
@@ -22,7 +22,6 @@ package com.example.android.popularmovies.asyncTasks;
 
 import android.content.Context;
 import android.database.Cursor;
-import android.net.Uri;
 import android.os.AsyncTask;
 import android.util.Log;
 
@@ -30,14 +29,17 @@ import com.example.android.popularmovies.data.MovieContract;
 import com.example.android.popularmovies.models.Movie;
 import com.example.android.popularmovies.models.Review;
 import com.example.android.popularmovies.models.Trailer;
+import com.example.android.popularmovies.utilities.HttpClient;
 import com.example.android.popularmovies.utilities.NetworkUtils;
-import com.example.android.popularmovies.utilities.TMDbJsonUtils;
 
 import org.json.JSONException;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 
+import static com.example.android.popularmovies.DetailActivity.INDEX_BUNDLE_ROW_TYPE;
 import static com.example.android.popularmovies.DetailActivity.INDEX_MOVIE_OVERVIEW;
 import static com.example.android.popularmovies.DetailActivity.INDEX_MOVIE_RELEASE_DATE;
 import static com.example.android.popularmovies.DetailActivity.INDEX_MOVIE_RUNTIME;
@@ -52,9 +54,7 @@ import static com.example.android.popularmovies.DetailActivity.INDEX_TRAILER_KEY
 import static com.example.android.popularmovies.DetailActivity.INDEX_TRAILER_NAME;
 import static com.example.android.popularmovies.DetailActivity.INDEX_TRAILER_SITE;
 import static com.example.android.popularmovies.DetailActivity.INDEX_TRAILER_TYPE;
-import static com.example.android.popularmovies.DetailActivity.MOVIE_DETAIL_PROJECTION;
-import static com.example.android.popularmovies.DetailActivity.REVIEWS_PROJECTION;
-import static com.example.android.popularmovies.DetailActivity.TRAILERS_PROJECTION;
+import static com.example.android.popularmovies.DetailActivity.MOVIE_BUNDLE_PROJECTION;
 
 /**
  * AsyncTask to download movie details.
@@ -100,71 +100,53 @@ public class MovieDetailsQueryTask extends AsyncTask<Movie, Void, Movie> {
     protected Movie doInBackground(Movie... params) {
 
         Movie movie = params[0];
-        String movieIDString = String.valueOf(movie.getMovieID());
 
+        HttpClient.startFirstByteTimer();
 
-        //Retrieve movie
-        Uri uri = MovieContract.MovieEntry.CONTENT_URI.buildUpon().
-                appendPath(movieIDString).build();
-        Cursor movieCursor = this.mContext.getContentResolver().query(uri, MOVIE_DETAIL_PROJECTION,
-                "movie_id=?", new String[]{movieIDString}, null);
-
-        //Retrieve trailers
-        Uri trailerUri = MovieContract.TrailerEntry.CONTENT_URI.buildUpon().
-                appendPath(movieIDString).build();
-        Cursor trailersCursor = this.mContext.getContentResolver().
-                query(trailerUri, TRAILERS_PROJECTION,
-                        "movie_id=?", new String[]{movieIDString}, null);
-
-        //Retrieve reviews
-        Uri reviewUri = MovieContract.ReviewEntry.CONTENT_URI.buildUpon().
-                appendPath(movieIDString).build();
-        Cursor reviewsCursor = mContext.getContentResolver().query(reviewUri, REVIEWS_PROJECTION,
-                "movie_id=?", new String[]{movieIDString}, null);
-
+        //Retrieve movie, trailers and reviews. Empty if the movie is not stored.
+        Cursor cursor = this.mContext.getContentResolver().query(
+                MovieContract.MovieEntry.buildMovieBundleUri(movie.getMovieID()),
+                MOVIE_BUNDLE_PROJECTION, null, null, null);
 
         try {
 
-            if (movieCursor != null && movieCursor.moveToFirst()) {
-
-                movie.setOverview(movieCursor.getString(INDEX_MOVIE_OVERVIEW));
-                movie.setReleaseDate(movieCursor.getString(INDEX_MOVIE_RELEASE_DATE));
-                movie.setTitle(movieCursor.getString(INDEX_MOVIE_TITLE));
-                movie.setRuntime(movieCursor.getInt(INDEX_MOVIE_RUNTIME));
-                movie.setVoteAverage(movieCursor.getFloat(INDEX_MOVIE_VOTE_AVERAGE));
-
-
-                if (trailersCursor != null && !trailersCursor.isClosed()) {
-
-                    Trailer[] trailerArray = new Trailer[trailersCursor.getCount()];
-                    while (trailersCursor.moveToNext()) {
-                        Trailer trailer = new Trailer(
-                                trailersCursor.getString(INDEX_TRAILER_ID),
-                                trailersCursor.getString(INDEX_TRAILER_KEY),
-                                trailersCursor.getString(INDEX_TRAILER_NAME),
-                                trailersCursor.getString(INDEX_TRAILER_SITE),
-                                trailersCursor.getString(INDEX_TRAILER_TYPE)
-                        );
-                        trailerArray[trailersCursor.getPosition()] = trailer;
+            if (cursor != null && cursor.moveToFirst() &&
+                    cursor.getInt(INDEX_BUNDLE_ROW_TYPE) ==
+                            MovieContract.MovieBundleEntry.ROW_TYPE_MOVIE) {
+
+                HttpClient.stopFirstByteTimer();
+
+                movie.setOverview(cursor.getString(INDEX_MOVIE_OVERVIEW));
+                movie.setReleaseDate(cursor.getString(INDEX_MOVIE_RELEASE_DATE));
+                movie.setTitle(cursor.getString(INDEX_MOVIE_TITLE));
+                movie.setRuntime(cursor.getInt(INDEX_MOVIE_RUNTIME));
+                movie.setVoteAverage(cursor.getFloat(INDEX_MOVIE_VOTE_AVERAGE));
+
+                List<Trailer> trailers = new ArrayList<>();
+                List<Review> reviews = new ArrayList<>();
+                while (cursor.moveToNext()) {
+                    switch (cursor.getInt(INDEX_BUNDLE_ROW_TYPE)) {
+                        case MovieContract.MovieBundleEntry.ROW_TYPE_TRAILER:
+                            trailers.add(new Trailer(
+                                    cursor.getString(INDEX_TRAILER_ID),
+                                    cursor.getString(INDEX_TRAILER_KEY),
+                                    cursor.getString(INDEX_TRAILER_NAME),
+                                    cursor.getString(INDEX_TRAILER_SITE),
+                                    cursor.getString(INDEX_TRAILER_TYPE)
+                            ));
+                            break;
+                        case MovieContract.MovieBundleEntry.ROW_TYPE_REVIEW:
+                            reviews.add(new Review(
+                                    cursor.getString(INDEX_REVIEW_ID),
+                                    cursor.getString(INDEX_REVIEW_AUTHOR),
+                                    cursor.getString(INDEX_REVIEW_CONTENT),
+                                    cursor.getString(INDEX_REVIEW_URL)
+                            ));
+                            break;
                     }
-                    movie.setTrailerArray(trailerArray);
-                }
-
-
-                if (reviewsCursor != null && !reviewsCursor.isClosed()) {
-
-                    Review[] reviewArray = new Review[reviewsCursor.getCount()];
-                    while (reviewsCursor.moveToNext()) {
-                        Review review = new Review(
-                                reviewsCursor.getString(INDEX_REVIEW_ID),
-                                reviewsCursor.getString(INDEX_REVIEW_AUTHOR),
-                                reviewsCursor.getString(INDEX_REVIEW_CONTENT),
-                                reviewsCursor.getString(INDEX_REVIEW_URL)
-                        );
-                        reviewArray[reviewsCursor.getPosition()] = review;
-                    }
-                    movie.setReviewArray(reviewArray);
                 }
+                movie.setTrailerArray(trailers.toArray(new Trailer[trailers.size()]));
+                movie.setReviewArray(reviews.toArray(new Review[reviews.size()]));
 
                 Log.d(LOG_TAG, "Local movie data retrieved");
 
@@ -172,12 +154,19 @@ public class MovieDetailsQueryTask extends AsyncTask<Movie, Void, Movie> {
                 try {
 
                     URL url = NetworkUtils.buildMovieURL(String.valueOf(movie.getMovieID()));
-                    String responseStr = NetworkUtils.getResponseFromHttpUrl(url);
-                    TMDbJsonUtils.getMovieFromJson(responseStr, movie);
+                    NetworkUtils.getMovieFromHttpUrl(url, movie);
 
+                    long firstByteMillis = HttpClient.stopFirstByteTimer();
                     Log.d(LOG_TAG, "Movie data downloaded");
+                    Log.d(LOG_TAG, firstByteMillis < 0 ?
+                            "Time to first network byte: shared with a request in flight" :
+                            "Time to first network byte: " + firstByteMillis + " ms");
+                    Log.d(LOG_TAG, HttpClient.getPoolStatistics());
+                    Log.d(LOG_TAG, HttpClient.getCacheStatistics());
+                    Log.d(LOG_TAG, NetworkUtils.getCoalescingStatistics());
                 } catch (IOException | JSONException e) {
 
+                    HttpClient.stopFirstByteTimer();
                     Log.e(LOG_TAG, "An error occured while getting HTTP response" +
                             " or extracing movie data from Json response");
                     e.printStackTrace();
@@ -185,9 +174,9 @@ public class MovieDetailsQueryTask extends AsyncTask<Movie, Void, Movie> {
             }
         } finally {
 
-            movieCursor.close();
-            trailersCursor.close();
-            reviewsCursor.close();
+            if (cursor != null) {
+                cursor.close();
+            }
 
         }
 
@@ -21,16 +21,28 @@
 
 package com.example.android.popularmovies.asyncTasks;
 
-import android.content.ContentValues;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.Context;
+import android.content.OperationApplicationException;
+import android.database.SQLException;
 import android.net.Uri;
 import android.os.AsyncTask;
+import android.os.RemoteException;
 import android.util.Log;
 
 import com.example.android.popularmovies.data.MovieContract;
+import com.example.android.popularmovies.data.PosterStore;
 import com.example.android.popularmovies.models.Movie;
 import com.example.android.popularmovies.models.Review;
 import com.example.android.popularmovies.models.Trailer;
+import com.example.android.popularmovies.utilities.NetworkUtils;
+import com.example.android.popularmovies.utilities.PosterDownloader;
+import com.example.android.popularmovies.utilities.PosterSizeSelector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 
 /**
  * AsyncTask to insert a movie into {@link com.example.android.popularmovies.data.MovieContentProvider}.
@@ -68,94 +80,135 @@ public class MovieInsertTask extends AsyncTask<Movie, Void, Uri> {
     }
 
     /**
-     * Inserts the movie and its trailers and reviews into the local storage.
+     * Inserts the movie and its trailers and reviews into the local storage with one batch, so
+     * either all of them or none are stored. The posters are written to the {@link PosterStore}
+     * first, the movie row references their file names.
      *
      * @param params The movie object to insert (at position 0).
-     * @return The movie's Uri after insertion.
+     * @return The movie's Uri after insertion, null if the movie could not be stored.
      */
     @Override
     protected Uri doInBackground(Movie... params) {
 
         Movie movie = params[0];
 
-        //Insert movie data
-        ContentValues movieContentValues = new ContentValues();
-
-        movieContentValues.put(MovieContract.MovieEntry.COLUMN_MOVIE_ID, movie.getMovieID());
-        movieContentValues.put(
-                MovieContract.MovieEntry.COLUMN_MOVIE_OVERVIEW, movie.getOverview());
-        movieContentValues.put(
-                MovieContract.MovieEntry.COLUMN_MOVIE_RELEASE_DATE, movie.getReleaseDate());
-        movieContentValues.put(MovieContract.MovieEntry.COLUMN_MOVIE_TITLE, movie.getTitle());
-        movieContentValues.put(
-                MovieContract.MovieEntry.COLUMN_MOVIE_RUNTIME, movie.getRuntime());
-        movieContentValues.put(
-                MovieContract.MovieEntry.COLUMN_MOVIE_VOTE_AVERAGE, movie.getVoteAverage());
-        movieContentValues.put(
-                MovieContract.MovieEntry.COLUMN_MOVIE_POSTER_PATH, movie.getPosterPath());
-        movieContentValues.put(MovieContract.MovieEntry.COLUMN_MOVIE_FAVORITE, true);
-        Log.d(LOG_TAG, "Small poster size: " + movie.getW92Poster().length);
-        movieContentValues.put(
-                MovieContract.MovieEntry.COLUMN_MOVIE_W92_POSTER,
-                movie.getW92Poster());
-        Log.d(LOG_TAG, "Big poster size: " + movie.getW185Poster().length);
-        movieContentValues.put(
-                MovieContract.MovieEntry.COLUMN_MOVIE_W185_POSTER,
-                movie.getW185Poster());
-
-        Uri uri = this.mContext.getContentResolver().
-                insert(MovieContract.MovieEntry.CONTENT_URI, movieContentValues);
-
-        Log.d(LOG_TAG, "Movie " + movie.getMovieID() + " inserted.");
-
-        //Insert movie trailers
-        Trailer[] trailers = movie.getTrailerArray();
-        ContentValues[] trailerContentValuesArray = new ContentValues[trailers.length];
-        for (int i = 0; i < trailers.length; i++) {
-            trailerContentValuesArray[i] = new ContentValues();
-            trailerContentValuesArray[i].put(
-                    MovieContract.TrailerEntry.COLUMN_TRAILER_ID, trailers[i].getTrailerID());
-            trailerContentValuesArray[i].put(
-                    MovieContract.TrailerEntry.COLUMN_TRAILER_KEY, trailers[i].getKey());
-            trailerContentValuesArray[i].put(
-                    MovieContract.TrailerEntry.COLUMN_TRAILER_NAME, trailers[i].getName());
-            trailerContentValuesArray[i].put(
-                    MovieContract.TrailerEntry.COLUMN_TRAILER_SITE, trailers[i].getSite());
-            trailerContentValuesArray[i].put(
-                    MovieContract.TrailerEntry.COLUMN_TRAILER_TYPE, trailers[i].getType());
-            trailerContentValuesArray[i].put(
-                    MovieContract.TrailerEntry.COLUMN_MOVIE_ID, movie.getMovieID());
+        //Store posters
+        String w92PosterFile;
+        String w185PosterFile;
+        try {
+            w92PosterFile = storePoster(movie, NetworkUtils.IMDB_IMAGE_W92_SIZE,
+                    movie.getW92Poster());
+            w185PosterFile = storePoster(movie, NetworkUtils.IMDB_IMAGE_W185_SIZE,
+                    movie.getW185Poster());
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Posters of movie " + movie.getMovieID() + " could not be stored.", e);
+            PosterStore.deletePoster(this.mContext, movie.getMovieID(),
+                    NetworkUtils.IMDB_IMAGE_W92_SIZE);
+            return null;
         }
-        int rowsTrailersInserted = this.mContext.getContentResolver().
-                bulkInsert(MovieContract.TrailerEntry.CONTENT_URI, trailerContentValuesArray);
 
-        Log.d(LOG_TAG, rowsTrailersInserted + " trailers inserted.");
+        //Movie, trailers and reviews are inserted in one transaction
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+
+        operations.add(ContentProviderOperation.newInsert(MovieContract.MovieEntry.CONTENT_URI)
+                .withValue(MovieContract.MovieEntry.COLUMN_MOVIE_ID, movie.getMovieID())
+                .withValue(MovieContract.MovieEntry.COLUMN_MOVIE_OVERVIEW, movie.getOverview())
+                .withValue(MovieContract.MovieEntry.COLUMN_MOVIE_RELEASE_DATE, movie.getReleaseDate())
+                .withValue(MovieContract.MovieEntry.COLUMN_MOVIE_TITLE, movie.getTitle())
+                .withValue(MovieContract.MovieEntry.COLUMN_MOVIE_RUNTIME, movie.getRuntime())
+                .withValue(MovieContract.MovieEntry.COLUMN_MOVIE_VOTE_AVERAGE, movie.getVoteAverage())
+                .withValue(MovieContract.MovieEntry.COLUMN_MOVIE_POSTER_PATH, movie.getPosterPath())
+                .withValue(MovieContract.MovieEntry.COLUMN_MOVIE_FAVORITE, true)
+                .withValue(MovieContract.MovieEntry.COLUMN_MOVIE_W92_POSTER_FILE, w92PosterFile)
+                .withValue(MovieContract.MovieEntry.COLUMN_MOVIE_W185_POSTER_FILE, w185PosterFile)
+                .build());
+
+        //Movie trailers
+        Trailer[] trailers = movie.getTrailerArray();
+        for (Trailer trailer : trailers) {
+            operations.add(ContentProviderOperation.newInsert(MovieContract.TrailerEntry.CONTENT_URI)
+                    .withValue(MovieContract.TrailerEntry.COLUMN_TRAILER_ID, trailer.getTrailerID())
+                    .withValue(MovieContract.TrailerEntry.COLUMN_TRAILER_KEY, trailer.getKey())
+                    .withValue(MovieContract.TrailerEntry.COLUMN_TRAILER_NAME, trailer.getName())
+                    .withValue(MovieContract.TrailerEntry.COLUMN_TRAILER_SITE, trailer.getSite())
+                    .withValue(MovieContract.TrailerEntry.COLUMN_TRAILER_TYPE, trailer.getType())
+                    .withValue(MovieContract.TrailerEntry.COLUMN_MOVIE_ID, movie.getMovieID())
+                    .build());
+        }
 
-        //Insert movie reviews
+        //Movie reviews
         Review[] reviews = movie.getReviewArray();
-        ContentValues[] reviewsContentValuesArray = new ContentValues[reviews.length];
-
-        for (int i = 0; i < reviews.length; i++) {
-            reviewsContentValuesArray[i] = new ContentValues();
-            reviewsContentValuesArray[i].put(
-                    MovieContract.ReviewEntry.COLUMN_REVIEW_ID, reviews[i].getReviewID());
-            reviewsContentValuesArray[i].put(
-                    MovieContract.ReviewEntry.COLUMN_REVIEW_AUTHOR, reviews[i].getAuthor());
-            reviewsContentValuesArray[i].put(
-                    MovieContract.ReviewEntry.COLUMN_REVIEW_CONTENT, reviews[i].getContent());
-            reviewsContentValuesArray[i].put(
-                    MovieContract.ReviewEntry.COLUMN_REVIEW_URL, reviews[i].getUrlString());
-            reviewsContentValuesArray[i].put(
-                    MovieContract.ReviewEntry.COLUMN_MOVIE_ID, movie.getMovieID());
+        for (Review review : reviews) {
+            operations.add(ContentProviderOperation.newInsert(MovieContract.ReviewEntry.CONTENT_URI)
+                    .withValue(MovieContract.ReviewEntry.COLUMN_REVIEW_ID, review.getReviewID())
+                    .withValue(MovieContract.ReviewEntry.COLUMN_REVIEW_AUTHOR, review.getAuthor())
+                    .withValue(MovieContract.ReviewEntry.COLUMN_REVIEW_CONTENT, review.getContent())
+                    .withValue(MovieContract.ReviewEntry.COLUMN_REVIEW_URL, review.getUrlString())
+                    .withValue(MovieContract.ReviewEntry.COLUMN_MOVIE_ID, movie.getMovieID())
+                    .build());
         }
-        int rowsReviewsInserted = this.mContext.getContentResolver().
-                bulkInsert(MovieContract.ReviewEntry.CONTENT_URI, reviewsContentValuesArray);
 
-        Log.d(LOG_TAG, rowsReviewsInserted + " reviews inserted.");
+        Uri uri;
+        try {
+            ContentProviderResult[] results = this.mContext.getContentResolver().
+                    applyBatch(MovieContract.AUTHORITY, operations);
+            uri = results[0].uri;
+        } catch (RemoteException | OperationApplicationException | SQLException e) {
+            Log.e(LOG_TAG, "Movie " + movie.getMovieID() + " could not be inserted.", e);
+            PosterStore.deletePoster(this.mContext, movie.getMovieID(),
+                    NetworkUtils.IMDB_IMAGE_W92_SIZE);
+            PosterStore.deletePoster(this.mContext, movie.getMovieID(),
+                    NetworkUtils.IMDB_IMAGE_W185_SIZE);
+            return null;
+        }
+
+        Log.d(LOG_TAG, "Movie " + movie.getMovieID() + " inserted with " + trailers.length +
+                " trailers and " + reviews.length + " reviews.");
 
         return uri;
     }
 
+    /**
+     * Writes the poster to the {@link PosterStore}. Without poster bytes in the movie, the
+     * original download is copied, usually from the disk cache of the displayed posters, so the
+     * poster is not encoded again. The grid may have displayed another size (see
+     * {@link PosterSizeSelector}), so a cached poster of a similar size is taken before the size
+     * is downloaded.
+     *
+     * @param movie The movie.
+     * @param size  The poster size, e.g. "w92" or "w185".
+     * @param bytes The poster bytes, null to copy the download.
+     * @return The file name of the stored poster.
+     * @throws IOException If the poster could not be read or written.
+     */
+    private String storePoster(Movie movie, String size, byte[] bytes) throws IOException {
+        if (bytes != null) {
+            return PosterStore.writePoster(this.mContext, movie.getMovieID(), size, bytes);
+        }
+
+        InputStream in = null;
+        for (String cachedSize : PosterSizeSelector.getSubstituteSizes(size)) {
+            in = PosterDownloader.openCachedPoster(this.mContext,
+                    NetworkUtils.buildPosterURLString(cachedSize, movie.getPosterPath()));
+            if (in != null) {
+                Log.d(LOG_TAG, "Poster " + size + " stored from cached " + cachedSize);
+                break;
+            }
+        }
+        if (in == null) {
+            in = PosterDownloader.openPoster(this.mContext,
+                    NetworkUtils.buildPosterURLString(size, movie.getPosterPath()));
+        }
+        try {
+            String posterFile =
+                    PosterStore.writePoster(this.mContext, movie.getMovieID(), size, in);
+            Log.d(LOG_TAG, "Poster " + posterFile + " copied from the download.");
+            return posterFile;
+        } finally {
+            in.close();
+        }
+    }
+
     /**
      * Delegate to listener.
      *
@@ -27,7 +27,10 @@ import android.os.AsyncTask;
 import android.util.Log;
 
 import com.example.android.popularmovies.data.MovieContract;
+import com.example.android.popularmovies.data.PosterStore;
 import com.example.android.popularmovies.models.Movie;
+import com.example.android.popularmovies.utilities.NetworkUtils;
+import com.example.android.popularmovies.utilities.PosterCache;
 
 /**
  * AsyncTask to remove a movie from {@link com.example.android.popularmovies.data.MovieContentProvider}.
@@ -64,7 +67,8 @@ public class MovieRemoveTask extends AsyncTask<Movie, Void, Integer> {
     }
 
     /**
-     * Deletes a movie from the local storage.
+     * Deletes a movie and its poster files from the local storage. Its trailers and reviews
+     * are deleted with it by the database.
      *
      * @param params Movie object to be deleted (at position 0).
      * @return The number of deleted rows, which must be 1.
@@ -79,7 +83,18 @@ public class MovieRemoveTask extends AsyncTask<Movie, Void, Integer> {
 
         Log.d(LOG_TAG, "Deleting movie " + movieIDString);
 
-        return this.mContext.getContentResolver().delete(uri, null, null);
+        int rowsDeleted = this.mContext.getContentResolver().delete(uri, null, null);
+
+        if (rowsDeleted > 0) {
+            PosterStore.deletePoster(this.mContext, movie.getMovieID(),
+                    NetworkUtils.IMDB_IMAGE_W92_SIZE);
+            PosterStore.deletePoster(this.mContext, movie.getMovieID(),
+                    NetworkUtils.IMDB_IMAGE_W185_SIZE);
+            PosterCache.remove(movie.getMovieID(), NetworkUtils.IMDB_IMAGE_W92_SIZE);
+            PosterCache.remove(movie.getMovieID(), NetworkUtils.IMDB_IMAGE_W185_SIZE);
+        }
+
+        return rowsDeleted;
     }
 
     /**
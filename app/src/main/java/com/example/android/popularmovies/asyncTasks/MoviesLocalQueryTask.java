@@ -27,38 +27,58 @@ import android.net.Uri;
 import android.os.AsyncTask;
 import android.util.Log;
 
-import com.example.android.popularmovies.models.Movie;
-
-import static com.example.android.popularmovies.MainActivity.INDEX_MOVIE_FAVORITE;
 import static com.example.android.popularmovies.MainActivity.INDEX_MOVIE_ID;
-import static com.example.android.popularmovies.MainActivity.INDEX_MOVIE_POSTER_PATH;
-import static com.example.android.popularmovies.MainActivity.INDEX_MOVIE_W185_POSTER;
-import static com.example.android.popularmovies.MainActivity.INDEX_MOVIE_W92_POSTER;
 import static com.example.android.popularmovies.MainActivity.MOVIES_PROJECTION;
 
 /**
- * AsyncTask to download list of movies from {@link com.example.android.popularmovies.data.MovieContentProvider}.
+ * AsyncTask to query the list of movies from {@link com.example.android.popularmovies.data.MovieContentProvider}.
  * Params is the movies Uri.
- * Result is an array of Movie objects.
+ * Result is a cursor with the columns of {@link com.example.android.popularmovies.MainActivity#MOVIES_PROJECTION}.
+ * The listener owns the cursor and has to close it.
+ * <p>
+ * Given a movie id, the task also finds the position of that movie in the result in the
+ * background and tells a {@link MoviePositionListener}, so the main thread does not have to
+ * search the cursor.
  */
-public class MoviesLocalQueryTask extends AsyncTask<Uri, Void, Movie[]> {
+public class MoviesLocalQueryTask extends AsyncTask<Uri, Void, Cursor> {
 
     private static final String LOG_TAG = MoviesLocalQueryTask.class.getSimpleName();
 
+    public static final int NO_MOVIE_ID = -1;
+    public static final int NO_POSITION = -1;
+
 
-    private AsyncTaskListener<Movie[]> mListener;
+    private AsyncTaskListener<Cursor> mListener;
 
     private Context mContext;
 
+    //The movie to find in the result, NO_MOVIE_ID if none
+    private final int mMovieID;
+    private int mMoviePosition = NO_POSITION;
+
     /**
      * References to activity and listener(, which are usually both the same class).
      *
      * @param context  The activity using this task.
      * @param listener Listener to this task. Triggered before and after task completion.
      */
-    public MoviesLocalQueryTask(Context context, AsyncTaskListener<Movie[]> listener) {
+    public MoviesLocalQueryTask(Context context, AsyncTaskListener<Cursor> listener) {
+        this(context, listener, NO_MOVIE_ID);
+    }
+
+    /**
+     * References to activity and listener(, which are usually both the same class).
+     *
+     * @param context  The activity using this task.
+     * @param listener Listener to this task. Triggered before and after task completion. A
+     *                 {@link MoviePositionListener} is also told the position of the movie.
+     * @param movieID  The movie to find in the result, {@link #NO_MOVIE_ID} for none.
+     */
+    public MoviesLocalQueryTask(Context context, AsyncTaskListener<Cursor> listener,
+                                int movieID) {
         this.mContext = context;
         this.mListener = listener;
+        this.mMovieID = movieID;
     }
 
     /**
@@ -71,59 +91,78 @@ public class MoviesLocalQueryTask extends AsyncTask<Uri, Void, Movie[]> {
     }
 
     /**
-     * Retrieval of movie data in form of an Movie[] array.
+     * Retrieval of movie data in form of a cursor. getCount() fills the first cursor window
+     * here. With the small projection (no poster blobs) it usually holds all favorites, rows
+     * beyond it are still read on the main thread while scrolling. Finding the movie of the
+     * task reads all rows here instead.
      *
      * @param params Contains the Uri at position 0.
-     * @return Movie array containing all retrieved movies information from local storage.
+     * @return Cursor of all movies in local storage, null if the query failed.
      */
     @Override
-    protected Movie[] doInBackground(Uri... params) {
+    protected Cursor doInBackground(Uri... params) {
         Uri uri = params[0];
-        Movie movieArray[] = null;
 
         Cursor cursor = this.mContext.getContentResolver().query(
                 uri, MOVIES_PROJECTION, null, null, null);
 
-        try {
-            if (cursor != null && !cursor.isClosed()) {
-                movieArray = new Movie[cursor.getCount()];
-                while (cursor.moveToNext()) {
-
-                    int pos = cursor.getPosition();
-                    movieArray[pos] = new Movie(
-                            Integer.valueOf(cursor.getString(INDEX_MOVIE_ID)),
-                            cursor.getString(INDEX_MOVIE_POSTER_PATH),
-                            cursor.getBlob(INDEX_MOVIE_W92_POSTER),
-                            cursor.getBlob(INDEX_MOVIE_W185_POSTER),
-                            cursor.getInt(INDEX_MOVIE_FAVORITE)
-                    );
-
-                    Log.d(LOG_TAG, "Movie created: " +
-                            movieArray[pos].getMovieID() + ", " +
-                            movieArray[pos].getPosterPath() + ", " +
-                            movieArray[pos].getW92Poster().length + ", " +
-                            movieArray[pos].getW185Poster().length + ", " +
-                            movieArray[pos].isFavorite()
-                    );
-                }
+        if (cursor != null) {
+            Log.d(LOG_TAG, "Local movie data retrieved: " + cursor.getCount() + " movies.");
+            if (mMovieID != NO_MOVIE_ID) {
+                mMoviePosition = findMovie(cursor, mMovieID);
             }
-        } finally {
-            cursor.close();
         }
 
-        Log.d(LOG_TAG, "Local movie data retrieved.");
-
-        return movieArray;
+        return cursor;
     }
 
     /**
      * Delegate to listener.
      *
-     * @param movieArray The movie array.
+     * @param cursor The movies cursor.
      */
     @Override
-    protected void onPostExecute(Movie[] movieArray) {
-        super.onPostExecute(movieArray);
-        this.mListener.onTaskComplete(movieArray);
+    protected void onPostExecute(Cursor cursor) {
+        super.onPostExecute(cursor);
+        if (this.mListener instanceof MoviePositionListener) {
+            ((MoviePositionListener) this.mListener).onMoviePositionFound(mMoviePosition);
+        }
+        this.mListener.onTaskComplete(cursor);
+    }
+
+    /**
+     * Closes the cursor nobody is going to receive.
+     *
+     * @param cursor The movies cursor.
+     */
+    @Override
+    protected void onCancelled(Cursor cursor) {
+        if (cursor != null) {
+            cursor.close();
+        }
+    }
+
+    private static int findMovie(Cursor cursor, int movieID) {
+        for (int position = 0; position < cursor.getCount(); position++) {
+            cursor.moveToPosition(position);
+            if (cursor.getInt(INDEX_MOVIE_ID) == movieID) {
+                return position;
+            }
+        }
+        return NO_POSITION;
+    }
+
+    /**
+     * Listener that is also told where the movie of the task is in the result.
+     */
+    public interface MoviePositionListener extends AsyncTaskListener<Cursor> {
+
+        /**
+         * Invoked right before {@link #onTaskComplete(Object)}.
+         *
+         * @param position Position of the movie in the cursor, {@link #NO_POSITION} if it is not
+         *                 in it or the query failed.
+         */
+        void onMoviePositionFound(int position);
     }
 }
@@ -25,9 +25,9 @@ import android.content.Context;
 import android.os.AsyncTask;
 import android.util.Log;
 
-import com.example.android.popularmovies.models.Movie;
+import com.example.android.popularmovies.models.MoviePage;
+import com.example.android.popularmovies.utilities.HttpClient;
 import com.example.android.popularmovies.utilities.NetworkUtils;
-import com.example.android.popularmovies.utilities.TMDbJsonUtils;
 
 import org.json.JSONException;
 
@@ -35,16 +35,16 @@ import java.io.IOException;
 import java.net.URL;
 
 /**
- * AsyncTask to download list of movies.
+ * AsyncTask to download a page of a list of movies.
  * Params is the movies URL.
- * Result is an array of Movie objects.
+ * Result is the page with its Movie objects and the total number of pages.
  */
-public class MoviesQueryTask extends AsyncTask<URL, Void, Movie[]> {
+public class MoviesQueryTask extends AsyncTask<URL, Void, MoviePage> {
 
     private static final String LOG_TAG = MoviesQueryTask.class.getSimpleName();
 
 
-    private AsyncTaskListener<Movie[]> mListener;
+    private AsyncTaskListener<MoviePage> mListener;
 
     private Context mContext;
 
@@ -53,7 +53,7 @@ public class MoviesQueryTask extends AsyncTask<URL, Void, Movie[]> {
      *
      * @param listener Listener to this task. Triggered before and after task completion.
      */
-    public MoviesQueryTask(Context context, AsyncTaskListener<Movie[]> listener) {
+    public MoviesQueryTask(Context context, AsyncTaskListener<MoviePage> listener) {
         this.mContext = context;
         this.mListener = listener;
     }
@@ -68,37 +68,39 @@ public class MoviesQueryTask extends AsyncTask<URL, Void, Movie[]> {
     }
 
     /**
-     * Retrieval of movie data in form of an Movie[] array.
+     * Retrieval of movie data in form of a MoviePage.
      *
      * @param params Contains the URL at position 0.
-     * @return Movie array containing all retrieved movies information (only page 1).
+     * @return MoviePage containing the retrieved movies of the page, null if the query failed.
      */
     @Override
-    protected Movie[] doInBackground(URL... params) {
+    protected MoviePage doInBackground(URL... params) {
         URL url = params[0];
-        Movie movieArray[] = null;
+        MoviePage moviePage = null;
 
         try {
-            String responseStr = NetworkUtils.getResponseFromHttpUrl(url);
-            movieArray = TMDbJsonUtils.getMoviesFromJson(responseStr);
+            moviePage = NetworkUtils.getMoviePageFromHttpUrl(url);
 
         } catch (IOException | JSONException e) {
             e.printStackTrace();
         }
 
         Log.d(LOG_TAG, "Movie data downloaded");
+        Log.d(LOG_TAG, HttpClient.getPoolStatistics());
+        Log.d(LOG_TAG, HttpClient.getCacheStatistics());
+        Log.d(LOG_TAG, NetworkUtils.getCoalescingStatistics());
 
-        return movieArray;
+        return moviePage;
     }
 
     /**
      * Delegate to listener.
      *
-     * @param movieArray The movie array.
+     * @param moviePage The page of movies.
      */
     @Override
-    protected void onPostExecute(Movie[] movieArray) {
-        super.onPostExecute(movieArray);
-        mListener.onTaskComplete(movieArray);
+    protected void onPostExecute(MoviePage moviePage) {
+        super.onPostExecute(moviePage);
+        mListener.onTaskComplete(moviePage);
     }
 }
\ No newline at end of file
@@ -0,0 +1,135 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.android.popularmovies.asyncTasks;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.util.Log;
+
+import com.example.android.popularmovies.models.Movie;
+
+import static com.example.android.popularmovies.MainActivity.INDEX_SEARCH_MOVIE_FAVORITE;
+import static com.example.android.popularmovies.MainActivity.INDEX_SEARCH_MOVIE_ID;
+import static com.example.android.popularmovies.MainActivity.INDEX_SEARCH_MOVIE_OVERVIEW;
+import static com.example.android.popularmovies.MainActivity.INDEX_SEARCH_MOVIE_POSTER_PATH;
+import static com.example.android.popularmovies.MainActivity.INDEX_SEARCH_MOVIE_RELEASE_DATE;
+import static com.example.android.popularmovies.MainActivity.INDEX_SEARCH_MOVIE_TITLE;
+import static com.example.android.popularmovies.MainActivity.INDEX_SEARCH_MOVIE_VOTE_AVERAGE;
+import static com.example.android.popularmovies.MainActivity.SEARCH_PROJECTION;
+
+/**
+ * AsyncTask to search movies in {@link com.example.android.popularmovies.data.MovieContentProvider}.
+ * Params is the search Uri (see
+ * {@link com.example.android.popularmovies.data.MovieContract.SearchEntry#buildSearchUri(String)}).
+ * Result is an array of the matching Movie objects, empty if none matches. The posters of
+ * matching favorites are not read, the grid decodes them from their files.
+ * <p>
+ * A cancelled task stops reading the results and does not notify its listener.
+ */
+public class SearchMoviesTask extends AsyncTask<Uri, Void, Movie[]> {
+
+    private static final String LOG_TAG = SearchMoviesTask.class.getSimpleName();
+
+
+    private AsyncTaskListener<Movie[]> mListener;
+
+    private Context mContext;
+
+    /**
+     * References to activity and listener(, which are usually both the same class).
+     *
+     * @param context  The activity using this task.
+     * @param listener Listener to this task. Triggered before and after task completion.
+     */
+    public SearchMoviesTask(Context context, AsyncTaskListener<Movie[]> listener) {
+        this.mContext = context;
+        this.mListener = listener;
+    }
+
+    /**
+     * Delegate to listener.
+     */
+    @Override
+    protected void onPreExecute() {
+        super.onPreExecute();
+        this.mListener.beforeTaskExecution();
+    }
+
+    /**
+     * Retrieval of the matching movies in form of an Movie[] array.
+     *
+     * @param params Contains the search Uri at position 0.
+     * @return Movie array containing the matching movies.
+     */
+    @Override
+    protected Movie[] doInBackground(Uri... params) {
+        Uri uri = params[0];
+        Movie movieArray[] = new Movie[0];
+
+        if (isCancelled()) {
+            return movieArray;
+        }
+
+        Cursor cursor = this.mContext.getContentResolver().query(
+                uri, SEARCH_PROJECTION, null, null, null);
+
+        if (cursor == null) {
+            return movieArray;
+        }
+
+        try {
+            movieArray = new Movie[cursor.getCount()];
+            while (cursor.moveToNext() && !isCancelled()) {
+                movieArray[cursor.getPosition()] = new Movie(
+                        cursor.getInt(INDEX_SEARCH_MOVIE_ID),
+                        cursor.getString(INDEX_SEARCH_MOVIE_POSTER_PATH),
+                        cursor.getString(INDEX_SEARCH_MOVIE_OVERVIEW),
+                        cursor.getString(INDEX_SEARCH_MOVIE_RELEASE_DATE),
+                        cursor.getString(INDEX_SEARCH_MOVIE_TITLE),
+                        0,
+                        cursor.getDouble(INDEX_SEARCH_MOVIE_VOTE_AVERAGE),
+                        null,
+                        null,
+                        cursor.getInt(INDEX_SEARCH_MOVIE_FAVORITE)
+                );
+            }
+        } finally {
+            cursor.close();
+        }
+
+        Log.d(LOG_TAG, movieArray.length + " movies found for " + uri.getLastPathSegment());
+
+        return movieArray;
+    }
+
+    /**
+     * Delegate to listener.
+     *
+     * @param movieArray The movie array.
+     */
+    @Override
+    protected void onPostExecute(Movie[] movieArray) {
+        super.onPostExecute(movieArray);
+        this.mListener.onTaskComplete(movieArray);
+    }
+}
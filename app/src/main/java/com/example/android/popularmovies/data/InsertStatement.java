@@ -0,0 +1,114 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.android.popularmovies.data;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteConstraintException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+/**
+ * Precompiled insert into one table, for bulk inserts inside a transaction. The SQL is compiled
+ * once and each row only binds its values, instead of building and compiling the statement
+ * for every row as {@link SQLiteDatabase#insert(String, String, ContentValues)} does.
+ * <p>
+ * Columns missing from a row's values are inserted as null. Close the statement when done.
+ */
+final class InsertStatement {
+
+    private static final String LOG_TAG = InsertStatement.class.getSimpleName();
+
+
+    private final SQLiteStatement mStatement;
+
+    private final String[] mColumns;
+
+    /**
+     * @param db      The database to insert into.
+     * @param table   The table to insert into.
+     * @param columns The columns taken from each row's values.
+     */
+    InsertStatement(SQLiteDatabase db, String table, String[] columns) {
+        this(db, table, columns, null);
+    }
+
+    /**
+     * @param db          The database to insert into.
+     * @param table       The table to insert into.
+     * @param columns     The columns taken from each row's values.
+     * @param fixedValues Values which are the same for every row, or null.
+     */
+    InsertStatement(SQLiteDatabase db, String table, String[] columns, ContentValues fixedValues) {
+
+        mColumns = columns;
+
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (");
+        StringBuilder parameters = new StringBuilder();
+        String separator = "";
+        for (String column : columns) {
+            sql.append(separator).append(column);
+            parameters.append(separator).append('?');
+            separator = ", ";
+        }
+        if (fixedValues != null) {
+            for (String column : fixedValues.keySet()) {
+                sql.append(separator).append(column);
+                parameters.append(separator).append('?');
+                separator = ", ";
+            }
+        }
+        sql.append(") VALUES (").append(parameters).append(')');
+
+        mStatement = db.compileStatement(sql.toString());
+
+        //Fixed values stay bound, each row only rebinds its own columns
+        if (fixedValues != null) {
+            int index = columns.length + 1;
+            for (String column : fixedValues.keySet()) {
+                DatabaseUtils.bindObjectToProgram(mStatement, index++, fixedValues.get(column));
+            }
+        }
+    }
+
+    /**
+     * Inserts one row.
+     *
+     * @param values The row's values.
+     * @return The row id, or -1 if the row violates a constraint.
+     */
+    long insert(ContentValues values) {
+        for (int i = 0; i < mColumns.length; i++) {
+            DatabaseUtils.bindObjectToProgram(mStatement, i + 1, values.get(mColumns[i]));
+        }
+        try {
+            return mStatement.executeInsert();
+        } catch (SQLiteConstraintException e) {
+            Log.e(LOG_TAG, "Error inserting " + values, e);
+            return -1;
+        }
+    }
+
+    void close() {
+        mStatement.close();
+    }
+}
@@ -22,17 +22,35 @@
 package com.example.android.popularmovies.data;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.provider.BaseColumns;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.text.TextUtils;
 import android.util.Log;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Content provider for movie data; provides access to movies, trailers and reviews.
  */
@@ -42,17 +60,134 @@ public class MovieContentProvider extends ContentProvider {
     //Uri matcher codes
     public static final int MOVIES = 100;
     public static final int MOVIE_WITH_ID = 101;
+    public static final int MOVIE_BUNDLE_WITH_ID = 102;
     public static final int TRAILERS = 200;
     public static final int TRAILER_WITH_MOVIE_ID = 201;
     public static final int REVIEWS = 300;
     public static final int REVIEW_WITH_MOVIE_ID = 301;
+    public static final int CACHED_LIST_WITH_TYPE = 401;
+    public static final int SEARCH = 501;
 
     private static final String LOG_TAG = MovieContentProvider.class.getSimpleName();
 
     private static final UriMatcher sUriMatcher = buildUriMatcher();
 
+    //Cached list entries with their movies
+    private static final String CACHED_LIST_JOIN =
+            MovieContract.CachedListEntry.TABLE_NAME + " INNER JOIN " +
+                    MovieContract.CachedMovieEntry.TABLE_NAME + " ON " +
+                    MovieContract.CachedListEntry.TABLE_NAME + "." +
+                    MovieContract.CachedListEntry.COLUMN_MOVIE_ID + " = " +
+                    MovieContract.CachedMovieEntry.TABLE_NAME + "." +
+                    MovieContract.CachedMovieEntry.COLUMN_MOVIE_ID;
+
+    private static final String CACHED_LIST_SELECTION =
+            MovieContract.CachedListEntry.COLUMN_LIST_TYPE + " = ?";
+
+    //Movies not referenced by any cached list anymore
+    private static final String CACHED_MOVIES_ORPHAN_SELECTION =
+            MovieContract.CachedMovieEntry.COLUMN_MOVIE_ID + " NOT IN (SELECT " +
+                    MovieContract.CachedListEntry.COLUMN_MOVIE_ID + " FROM " +
+                    MovieContract.CachedListEntry.TABLE_NAME + ")";
+
+    //Maximum number of search results
+    static final int SEARCH_LIMIT = 60;
+
+    //Movie ids of the search rows matching the full-text query. Review rows are mapped to
+    //their movie by the review's row id.
+    private static final String SEARCH_MATCHES =
+            "SELECT DISTINCT CASE WHEN " + MovieContract.SearchEntry.TABLE_NAME + ".docid % 2 = 0" +
+                    " THEN " + MovieContract.SearchEntry.TABLE_NAME + ".docid / 2" +
+                    " ELSE " + MovieContract.ReviewEntry.TABLE_NAME + "." +
+                    MovieContract.ReviewEntry.COLUMN_MOVIE_ID + " END AS match_id" +
+                    " FROM " + MovieContract.SearchEntry.TABLE_NAME +
+                    " LEFT JOIN " + MovieContract.ReviewEntry.TABLE_NAME + " ON " +
+                    MovieContract.SearchEntry.TABLE_NAME + ".docid % 2 = 1 AND " +
+                    MovieContract.ReviewEntry.TABLE_NAME + "." + MovieContract.ReviewEntry._ID +
+                    " = " + MovieContract.SearchEntry.TABLE_NAME + ".docid / 2" +
+                    " WHERE " + MovieContract.SearchEntry.TABLE_NAME + " MATCH ?" +
+                    " LIMIT " + SEARCH_LIMIT;
+
+    //Matched movies with the data of the favorite or else the cached movie
+    private static final String SEARCH_RESULTS =
+            "SELECT matches.match_id AS " + MovieContract.SearchEntry.COLUMN_MOVIE_ID + ", " +
+                    searchResultColumn(MovieContract.SearchEntry.COLUMN_MOVIE_POSTER_PATH) + ", " +
+                    searchResultColumn(MovieContract.SearchEntry.COLUMN_MOVIE_OVERVIEW) + ", " +
+                    searchResultColumn(MovieContract.SearchEntry.COLUMN_MOVIE_RELEASE_DATE) + ", " +
+                    searchResultColumn(MovieContract.SearchEntry.COLUMN_MOVIE_TITLE) + ", " +
+                    searchResultColumn(MovieContract.SearchEntry.COLUMN_MOVIE_VOTE_AVERAGE) + ", " +
+                    MovieContract.MovieEntry.TABLE_NAME + "." +
+                    MovieContract.MovieEntry.COLUMN_MOVIE_ID + " IS NOT NULL AS " +
+                    MovieContract.SearchEntry.COLUMN_MOVIE_FAVORITE +
+                    " FROM (" + SEARCH_MATCHES + ") AS matches" +
+                    " LEFT JOIN " + MovieContract.MovieEntry.TABLE_NAME + " ON " +
+                    MovieContract.MovieEntry.TABLE_NAME + "." +
+                    MovieContract.MovieEntry.COLUMN_MOVIE_ID + " = matches.match_id" +
+                    " LEFT JOIN " + MovieContract.CachedMovieEntry.TABLE_NAME + " ON " +
+                    MovieContract.CachedMovieEntry.TABLE_NAME + "." +
+                    MovieContract.CachedMovieEntry.COLUMN_MOVIE_ID + " = matches.match_id" +
+                    " WHERE matches.match_id IS NOT NULL";
+
+    //Existence probe of a stored movie, answered from the unique movie id index
+    private static final String MOVIE_EXISTS =
+            "SELECT EXISTS (SELECT 1 FROM " + MovieContract.MovieEntry.TABLE_NAME +
+                    " WHERE " + MovieContract.MovieEntry.COLUMN_MOVIE_ID + " = ?)";
+
+    //Secondary sort column of the movie bundle, the row id within each table
+    private static final String BUNDLE_ROW_ID = "bundle_row_id";
+
+    //Columns of the bulk inserts
+    private static final String[] MOVIE_COLUMNS = {
+            MovieContract.MovieEntry.COLUMN_MOVIE_ID,
+            MovieContract.MovieEntry.COLUMN_MOVIE_OVERVIEW,
+            MovieContract.MovieEntry.COLUMN_MOVIE_RELEASE_DATE,
+            MovieContract.MovieEntry.COLUMN_MOVIE_TITLE,
+            MovieContract.MovieEntry.COLUMN_MOVIE_RUNTIME,
+            MovieContract.MovieEntry.COLUMN_MOVIE_VOTE_AVERAGE,
+            MovieContract.MovieEntry.COLUMN_MOVIE_W92_POSTER_FILE,
+            MovieContract.MovieEntry.COLUMN_MOVIE_W185_POSTER_FILE,
+            MovieContract.MovieEntry.COLUMN_MOVIE_POSTER_PATH,
+            MovieContract.MovieEntry.COLUMN_MOVIE_FAVORITE
+    };
+
+    private static final String[] TRAILER_COLUMNS = {
+            MovieContract.TrailerEntry.COLUMN_TRAILER_ID,
+            MovieContract.TrailerEntry.COLUMN_TRAILER_KEY,
+            MovieContract.TrailerEntry.COLUMN_TRAILER_NAME,
+            MovieContract.TrailerEntry.COLUMN_TRAILER_SITE,
+            MovieContract.TrailerEntry.COLUMN_TRAILER_TYPE,
+            MovieContract.TrailerEntry.COLUMN_MOVIE_ID
+    };
+
+    private static final String[] REVIEW_COLUMNS = {
+            MovieContract.ReviewEntry.COLUMN_REVIEW_ID,
+            MovieContract.ReviewEntry.COLUMN_REVIEW_AUTHOR,
+            MovieContract.ReviewEntry.COLUMN_REVIEW_CONTENT,
+            MovieContract.ReviewEntry.COLUMN_REVIEW_URL,
+            MovieContract.ReviewEntry.COLUMN_MOVIE_ID
+    };
+
+    static final String[] CACHED_MOVIE_COLUMNS = {
+            MovieContract.CachedMovieEntry.COLUMN_MOVIE_ID,
+            MovieContract.CachedMovieEntry.COLUMN_MOVIE_POSTER_PATH,
+            MovieContract.CachedMovieEntry.COLUMN_MOVIE_OVERVIEW,
+            MovieContract.CachedMovieEntry.COLUMN_MOVIE_RELEASE_DATE,
+            MovieContract.CachedMovieEntry.COLUMN_MOVIE_TITLE,
+            MovieContract.CachedMovieEntry.COLUMN_MOVIE_VOTE_AVERAGE
+    };
+
+    //The list type is the same for all entries of a snapshot
+    private static final String[] CACHED_LIST_COLUMNS = {
+            MovieContract.CachedListEntry.COLUMN_POSITION,
+            MovieContract.CachedListEntry.COLUMN_MOVIE_ID,
+            MovieContract.CachedListEntry.COLUMN_FETCHED_AT
+    };
+
     private MovieDBHelper dbHelper;
 
+    //Uris changed by the batch running on the current thread, null outside of a batch
+    private final ThreadLocal<Set<Uri>> mBatchChangedUris = new ThreadLocal<>();
+
     /**
      * Add matchers for movies, trailers and reviews.
      *
@@ -64,6 +199,8 @@ public class MovieContentProvider extends ContentProvider {
         uriMatcher.addURI(MovieContract.AUTHORITY, MovieContract.PATH_MOVIES, MOVIES);
         uriMatcher.addURI(MovieContract.AUTHORITY, MovieContract.PATH_MOVIES + "/#",
                 MOVIE_WITH_ID);
+        uriMatcher.addURI(MovieContract.AUTHORITY,
+                MovieContract.PATH_MOVIES + "/#/" + MovieContract.PATH_BUNDLE, MOVIE_BUNDLE_WITH_ID);
 
         uriMatcher.addURI(MovieContract.AUTHORITY, MovieContract.PATH_TRAILERS, TRAILERS);
         uriMatcher.addURI(MovieContract.AUTHORITY, MovieContract.PATH_TRAILERS + "/#",
@@ -73,6 +210,11 @@ public class MovieContentProvider extends ContentProvider {
         uriMatcher.addURI(MovieContract.AUTHORITY, MovieContract.PATH_REVIEWS + "/#",
                 REVIEW_WITH_MOVIE_ID);
 
+        uriMatcher.addURI(MovieContract.AUTHORITY, MovieContract.PATH_CACHED_LISTS + "/#",
+                CACHED_LIST_WITH_TYPE);
+
+        uriMatcher.addURI(MovieContract.AUTHORITY, MovieContract.PATH_SEARCH + "/*", SEARCH);
+
         return uriMatcher;
     }
 
@@ -108,7 +250,7 @@ public class MovieContentProvider extends ContentProvider {
 
         int match = sUriMatcher.match(uri);
         Cursor retCursor;
-        String movieID, mSelection;
+        String movieID, listType, mSelection;
         String[] mSelectionArgs;
         switch (match) {
             case MOVIES:
@@ -134,6 +276,10 @@ public class MovieContentProvider extends ContentProvider {
                         sortOrder);
                 break;
 
+            case MOVIE_BUNDLE_WITH_ID:
+                retCursor = queryMovieBundle(db, projection, uri.getPathSegments().get(1));
+                break;
+
             case TRAILERS:
                 retCursor = db.query(MovieContract.TrailerEntry.TABLE_NAME,
                         projection,
@@ -180,6 +326,23 @@ public class MovieContentProvider extends ContentProvider {
                         sortOrder);
                 break;
 
+            case CACHED_LIST_WITH_TYPE:
+                listType = uri.getPathSegments().get(1);
+                SQLiteQueryBuilder queryBuilder = new SQLiteQueryBuilder();
+                queryBuilder.setTables(CACHED_LIST_JOIN);
+                retCursor = queryBuilder.query(db,
+                        projection,
+                        MovieContract.CachedListEntry.TABLE_NAME + "." + CACHED_LIST_SELECTION,
+                        new String[]{listType},
+                        null,
+                        null,
+                        sortOrder != null ? sortOrder : MovieContract.CachedListEntry.COLUMN_POSITION);
+                break;
+
+            case SEARCH:
+                retCursor = search(db, projection, uri.getLastPathSegment());
+                break;
+
             default:
                 throw new UnsupportedOperationException("Unknown Uri: " + uri);
         }
@@ -191,6 +354,219 @@ public class MovieContentProvider extends ContentProvider {
         return retCursor;
     }
 
+    /**
+     * Queries a stored movie together with its trailers and reviews in one statement. A movie
+     * which is not stored is answered by a single probe of the movie id index, without touching
+     * the trailer and review tables.
+     *
+     * @param db         The database to query.
+     * @param projection Columns of the movie, trailer and review tables. Must contain
+     *                   {@link MovieContract.MovieBundleEntry#COLUMN_ROW_TYPE}.
+     * @param movieID    The TMDb id of the movie.
+     * @return Cursor with the movie row first, then the trailer rows and the review rows, each in
+     * insert order. Empty if the movie is not stored.
+     */
+    static Cursor queryMovieBundle(SQLiteDatabase db, String[] projection, String movieID) {
+
+        if (projection == null || !Arrays.asList(projection)
+                .contains(MovieContract.MovieBundleEntry.COLUMN_ROW_TYPE)) {
+            throw new IllegalArgumentException("Movie bundle projection must contain " +
+                    MovieContract.MovieBundleEntry.COLUMN_ROW_TYPE);
+        }
+
+        String[] movieIDArgs = {movieID};
+        if (DatabaseUtils.longForQuery(db, MOVIE_EXISTS, movieIDArgs) == 0) {
+            return new MatrixCursor(projection, 0);
+        }
+
+        //Rows of one type keep their insert order by row id, which is not part of the projection
+        String bundle = "SELECT " + TextUtils.join(", ", projection) + " FROM (" +
+                movieBundleSelect(MovieContract.MovieBundleEntry.ROW_TYPE_MOVIE,
+                        MovieContract.MovieEntry.TABLE_NAME, MOVIE_COLUMNS, projection) +
+                " UNION ALL " +
+                movieBundleSelect(MovieContract.MovieBundleEntry.ROW_TYPE_TRAILER,
+                        MovieContract.TrailerEntry.TABLE_NAME, TRAILER_COLUMNS, projection) +
+                " UNION ALL " +
+                movieBundleSelect(MovieContract.MovieBundleEntry.ROW_TYPE_REVIEW,
+                        MovieContract.ReviewEntry.TABLE_NAME, REVIEW_COLUMNS, projection) +
+                ") ORDER BY " + MovieContract.MovieBundleEntry.COLUMN_ROW_TYPE + ", " +
+                BUNDLE_ROW_ID;
+
+        return db.rawQuery(bundle, new String[]{movieID, movieID, movieID});
+    }
+
+    private static String movieBundleSelect(int rowType, String table, String[] tableColumns,
+                                            String[] projection) {
+        List<String> columns = Arrays.asList(tableColumns);
+        StringBuilder select = new StringBuilder("SELECT ");
+        for (int i = 0; i < projection.length; i++) {
+            String column = projection[i];
+            if (i > 0) {
+                select.append(", ");
+            }
+            if (column.equals(MovieContract.MovieBundleEntry.COLUMN_ROW_TYPE)) {
+                select.append(rowType).append(" AS ").append(column);
+            } else if (column.equals(BaseColumns._ID) || columns.contains(column)) {
+                select.append(column);
+            } else {
+                select.append("NULL AS ").append(column);
+            }
+        }
+        return select.append(", ").append(BaseColumns._ID).append(" AS ").append(BUNDLE_ROW_ID)
+                .append(" FROM ").append(table).append(" WHERE movie_id = ?").toString();
+    }
+
+    /**
+     * Full-text search for movies. Every word of the text is matched as prefix against the
+     * titles and overviews of favorites and cached movies and the reviews of favorites.
+     *
+     * @param db         The database to search.
+     * @param projection Result columns (see {@link MovieContract.SearchEntry}), null for all.
+     * @param searchText The text the user typed.
+     * @return Cursor of at most {@value #SEARCH_LIMIT} matching movies.
+     */
+    static Cursor search(SQLiteDatabase db, String[] projection, String searchText) {
+
+        String columns = projection == null ? "*" : TextUtils.join(", ", projection);
+        String matchQuery = toMatchQuery(searchText);
+        if (matchQuery == null) {
+            return db.rawQuery("SELECT " + columns + " FROM (" + SEARCH_RESULTS + ") LIMIT 0",
+                    new String[]{""});
+        }
+
+        return db.rawQuery("SELECT " + columns + " FROM (" + SEARCH_RESULTS + ")",
+                new String[]{matchQuery});
+    }
+
+    /**
+     * @param searchText The text the user typed.
+     * @return FTS query matching every word of the text as prefix, null if there is no word.
+     */
+    static String toMatchQuery(String searchText) {
+        if (searchText == null) {
+            return null;
+        }
+        StringBuilder matchQuery = new StringBuilder();
+        for (String word : searchText.toLowerCase(Locale.US).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                matchQuery.append(matchQuery.length() == 0 ? "" : " ").append(word).append('*');
+            }
+        }
+        return matchQuery.length() == 0 ? null : matchQuery.toString();
+    }
+
+    private static String searchResultColumn(String column) {
+        return "COALESCE(" + MovieContract.MovieEntry.TABLE_NAME + "." + column + ", " +
+                MovieContract.CachedMovieEntry.TABLE_NAME + "." + column + ") AS " + column;
+    }
+
+    /**
+     * Applies the operations in one transaction. Either all operations are applied or, if one
+     * fails, none. Observers are notified after the commit, once per changed table on the
+     * common parent of the table's changed Uris (e.g. movies/42 if only that movie changed).
+     *
+     * @param operations The operations to apply.
+     * @return The results of the operations.
+     * @throws OperationApplicationException If an operation fails.
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+
+        final SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        ContentProviderResult[] results;
+        Set<Uri> changedUris = new LinkedHashSet<>();
+        mBatchChangedUris.set(changedUris);
+        db.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            mBatchChangedUris.remove();
+        }
+
+        if (!changedUris.isEmpty()) {
+            dbHelper.onWriteCompleted(db);
+            for (Uri changedUri : getCommonParents(changedUris)) {
+                getContext().getContentResolver().notifyChange(changedUri, null);
+            }
+        }
+
+        Log.d(LOG_TAG, operations.size() + " operations applied in one transaction");
+
+        return results;
+    }
+
+    /**
+     * Notifies the observers of the Uri, or defers the notification to the end of the batch
+     * running on this thread.
+     *
+     * @param db  The database written to.
+     * @param uri The changed Uri.
+     */
+    private void onChange(SQLiteDatabase db, Uri uri) {
+        Set<Uri> batchChangedUris = mBatchChangedUris.get();
+        if (batchChangedUris != null) {
+            batchChangedUris.add(uri);
+            return;
+        }
+        dbHelper.onWriteCompleted(db);
+        getContext().getContentResolver().notifyChange(uri, null);
+    }
+
+    /**
+     * @param uris The changed Uris, all of this provider.
+     * @return Per table (first path segment) the common parent of the table's Uris.
+     */
+    private static Collection<Uri> getCommonParents(Set<Uri> uris) {
+        Map<String, Set<Uri>> tableUris = new LinkedHashMap<>();
+        for (Uri uri : uris) {
+            String table = uri.getPathSegments().isEmpty() ? "" : uri.getPathSegments().get(0);
+            Set<Uri> changed = tableUris.get(table);
+            if (changed == null) {
+                changed = new LinkedHashSet<>();
+                tableUris.put(table, changed);
+            }
+            changed.add(uri);
+        }
+
+        List<Uri> commonParents = new ArrayList<>(tableUris.size());
+        for (Set<Uri> changed : tableUris.values()) {
+            commonParents.add(getCommonParent(changed));
+        }
+        return commonParents;
+    }
+
+    /**
+     * @param uris The changed Uris, all of this provider.
+     * @return The deepest Uri which is a parent of (or equal to) every Uri.
+     */
+    private static Uri getCommonParent(Set<Uri> uris) {
+        List<String> commonSegments = null;
+        for (Uri uri : uris) {
+            List<String> segments = uri.getPathSegments();
+            if (commonSegments == null) {
+                commonSegments = new ArrayList<>(segments);
+                continue;
+            }
+            int common = 0;
+            while (common < commonSegments.size() && common < segments.size()
+                    && commonSegments.get(common).equals(segments.get(common))) {
+                common++;
+            }
+            commonSegments.subList(common, commonSegments.size()).clear();
+        }
+
+        Uri.Builder builder = MovieContract.BASE_CONTENT_URI.buildUpon();
+        for (String segment : commonSegments) {
+            builder.appendPath(segment);
+        }
+        return builder.build();
+    }
+
     /**
      * Not used
      *
@@ -204,8 +580,8 @@ public class MovieContentProvider extends ContentProvider {
     }
 
     /**
-     * Inserts data into tables movies, trailers or reviews and notifies the Uri observers
-     * of the change.
+     * Inserts data into tables movies, trailers or reviews and notifies the observers of the
+     * inserted movie's Uri (e.g. movies/42 or trailers/42) of the change.
      *
      * @param uri    The Uri for the inserted data.
      * @param values Content values to insert into table.
@@ -220,6 +596,7 @@ public class MovieContentProvider extends ContentProvider {
         Log.d(LOG_TAG, "Doing an insert");
         int match = sUriMatcher.match(uri);
         Uri returnUri;
+        Uri changedUri;
 
         switch (match) {
 
@@ -231,6 +608,8 @@ public class MovieContentProvider extends ContentProvider {
                 } else {
                     throw new android.database.SQLException("Failed to insert movie data");
                 }
+                changedUri = getMovieUri(uri,
+                        values.getAsLong(MovieContract.MovieEntry.COLUMN_MOVIE_ID));
                 Log.d(LOG_TAG, "Movie inserted");
                 break;
 
@@ -242,6 +621,8 @@ public class MovieContentProvider extends ContentProvider {
                 } else {
                     throw new android.database.SQLException("Failed to insert trailer data");
                 }
+                changedUri = getMovieUri(uri,
+                        values.getAsLong(MovieContract.TrailerEntry.COLUMN_MOVIE_ID));
                 Log.d(LOG_TAG, "Trailer inserted");
                 break;
 
@@ -253,6 +634,8 @@ public class MovieContentProvider extends ContentProvider {
                 } else {
                     throw new android.database.SQLException("Failed to insert review data");
                 }
+                changedUri = getMovieUri(uri,
+                        values.getAsLong(MovieContract.ReviewEntry.COLUMN_MOVIE_ID));
                 Log.d(LOG_TAG, "Review inserted");
                 break;
 
@@ -260,11 +643,23 @@ public class MovieContentProvider extends ContentProvider {
                 throw new UnsupportedOperationException("Unknown Uri: " + uri);
         }
 
-        getContext().getContentResolver().notifyChange(uri, null);
+        onChange(db, changedUri);
 
         return returnUri;
     }
 
+    /**
+     * @param tableUri The Uri of the table.
+     * @param movieID  The movie id of the changed row, may be null.
+     * @return The Uri of the movie within the table, the table Uri if there is no movie id.
+     */
+    private static Uri getMovieUri(Uri tableUri, Long movieID) {
+        if (movieID == null) {
+            return tableUri;
+        }
+        return ContentUris.withAppendedId(tableUri, movieID);
+    }
+
     /**
      * Deletes a movie/trailer/review from the corresponding table. In case of a delete notifies
      * the Uri observers of the change.
@@ -304,12 +699,26 @@ public class MovieContentProvider extends ContentProvider {
                 );
                 break;
 
+            case CACHED_LIST_WITH_TYPE:
+                String listType = uri.getPathSegments().get(1);
+                db.beginTransaction();
+                try {
+                    rowsDeleted = db.delete(MovieContract.CachedListEntry.TABLE_NAME,
+                            CACHED_LIST_SELECTION, new String[]{listType});
+                    db.delete(MovieContract.CachedMovieEntry.TABLE_NAME,
+                            CACHED_MOVIES_ORPHAN_SELECTION, null);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                break;
+
             default:
                 throw new UnsupportedOperationException("Unknown Uri: " + uri);
         }
 
         if (rowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            onChange(db, uri);
         }
 
         return rowsDeleted;
@@ -364,15 +773,19 @@ public class MovieContentProvider extends ContentProvider {
         }
 
         if (nbrRowsUpdated != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            onChange(db, uri);
         }
 
         return nbrRowsUpdated;
     }
 
     /**
-     * Bulk insert of trailer or review data. If data was inserted notifies the Uri observers
-     * of the change.
+     * Bulk insert of movie, trailer or review data, or replacement of a cached list snapshot. If
+     * data was inserted notifies the Uri observers of the change.
+     * <p>
+     * All rows are inserted in one transaction with a precompiled {@link InsertStatement}.
+     * The values of a cached list contain the {@link MovieContract.CachedMovieEntry} columns
+     * plus the position and fetch time of the {@link MovieContract.CachedListEntry}.
      *
      * @param uri    The Uri of the insertion.
      * @param values The values to insert into the table.
@@ -383,50 +796,111 @@ public class MovieContentProvider extends ContentProvider {
 
         final SQLiteDatabase db = dbHelper.getWritableDatabase();
 
+        int rowsInserted;
         switch (sUriMatcher.match(uri)) {
-            case TRAILERS:
-                db.beginTransaction();
-                int trailerRowsInserted = 0;
-                try {
-                    for (ContentValues value : values) {
-                        long id = db.insert(MovieContract.TrailerEntry.TABLE_NAME, null, value);
-                        if (id != -1) {
-                            trailerRowsInserted++;
-                        }
-                    }
-                    db.setTransactionSuccessful();
-                } finally {
-                    db.endTransaction();
-                }
+            case MOVIES:
+                rowsInserted = bulkInsert(db, MovieContract.MovieEntry.TABLE_NAME,
+                        MOVIE_COLUMNS, values);
+                break;
 
-                if (trailerRowsInserted > 0) {
-                    getContext().getContentResolver().notifyChange(uri, null);
-                }
+            case TRAILERS:
+                rowsInserted = bulkInsert(db, MovieContract.TrailerEntry.TABLE_NAME,
+                        TRAILER_COLUMNS, values);
+                break;
 
-                return trailerRowsInserted;
             case REVIEWS:
-                db.beginTransaction();
-                int reviewRowsInserted = 0;
-                try {
-                    for (ContentValues value : values) {
-                        long id = db.insert(MovieContract.ReviewEntry.TABLE_NAME, null, value);
-                        if (id != -1) {
-                            reviewRowsInserted++;
-                        }
+                rowsInserted = bulkInsert(db, MovieContract.ReviewEntry.TABLE_NAME,
+                        REVIEW_COLUMNS, values);
+                break;
+
+            case CACHED_LIST_WITH_TYPE:
+                rowsInserted = replaceCachedList(db, uri.getPathSegments().get(1), values);
+                break;
+
+            default:
+                return super.bulkInsert(uri, values);
+        }
+
+        if (rowsInserted > 0) {
+            onChange(db, uri);
+        }
+
+        return rowsInserted;
+    }
+
+    /**
+     * Inserts the rows into the table in one transaction.
+     *
+     * @return Number of rows inserted.
+     */
+    private static int bulkInsert(SQLiteDatabase db, String table, String[] columns,
+                                  ContentValues[] values) {
+        int rowsInserted = 0;
+        //Compiled before the transaction, so a failing compile leaves no transaction open
+        InsertStatement statement = new InsertStatement(db, table, columns);
+        try {
+            db.beginTransaction();
+            try {
+                for (ContentValues value : values) {
+                    if (statement.insert(value) != -1) {
+                        rowsInserted++;
                     }
-                    db.setTransactionSuccessful();
-                } finally {
-                    db.endTransaction();
                 }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } finally {
+            statement.close();
+        }
+        return rowsInserted;
+    }
 
-                if (reviewRowsInserted > 0) {
-                    getContext().getContentResolver().notifyChange(uri, null);
+    /**
+     * Replaces the snapshot of a cached list in one transaction. Movies no longer referenced by
+     * any list are deleted.
+     *
+     * @return Number of list entries inserted.
+     */
+    private static int replaceCachedList(SQLiteDatabase db, String listType,
+                                         ContentValues[] values) {
+
+        ContentValues listTypeValues = new ContentValues();
+        listTypeValues.put(MovieContract.CachedListEntry.COLUMN_LIST_TYPE, listType);
+
+        int rowsInserted = 0;
+        //Compiled before the transaction, so a failing compile leaves no transaction open
+        InsertStatement movieStatement = new InsertStatement(db,
+                MovieContract.CachedMovieEntry.TABLE_NAME, CACHED_MOVIE_COLUMNS);
+        InsertStatement listStatement = null;
+        try {
+            listStatement = new InsertStatement(db, MovieContract.CachedListEntry.TABLE_NAME,
+                    CACHED_LIST_COLUMNS, listTypeValues);
+
+            db.beginTransaction();
+            try {
+                db.delete(MovieContract.CachedListEntry.TABLE_NAME,
+                        CACHED_LIST_SELECTION, new String[]{listType});
+
+                for (ContentValues value : values) {
+                    movieStatement.insert(value);
+                    if (listStatement.insert(value) != -1) {
+                        rowsInserted++;
+                    }
                 }
 
-                return reviewRowsInserted;
-
-            default:
-                return super.bulkInsert(uri, values);
+                db.delete(MovieContract.CachedMovieEntry.TABLE_NAME,
+                        CACHED_MOVIES_ORPHAN_SELECTION, null);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } finally {
+            movieStatement.close();
+            if (listStatement != null) {
+                listStatement.close();
+            }
         }
+        return rowsInserted;
     }
 }
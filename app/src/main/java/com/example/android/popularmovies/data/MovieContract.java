@@ -37,6 +37,9 @@ public class MovieContract {
     public static final String PATH_MOVIES = "movies";
     public static final String PATH_TRAILERS = "trailers";
     public static final String PATH_REVIEWS = "reviews";
+    public static final String PATH_CACHED_LISTS = "cached_lists";
+    public static final String PATH_SEARCH = "search";
+    public static final String PATH_BUNDLE = "bundle";
 
     /**
      * Specifies URI and table columns for movie data.
@@ -54,11 +57,47 @@ public class MovieContract {
         public static final String COLUMN_MOVIE_TITLE = "title";
         public static final String COLUMN_MOVIE_RUNTIME = "runtime";
         public static final String COLUMN_MOVIE_VOTE_AVERAGE = "vote_average";
-        public static final String COLUMN_MOVIE_W92_POSTER = "w92_poster";
-        public static final String COLUMN_MOVIE_W185_POSTER = "w185_poster";
+        //File names of the posters in the PosterStore
+        public static final String COLUMN_MOVIE_W92_POSTER_FILE = "w92_poster_file";
+        public static final String COLUMN_MOVIE_W185_POSTER_FILE = "w185_poster_file";
         public static final String COLUMN_MOVIE_POSTER_PATH = "poster_path";
         public static final String COLUMN_MOVIE_FAVORITE = "favorite";
 
+        /**
+         * @param movieId The TMDb id of the movie.
+         * @return The Uri of the movie. Changes of the movie are notified on this Uri.
+         */
+        public static Uri buildMovieUri(long movieId) {
+            return CONTENT_URI.buildUpon().appendPath(String.valueOf(movieId)).build();
+        }
+
+        /**
+         * @param movieId The TMDb id of the movie.
+         * @return The Uri to query for the movie bundle (see {@link MovieBundleEntry}).
+         */
+        public static Uri buildMovieBundleUri(long movieId) {
+            return buildMovieUri(movieId).buildUpon().appendPath(PATH_BUNDLE).build();
+        }
+
+    }
+
+    /**
+     * Specifies the columns of a movie bundle: the stored movie, its trailers and its reviews
+     * in one cursor. Query {@link MovieEntry#buildMovieBundleUri(long)}.
+     * <p>
+     * The movie row comes first, followed by the trailer rows and the review rows. The
+     * {@link #COLUMN_ROW_TYPE} tells them apart. The projection may combine columns of
+     * {@link MovieEntry}, {@link TrailerEntry} and {@link ReviewEntry}; columns of the other
+     * tables are null in each row. The cursor is empty if the movie is not stored.
+     */
+    public static final class MovieBundleEntry {
+
+        public static final String COLUMN_ROW_TYPE = "row_type";
+
+        public static final int ROW_TYPE_MOVIE = 0;
+        public static final int ROW_TYPE_TRAILER = 1;
+        public static final int ROW_TYPE_REVIEW = 2;
+
     }
 
     /**
@@ -97,4 +136,80 @@ public class MovieContract {
         public static final String COLUMN_MOVIE_ID = "movie_id";
 
     }
+
+    /**
+     * Specifies URI and table columns for the cached snapshots of the popular and top-rated
+     * lists: the ordered movie ids per list and the time the list was fetched.
+     * <p>
+     * Use the list type as id of the URI (e.g. CONTENT_URI/0 for popular movies). A query
+     * joins the {@link CachedMovieEntry} columns, a bulk insert replaces the list snapshot.
+     */
+    public static final class CachedListEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_CACHED_LISTS).build();
+
+        public static final String TABLE_NAME = "cached_lists";
+
+        public static final String COLUMN_LIST_TYPE = "list_type";
+        public static final String COLUMN_POSITION = "position";
+        public static final String COLUMN_MOVIE_ID = "movie_id";
+        public static final String COLUMN_FETCHED_AT = "fetched_at";
+
+    }
+
+    /**
+     * Specifies table columns for the movies of the cached lists. Only accessible through
+     * {@link CachedListEntry#CONTENT_URI}.
+     */
+    public static final class CachedMovieEntry implements BaseColumns {
+
+        public static final String TABLE_NAME = "cached_movies";
+
+        public static final String COLUMN_MOVIE_ID = "movie_id";
+        public static final String COLUMN_MOVIE_POSTER_PATH = "poster_path";
+        public static final String COLUMN_MOVIE_OVERVIEW = "overview";
+        public static final String COLUMN_MOVIE_RELEASE_DATE = "release_date";
+        public static final String COLUMN_MOVIE_TITLE = "title";
+        public static final String COLUMN_MOVIE_VOTE_AVERAGE = "vote_average";
+
+    }
+
+    /**
+     * Specifies URI and columns for the full-text search over the titles and overviews of
+     * favorite and cached movies and the review content of favorites.
+     * <p>
+     * Query {@link #buildSearchUri(String)}. Each result row is a movie with the COLUMN_*
+     * columns below. Every word of the search text is matched as prefix.
+     */
+    public static final class SearchEntry {
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_SEARCH).build();
+
+        //Full-text index: movie rows have the docid movie_id * 2, review rows _id * 2 + 1
+        public static final String TABLE_NAME = "movie_search";
+
+        public static final String COLUMN_INDEX_TITLE = "title";
+        public static final String COLUMN_INDEX_OVERVIEW = "overview";
+        public static final String COLUMN_INDEX_CONTENT = "content";
+
+        //Result columns
+        public static final String COLUMN_MOVIE_ID = "movie_id";
+        public static final String COLUMN_MOVIE_POSTER_PATH = "poster_path";
+        public static final String COLUMN_MOVIE_OVERVIEW = "overview";
+        public static final String COLUMN_MOVIE_RELEASE_DATE = "release_date";
+        public static final String COLUMN_MOVIE_TITLE = "title";
+        public static final String COLUMN_MOVIE_VOTE_AVERAGE = "vote_average";
+        public static final String COLUMN_MOVIE_FAVORITE = "favorite";
+
+        /**
+         * @param searchText The text the user typed.
+         * @return The Uri to query for movies matching the text.
+         */
+        public static Uri buildSearchUri(String searchText) {
+            return CONTENT_URI.buildUpon().appendPath(searchText).build();
+        }
+
+    }
 }
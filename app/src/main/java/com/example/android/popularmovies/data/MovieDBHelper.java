@@ -21,30 +21,139 @@
 
 package com.example.android.popularmovies.data;
 
+import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
+import android.util.Log;
 
+import com.example.android.popularmovies.data.MovieContract.CachedListEntry;
+import com.example.android.popularmovies.data.MovieContract.CachedMovieEntry;
 import com.example.android.popularmovies.data.MovieContract.MovieEntry;
 import com.example.android.popularmovies.data.MovieContract.ReviewEntry;
+import com.example.android.popularmovies.data.MovieContract.SearchEntry;
 import com.example.android.popularmovies.data.MovieContract.TrailerEntry;
+import com.example.android.popularmovies.utilities.NetworkUtils;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * DBHelper for movie database. A movie has 0 or more trailers or reviews.
+ * <p>
+ * Version history:
+ * 1 - movies (favorites), trailers and reviews
+ * 2 - cached snapshots of the popular and top-rated lists
+ * 3 - poster images moved from BLOB columns into the {@link PosterStore}
+ * 4 - trailers and reviews indexed by movie id and deleted together with their movie
+ * 5 - full-text search index over movies, cached movies and reviews
+ * <p>
+ * The database uses write-ahead logging. Queries run on the framework's pool of read
+ * connections while a favorite is written, instead of waiting for the write transaction. Next to
+ * SQLite's automatic checkpoint on commit, the log is checkpointed passively every
+ * {@value #CHECKPOINT_WRITE_INTERVAL} writes (see {@link #onWriteCompleted(SQLiteDatabase)}).
  */
 public class MovieDBHelper extends SQLiteOpenHelper {
 
+    private static final String LOG_TAG = MovieDBHelper.class.getSimpleName();
+
     private static final String DATABASE_NAME = "moviesMainDb.db";
 
 
-    private static final int VERSION = 1;
+    private static final int VERSION = 5;
+
+    //Indexes for the trailer and review lookups of a movie
+    static final String TRAILER_MOVIE_ID_INDEX = "trailers_movie_id_index";
+    static final String REVIEW_MOVIE_ID_INDEX = "reviews_movie_id_index";
+
+    //Poster BLOB columns of version 2 and before
+    private static final String LEGACY_COLUMN_MOVIE_W92_POSTER = "w92_poster";
+    private static final String LEGACY_COLUMN_MOVIE_W185_POSTER = "w185_poster";
+
+    //Writes between two passive checkpoints of the write-ahead log
+    private static final int CHECKPOINT_WRITE_INTERVAL = 32;
+
+    private final Context mContext;
+
+    private final boolean mWriteAheadLogging;
+
+    private final AtomicInteger mWritesSinceCheckpoint = new AtomicInteger();
 
     public MovieDBHelper(Context context) {
-        super(context, DATABASE_NAME, null, VERSION);
+        this(context, DATABASE_NAME, true);
+    }
+
+    /**
+     * @param context           Context to open the database and the poster store.
+     * @param name              The database file name.
+     * @param writeAheadLogging True for write-ahead logging, false for the rollback journal.
+     */
+    MovieDBHelper(Context context, String name, boolean writeAheadLogging) {
+        super(context, name, null, VERSION);
+        mContext = context;
+        mWriteAheadLogging = writeAheadLogging;
+        if (writeAheadLogging && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            setWriteAheadLoggingEnabled(true);
+        }
+    }
+
+    /**
+     * Enables write-ahead logging on versions which cannot configure it before opening, and
+     * foreign key constraints so that trailers and reviews are deleted with their movie.
+     * <p>
+     * Foreign keys are enabled here rather than in onConfigure, so the table rebuilds of
+     * onUpgrade run without them.
+     *
+     * @param db The SQLite database.
+     */
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        if (db.isReadOnly()) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            db.setForeignKeyConstraintsEnabled(true);
+        } else {
+            if (mWriteAheadLogging) {
+                db.enableWriteAheadLogging();
+            }
+            db.execSQL("PRAGMA foreign_keys = ON;");
+        }
     }
 
     /**
-     * The movie id is unique and referenced as foreign key by a trailer or review.
+     * Called by the provider after a completed write. Every {@value #CHECKPOINT_WRITE_INTERVAL}
+     * writes the log is copied back into the database with a passive checkpoint, which does not
+     * wait for readers, so the log file stays small and reads do not have to scan it.
+     *
+     * @param db The SQLite database.
+     */
+    void onWriteCompleted(SQLiteDatabase db) {
+        if (!mWriteAheadLogging ||
+                mWritesSinceCheckpoint.incrementAndGet() < CHECKPOINT_WRITE_INTERVAL) {
+            return;
+        }
+        mWritesSinceCheckpoint.set(0);
+
+        Cursor cursor = db.rawQuery("PRAGMA wal_checkpoint(PASSIVE)", null);
+        try {
+            if (cursor.moveToFirst()) {
+                Log.d(LOG_TAG, "Checkpoint: " + cursor.getInt(2) + " of " +
+                        cursor.getInt(1) + " log frames copied.");
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * The movie id is unique and referenced as foreign key by a trailer or review. Deleting a
+     * movie deletes its trailers and reviews.
      *
      * @param db The SQLite database to manage.
      */
@@ -52,8 +161,52 @@ public class MovieDBHelper extends SQLiteOpenHelper {
     public void onCreate(SQLiteDatabase db) {
 
 
+        createMovieTable(db, MovieEntry.TABLE_NAME);
+
+
+        createTrailerTable(db, TrailerEntry.TABLE_NAME);
+        createReviewTable(db, ReviewEntry.TABLE_NAME);
+        createMovieIdIndexes(db);
+
+        createCachedListTables(db);
+        createSearchIndex(db);
+    }
+
+    /**
+     * Upgrade the tables step by step from old version to new version. Favorites are kept.
+     *
+     * @param db         The SQLite database.
+     * @param oldVersion Old version number.
+     * @param newVersion New version number.
+     */
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            createCachedListTables(db);
+        }
+        if (oldVersion < 3) {
+            movePostersToFiles(db);
+        }
+        if (oldVersion < 4) {
+            cascadeTrailersAndReviews(db);
+        }
+        if (oldVersion < 5) {
+            createSearchIndex(db);
+            populateSearchIndex(db);
+        }
+    }
+
+    /**
+     * Creates the movies table. Posters are stored in the {@link PosterStore}, the table keeps
+     * their file names.
+     *
+     * @param db        The SQLite database to manage.
+     * @param tableName The name of the table, differs from the movies table during migration.
+     */
+    private static void createMovieTable(SQLiteDatabase db, String tableName) {
+
         final String CREATE_MOVIE_TABLE = "CREATE TABLE IF NOT EXISTS " +
-                MovieEntry.TABLE_NAME + " (" +
+                tableName + " (" +
                 MovieEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
                 MovieEntry.COLUMN_MOVIE_ID + " INTEGER NOT NULL, " +
                 MovieEntry.COLUMN_MOVIE_OVERVIEW + " TEXT NOT NULL, " +
@@ -61,15 +214,25 @@ public class MovieDBHelper extends SQLiteOpenHelper {
                 MovieEntry.COLUMN_MOVIE_TITLE + " TEXT NOT NULL, " +
                 MovieEntry.COLUMN_MOVIE_RUNTIME + " INTEGER NOT NULL, " +
                 MovieEntry.COLUMN_MOVIE_VOTE_AVERAGE + " REAL NOT NULL, " +
-                MovieEntry.COLUMN_MOVIE_W92_POSTER + " BLOB NOT NULL, " +
-                MovieEntry.COLUMN_MOVIE_W185_POSTER + " BLOB NOT NULL, " +
+                MovieEntry.COLUMN_MOVIE_W92_POSTER_FILE + " TEXT NOT NULL, " +
+                MovieEntry.COLUMN_MOVIE_W185_POSTER_FILE + " TEXT NOT NULL, " +
                 MovieEntry.COLUMN_MOVIE_POSTER_PATH + " TEXT NOT NULL, " +
                 MovieEntry.COLUMN_MOVIE_FAVORITE + " INTEGER NOT NULL, " +
                 " UNIQUE (" + MovieEntry.COLUMN_MOVIE_ID + ") ON CONFLICT REPLACE);";
 
+        db.execSQL(CREATE_MOVIE_TABLE);
+    }
+
+    /**
+     * Creates the trailers table. Trailers are deleted together with their movie.
+     *
+     * @param db        The SQLite database to manage.
+     * @param tableName The name of the table, differs from the trailers table during migration.
+     */
+    private static void createTrailerTable(SQLiteDatabase db, String tableName) {
 
         final String CREATE_TRAILER_TABLE = "CREATE TABLE IF NOT EXISTS " +
-                TrailerEntry.TABLE_NAME + " (" +
+                tableName + " (" +
                 TrailerEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
                 TrailerEntry.COLUMN_TRAILER_ID + " TEXT NOT NULL, " +
                 TrailerEntry.COLUMN_TRAILER_KEY + " TEXT NOT NULL, " +
@@ -79,11 +242,22 @@ public class MovieDBHelper extends SQLiteOpenHelper {
                 TrailerEntry.COLUMN_MOVIE_ID + " INTEGER NOT NULL, " +
                 "FOREIGN KEY(" + TrailerEntry.COLUMN_MOVIE_ID + ") REFERENCES " +
                 MovieEntry.TABLE_NAME + "(" + MovieEntry.COLUMN_MOVIE_ID + ")" +
+                " ON DELETE CASCADE, " +
                 " UNIQUE (" + TrailerEntry.COLUMN_TRAILER_ID + ") ON CONFLICT REPLACE);";
 
+        db.execSQL(CREATE_TRAILER_TABLE);
+    }
+
+    /**
+     * Creates the reviews table. Reviews are deleted together with their movie.
+     *
+     * @param db        The SQLite database to manage.
+     * @param tableName The name of the table, differs from the reviews table during migration.
+     */
+    private static void createReviewTable(SQLiteDatabase db, String tableName) {
 
         final String CREATE_REVIEW_TABLE = "CREATE TABLE IF NOT EXISTS " +
-                ReviewEntry.TABLE_NAME + " (" +
+                tableName + " (" +
                 ReviewEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
                 ReviewEntry.COLUMN_REVIEW_ID + " TEXT NOT NULL, " +
                 ReviewEntry.COLUMN_REVIEW_AUTHOR + " TEXT NOT NULL, " +
@@ -92,26 +266,286 @@ public class MovieDBHelper extends SQLiteOpenHelper {
                 ReviewEntry.COLUMN_MOVIE_ID + " INTEGER NOT NULL, " +
                 "FOREIGN KEY(" + ReviewEntry.COLUMN_MOVIE_ID + ") REFERENCES " +
                 MovieEntry.TABLE_NAME + "(" + MovieEntry.COLUMN_MOVIE_ID + ")" +
+                " ON DELETE CASCADE, " +
                 " UNIQUE (" + ReviewEntry.COLUMN_REVIEW_ID + ") ON CONFLICT REPLACE);";
 
-        db.execSQL(CREATE_MOVIE_TABLE);
-        db.execSQL(CREATE_TRAILER_TABLE);
         db.execSQL(CREATE_REVIEW_TABLE);
     }
 
     /**
-     * Upgrade the table from old version to new version.
-     * TODO Simply dropping tables is not the right thing to do (if you go in production).
+     * Indexes the movie id of trailers and reviews. The detail screen and the cascading delete
+     * look them up by movie id.
      *
-     * @param db         The SQLite database.
-     * @param oldVersion Old version number.
-     * @param newVersion New version number.
+     * @param db The SQLite database to manage.
      */
-    @Override
-    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL("DROP TABLE IF EXISTS " + MovieEntry.TABLE_NAME);
-        db.execSQL("DROP TABLE IF EXISTS " + TrailerEntry.TABLE_NAME);
-        db.execSQL("DROP TABLE IF EXISTS " + ReviewEntry.TABLE_NAME);
-        onCreate(db);
+    private static void createMovieIdIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + TRAILER_MOVIE_ID_INDEX + " ON " +
+                TrailerEntry.TABLE_NAME + " (" + TrailerEntry.COLUMN_MOVIE_ID + ");");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + REVIEW_MOVIE_ID_INDEX + " ON " +
+                ReviewEntry.TABLE_NAME + " (" + ReviewEntry.COLUMN_MOVIE_ID + ");");
+    }
+
+    /**
+     * Version 4: Recreates the trailers and reviews tables with cascading foreign keys and
+     * indexes their movie id. Trailers and reviews of movies which were removed from the
+     * favorites before are not copied.
+     *
+     * @param db The SQLite database to manage.
+     */
+    private static void cascadeTrailersAndReviews(SQLiteDatabase db) {
+
+        final String NEW_TRAILER_TABLE_NAME = TrailerEntry.TABLE_NAME + "_v4";
+        final String NEW_REVIEW_TABLE_NAME = ReviewEntry.TABLE_NAME + "_v4";
+        final String FAVORITE_MOVIE_IDS = " IN (SELECT " + MovieEntry.COLUMN_MOVIE_ID +
+                " FROM " + MovieEntry.TABLE_NAME + ")";
+
+        createTrailerTable(db, NEW_TRAILER_TABLE_NAME);
+        db.execSQL("INSERT INTO " + NEW_TRAILER_TABLE_NAME +
+                " SELECT * FROM " + TrailerEntry.TABLE_NAME +
+                " WHERE " + TrailerEntry.COLUMN_MOVIE_ID + FAVORITE_MOVIE_IDS);
+
+        createReviewTable(db, NEW_REVIEW_TABLE_NAME);
+        db.execSQL("INSERT INTO " + NEW_REVIEW_TABLE_NAME +
+                " SELECT * FROM " + ReviewEntry.TABLE_NAME +
+                " WHERE " + ReviewEntry.COLUMN_MOVIE_ID + FAVORITE_MOVIE_IDS);
+
+        long orphanTrailers = DatabaseUtils.queryNumEntries(db, TrailerEntry.TABLE_NAME) -
+                DatabaseUtils.queryNumEntries(db, NEW_TRAILER_TABLE_NAME);
+        long orphanReviews = DatabaseUtils.queryNumEntries(db, ReviewEntry.TABLE_NAME) -
+                DatabaseUtils.queryNumEntries(db, NEW_REVIEW_TABLE_NAME);
+
+        db.execSQL("DROP TABLE " + TrailerEntry.TABLE_NAME);
+        db.execSQL("ALTER TABLE " + NEW_TRAILER_TABLE_NAME + " RENAME TO " + TrailerEntry.TABLE_NAME);
+        db.execSQL("DROP TABLE " + ReviewEntry.TABLE_NAME);
+        db.execSQL("ALTER TABLE " + NEW_REVIEW_TABLE_NAME + " RENAME TO " + ReviewEntry.TABLE_NAME);
+
+        createMovieIdIndexes(db);
+
+        Log.d(LOG_TAG, "Removed " + orphanTrailers + " orphan trailers and " +
+                orphanReviews + " orphan reviews.");
+    }
+
+    /**
+     * Version 3: Writes the poster BLOBs of every movie into the {@link PosterStore} and
+     * recreates the movies table with the file names instead of the BLOB columns.
+     * <p>
+     * The posters are read row by row, so a single cursor window never holds more than one
+     * movie's posters. If a poster cannot be written the upgrade fails and is rolled back, so
+     * no favorite is lost.
+     *
+     * @param db The SQLite database to manage.
+     */
+    private void movePostersToFiles(SQLiteDatabase db) {
+
+        final String NEW_TABLE_NAME = MovieEntry.TABLE_NAME + "_v3";
+        final String[] MOVIE_COLUMNS = {
+                MovieEntry.COLUMN_MOVIE_ID,
+                MovieEntry.COLUMN_MOVIE_OVERVIEW,
+                MovieEntry.COLUMN_MOVIE_RELEASE_DATE,
+                MovieEntry.COLUMN_MOVIE_TITLE,
+                MovieEntry.COLUMN_MOVIE_RUNTIME,
+                MovieEntry.COLUMN_MOVIE_VOTE_AVERAGE,
+                MovieEntry.COLUMN_MOVIE_POSTER_PATH,
+                MovieEntry.COLUMN_MOVIE_FAVORITE,
+                LEGACY_COLUMN_MOVIE_W92_POSTER,
+                LEGACY_COLUMN_MOVIE_W185_POSTER
+        };
+
+        createMovieTable(db, NEW_TABLE_NAME);
+
+        int movedCount = 0;
+        Cursor idCursor = db.query(MovieEntry.TABLE_NAME, new String[]{MovieEntry._ID},
+                null, null, null, null, null);
+        try {
+            while (idCursor.moveToNext()) {
+                Cursor movieCursor = db.query(MovieEntry.TABLE_NAME, MOVIE_COLUMNS,
+                        MovieEntry._ID + " = ?", new String[]{idCursor.getString(0)},
+                        null, null, null);
+                try {
+                    if (movieCursor.moveToFirst()) {
+                        db.insertOrThrow(NEW_TABLE_NAME, null, toFileReferences(movieCursor));
+                        movedCount++;
+                    }
+                } finally {
+                    movieCursor.close();
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not move posters to files", e);
+        } finally {
+            idCursor.close();
+        }
+
+        db.execSQL("DROP TABLE " + MovieEntry.TABLE_NAME);
+        db.execSQL("ALTER TABLE " + NEW_TABLE_NAME + " RENAME TO " + MovieEntry.TABLE_NAME);
+
+        Log.d(LOG_TAG, "Posters of " + movedCount + " movies moved to files.");
+    }
+
+    /**
+     * Writes the posters of a version 2 movie row into the {@link PosterStore}.
+     *
+     * @param cursor Cursor at the movie row, with the columns used by movePostersToFiles.
+     * @return The values of the row with poster file names instead of BLOBs.
+     * @throws IOException If a poster could not be written.
+     */
+    private ContentValues toFileReferences(Cursor cursor) throws IOException {
+
+        int movieID = cursor.getInt(0);
+
+        ContentValues values = new ContentValues();
+        values.put(MovieEntry.COLUMN_MOVIE_ID, movieID);
+        values.put(MovieEntry.COLUMN_MOVIE_OVERVIEW, cursor.getString(1));
+        values.put(MovieEntry.COLUMN_MOVIE_RELEASE_DATE, cursor.getString(2));
+        values.put(MovieEntry.COLUMN_MOVIE_TITLE, cursor.getString(3));
+        values.put(MovieEntry.COLUMN_MOVIE_RUNTIME, cursor.getInt(4));
+        values.put(MovieEntry.COLUMN_MOVIE_VOTE_AVERAGE, cursor.getDouble(5));
+        values.put(MovieEntry.COLUMN_MOVIE_POSTER_PATH, cursor.getString(6));
+        values.put(MovieEntry.COLUMN_MOVIE_FAVORITE, cursor.getInt(7));
+        values.put(MovieEntry.COLUMN_MOVIE_W92_POSTER_FILE, PosterStore.writePoster(mContext,
+                movieID, NetworkUtils.IMDB_IMAGE_W92_SIZE, cursor.getBlob(8)));
+        values.put(MovieEntry.COLUMN_MOVIE_W185_POSTER_FILE, PosterStore.writePoster(mContext,
+                movieID, NetworkUtils.IMDB_IMAGE_W185_SIZE, cursor.getBlob(9)));
+
+        return values;
+    }
+
+    /**
+     * A list snapshot has one row per position. The movies of the lists are stored once, even
+     * if they are in both lists.
+     *
+     * @param db The SQLite database to manage.
+     */
+    private static void createCachedListTables(SQLiteDatabase db) {
+
+        final String CREATE_CACHED_MOVIE_TABLE = "CREATE TABLE IF NOT EXISTS " +
+                CachedMovieEntry.TABLE_NAME + " (" +
+                CachedMovieEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                CachedMovieEntry.COLUMN_MOVIE_ID + " INTEGER NOT NULL, " +
+                CachedMovieEntry.COLUMN_MOVIE_POSTER_PATH + " TEXT, " +
+                CachedMovieEntry.COLUMN_MOVIE_OVERVIEW + " TEXT, " +
+                CachedMovieEntry.COLUMN_MOVIE_RELEASE_DATE + " TEXT, " +
+                CachedMovieEntry.COLUMN_MOVIE_TITLE + " TEXT, " +
+                CachedMovieEntry.COLUMN_MOVIE_VOTE_AVERAGE + " REAL NOT NULL, " +
+                " UNIQUE (" + CachedMovieEntry.COLUMN_MOVIE_ID + ") ON CONFLICT REPLACE);";
+
+
+        final String CREATE_CACHED_LIST_TABLE = "CREATE TABLE IF NOT EXISTS " +
+                CachedListEntry.TABLE_NAME + " (" +
+                CachedListEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                CachedListEntry.COLUMN_LIST_TYPE + " INTEGER NOT NULL, " +
+                CachedListEntry.COLUMN_POSITION + " INTEGER NOT NULL, " +
+                CachedListEntry.COLUMN_MOVIE_ID + " INTEGER NOT NULL, " +
+                CachedListEntry.COLUMN_FETCHED_AT + " INTEGER NOT NULL, " +
+                " UNIQUE (" + CachedListEntry.COLUMN_LIST_TYPE + ", " +
+                CachedListEntry.COLUMN_POSITION + ") ON CONFLICT REPLACE);";
+
+        db.execSQL(CREATE_CACHED_MOVIE_TABLE);
+        db.execSQL(CREATE_CACHED_LIST_TABLE);
+    }
+
+    /**
+     * Creates the full-text search table and the triggers which keep it in sync with the
+     * movies, cached movies and reviews tables.
+     * <p>
+     * A movie has one row with its title and overview (docid movie_id * 2), taken from the
+     * favorites or else the cached movies. A review has one row with its content (docid
+     * _id * 2 + 1).
+     *
+     * @param db The SQLite database to manage.
+     */
+    private static void createSearchIndex(SQLiteDatabase db) {
+
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + SearchEntry.TABLE_NAME +
+                " USING fts4(" +
+                SearchEntry.COLUMN_INDEX_TITLE + ", " +
+                SearchEntry.COLUMN_INDEX_OVERVIEW + ", " +
+                SearchEntry.COLUMN_INDEX_CONTENT + ");");
+
+        for (String table : new String[]{MovieEntry.TABLE_NAME, CachedMovieEntry.TABLE_NAME}) {
+            createSearchTrigger(db, table, "AFTER INSERT", refreshMovieSearchRow("NEW"));
+            createSearchTrigger(db, table, "AFTER DELETE", refreshMovieSearchRow("OLD"));
+            createSearchTrigger(db, table, "AFTER UPDATE",
+                    refreshMovieSearchRow("OLD") + refreshMovieSearchRow("NEW"));
+        }
+
+        //A replaced review (same review id) is deleted without delete trigger, so remove its
+        //row before the insert
+        createSearchTrigger(db, ReviewEntry.TABLE_NAME, "BEFORE INSERT",
+                "DELETE FROM " + SearchEntry.TABLE_NAME + " WHERE docid IN (SELECT " +
+                        ReviewEntry._ID + " * 2 + 1 FROM " + ReviewEntry.TABLE_NAME +
+                        " WHERE " + ReviewEntry.COLUMN_REVIEW_ID + " = NEW." +
+                        ReviewEntry.COLUMN_REVIEW_ID + ");");
+        createSearchTrigger(db, ReviewEntry.TABLE_NAME, "AFTER INSERT",
+                insertReviewSearchRow());
+        createSearchTrigger(db, ReviewEntry.TABLE_NAME, "AFTER DELETE",
+                deleteReviewSearchRow());
+        createSearchTrigger(db, ReviewEntry.TABLE_NAME, "AFTER UPDATE",
+                deleteReviewSearchRow() + insertReviewSearchRow());
+    }
+
+    private static void createSearchTrigger(SQLiteDatabase db, String table, String event,
+                                            String statements) {
+        String triggerName = table + "_search_" + event.toLowerCase(Locale.US).replace(' ', '_');
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + triggerName + " " + event + " ON " +
+                table + " BEGIN " + statements + " END;");
+    }
+
+    /**
+     * @param row NEW or OLD.
+     * @return Statements which rewrite the search row of the movie of the trigger row.
+     */
+    private static String refreshMovieSearchRow(String row) {
+        String movieID = row + "." + MovieEntry.COLUMN_MOVIE_ID;
+        return "DELETE FROM " + SearchEntry.TABLE_NAME + " WHERE docid = " + movieID + " * 2; " +
+                "INSERT INTO " + SearchEntry.TABLE_NAME + " (docid, " +
+                SearchEntry.COLUMN_INDEX_TITLE + ", " + SearchEntry.COLUMN_INDEX_OVERVIEW + ") " +
+                "SELECT " + MovieEntry.COLUMN_MOVIE_ID + " * 2, " +
+                MovieEntry.COLUMN_MOVIE_TITLE + ", " + MovieEntry.COLUMN_MOVIE_OVERVIEW +
+                " FROM " + MovieEntry.TABLE_NAME +
+                " WHERE " + MovieEntry.COLUMN_MOVIE_ID + " = " + movieID +
+                " UNION ALL SELECT " + CachedMovieEntry.COLUMN_MOVIE_ID + " * 2, " +
+                CachedMovieEntry.COLUMN_MOVIE_TITLE + ", " + CachedMovieEntry.COLUMN_MOVIE_OVERVIEW +
+                " FROM " + CachedMovieEntry.TABLE_NAME +
+                " WHERE " + CachedMovieEntry.COLUMN_MOVIE_ID + " = " + movieID +
+                " LIMIT 1; ";
+    }
+
+    private static String insertReviewSearchRow() {
+        return "INSERT INTO " + SearchEntry.TABLE_NAME + " (docid, " +
+                SearchEntry.COLUMN_INDEX_CONTENT + ") VALUES (NEW." + ReviewEntry._ID +
+                " * 2 + 1, NEW." + ReviewEntry.COLUMN_REVIEW_CONTENT + "); ";
+    }
+
+    private static String deleteReviewSearchRow() {
+        return "DELETE FROM " + SearchEntry.TABLE_NAME + " WHERE docid = OLD." +
+                ReviewEntry._ID + " * 2 + 1; ";
+    }
+
+    /**
+     * Version 5: Indexes the existing favorites, cached movies and reviews.
+     *
+     * @param db The SQLite database to manage.
+     */
+    private static void populateSearchIndex(SQLiteDatabase db) {
+
+        db.execSQL("INSERT INTO " + SearchEntry.TABLE_NAME + " (docid, " +
+                SearchEntry.COLUMN_INDEX_TITLE + ", " + SearchEntry.COLUMN_INDEX_OVERVIEW + ") " +
+                "SELECT " + MovieEntry.COLUMN_MOVIE_ID + " * 2, " +
+                MovieEntry.COLUMN_MOVIE_TITLE + ", " + MovieEntry.COLUMN_MOVIE_OVERVIEW +
+                " FROM " + MovieEntry.TABLE_NAME);
+
+        db.execSQL("INSERT INTO " + SearchEntry.TABLE_NAME + " (docid, " +
+                SearchEntry.COLUMN_INDEX_TITLE + ", " + SearchEntry.COLUMN_INDEX_OVERVIEW + ") " +
+                "SELECT " + CachedMovieEntry.COLUMN_MOVIE_ID + " * 2, " +
+                CachedMovieEntry.COLUMN_MOVIE_TITLE + ", " + CachedMovieEntry.COLUMN_MOVIE_OVERVIEW +
+                " FROM " + CachedMovieEntry.TABLE_NAME +
+                " WHERE " + CachedMovieEntry.COLUMN_MOVIE_ID + " NOT IN (SELECT " +
+                MovieEntry.COLUMN_MOVIE_ID + " FROM " + MovieEntry.TABLE_NAME + ")");
+
+        db.execSQL("INSERT INTO " + SearchEntry.TABLE_NAME + " (docid, " +
+                SearchEntry.COLUMN_INDEX_CONTENT + ") " +
+                "SELECT " + ReviewEntry._ID + " * 2 + 1, " + ReviewEntry.COLUMN_REVIEW_CONTENT +
+                " FROM " + ReviewEntry.TABLE_NAME);
     }
 }
@@ -0,0 +1,175 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.example.android.popularmovies.data;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * On-disk store for the poster images of favorite movies. A poster is stored as file keyed by
+ * movie id and size (e.g. "550_w185.jpg"). The movies table only keeps the file name.
+ */
+public final class PosterStore {
+
+    private static final String LOG_TAG = PosterStore.class.getSimpleName();
+
+    private static final String POSTER_DIRECTORY_NAME = "posters";
+    private static final String POSTER_FILE_EXTENSION = ".jpg";
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+
+    private PosterStore() {
+    }
+
+    /**
+     * @param movieID The movie id.
+     * @param size    The poster size, e.g. "w92" or "w185".
+     * @return The file name of the poster, as stored in the movies table.
+     */
+    public static String getPosterFileName(int movieID, String size) {
+        return movieID + "_" + size + POSTER_FILE_EXTENSION;
+    }
+
+    /**
+     * @param context Any context.
+     * @param movieID The movie id.
+     * @param size    The poster size, e.g. "w92" or "w185".
+     * @return The poster file. It does not exist if the poster was not stored.
+     */
+    public static File getPosterFile(Context context, int movieID, String size) {
+        return new File(getPosterDirectory(context), getPosterFileName(movieID, size));
+    }
+
+    /**
+     * Writes the poster bytes to a temporary file first and renames it, so a poster file is
+     * either complete or missing.
+     *
+     * @param context Any context.
+     * @param movieID The movie id.
+     * @param size    The poster size, e.g. "w92" or "w185".
+     * @param bytes   The poster image bytes.
+     * @return The file name of the poster to store in the movies table.
+     * @throws IOException If the poster could not be written.
+     */
+    public static String writePoster(Context context, int movieID, String size, byte[] bytes)
+            throws IOException {
+        return writePoster(context, movieID, size, new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Copies the poster stream like {@link #writePoster(Context, int, String, byte[])}, e.g. the
+     * original download of the poster. The stream is not closed.
+     *
+     * @param context Any context.
+     * @param movieID The movie id.
+     * @param size    The poster size, e.g. "w92" or "w185".
+     * @param in      The poster image stream.
+     * @return The file name of the poster to store in the movies table.
+     * @throws IOException If the poster could not be read or written.
+     */
+    public static String writePoster(Context context, int movieID, String size, InputStream in)
+            throws IOException {
+
+        File posterFile = getPosterFile(context, movieID, size);
+        File tempFile = new File(posterFile.getPath() + ".tmp");
+
+        OutputStream out = new FileOutputStream(tempFile);
+        boolean written = false;
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            written = true;
+        } finally {
+            out.close();
+            if (!written) {
+                tempFile.delete();
+            }
+        }
+
+        if (!tempFile.renameTo(posterFile)) {
+            tempFile.delete();
+            throw new IOException("Could not store poster " + posterFile);
+        }
+
+        return posterFile.getName();
+    }
+
+    /**
+     * @param context Any context.
+     * @param movieID The movie id.
+     * @param size    The poster size, e.g. "w92" or "w185".
+     * @return The poster image bytes.
+     * @throws IOException If the poster could not be read.
+     */
+    public static byte[] readPoster(Context context, int movieID, String size)
+            throws IOException {
+
+        File posterFile = getPosterFile(context, movieID, size);
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) posterFile.length());
+        InputStream in = new FileInputStream(posterFile);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+        } finally {
+            in.close();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Deletes the poster of a movie, if it was stored.
+     *
+     * @param context Any context.
+     * @param movieID The movie id.
+     * @param size    The poster size, e.g. "w92" or "w185".
+     */
+    public static void deletePoster(Context context, int movieID, String size) {
+        File posterFile = getPosterFile(context, movieID, size);
+        if (posterFile.exists() && !posterFile.delete()) {
+            Log.w(LOG_TAG, "Could not delete poster " + posterFile);
+        }
+    }
+
+    private static File getPosterDirectory(Context context) {
+        File directory = new File(context.getFilesDir(), POSTER_DIRECTORY_NAME);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(LOG_TAG, "Could not create poster directory " + directory);
+        }
+        return directory;
+    }
+}
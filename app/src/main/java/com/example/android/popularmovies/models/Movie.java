@@ -189,6 +189,24 @@ public class Movie implements Parcelable {
         this.mFavorite = mFavorite;
     }
 
+    /**
+     * Copies the details (not id, poster path, posters and favorite flag) of another movie.
+     *
+     * @param movie The movie with the details, e.g. downloaded from TMDb.
+     */
+    public void copyDetailsFrom(Movie movie) {
+        if (movie == this) {
+            return;
+        }
+        setOverview(movie.getOverview());
+        setReleaseDate(movie.getReleaseDate());
+        setTitle(movie.getTitle());
+        setRuntime(movie.getRuntime());
+        setVoteAverage(movie.getVoteAverage());
+        setTrailerArray(movie.getTrailerArray());
+        setReviewArray(movie.getReviewArray());
+    }
+
 
     @Override
     public int describeContents() {
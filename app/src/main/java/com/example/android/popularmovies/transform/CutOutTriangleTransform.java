@@ -17,6 +17,8 @@
 /*
   Changes made to the original file:
   - Changed CircleTransform to CutOutTriangleTransform
+  - Draw into a bitmap of the BitmapPool
+  - Stable cache key
 
   Moficiations copyright (c) 2017 Elyasin Shaladi
 
@@ -32,17 +34,23 @@ import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Path;
 
-import com.squareup.picasso.Transformation;
+import com.example.android.popularmovies.utilities.BitmapPool;
 
 /**
  * Describes a transformation to cut out a triangle from the upper left corner of a bitmap.
+ * The result is drawn into a bitmap of the {@link BitmapPool}.
+ * <p>
+ * To display a poster with the cut-out, prefer the
+ * {@link com.example.android.popularmovies.views.CutOutTriangleImageView}, which clips while
+ * drawing instead of copying the bitmap.
  */
-public class CutOutTriangleTransform implements Transformation {
+public class CutOutTriangleTransform implements PooledTransformation {
 
     private static final String LOG_TAG = CutOutTriangleTransform.class.getName();
 
     /**
-     * Cuts out an upper left (triangle) corner from the bitmap and paints it white.
+     * Cuts out an upper left (triangle) corner from the bitmap and paints it white. The source
+     * is recycled.
      *
      * @param source The source image
      * @return The image with the upper left corner (triangle) painted in white.
@@ -50,7 +58,26 @@ public class CutOutTriangleTransform implements Transformation {
     @Override
     public Bitmap transform(Bitmap source) {
 
-        Bitmap mutableBitmap = Bitmap.createBitmap(source.getWidth(), source.getHeight(), source.getConfig());
+        Bitmap mutableBitmap = transformToPool(source);
+
+        source.recycle();
+
+        return mutableBitmap;
+    }
+
+    /**
+     * Cuts out an upper left (triangle) corner from the bitmap and paints it white.
+     *
+     * @param source The source image. It is not recycled.
+     * @return The image with the upper left corner (triangle) painted in white.
+     */
+    @Override
+    public Bitmap transformToPool(Bitmap source) {
+
+        //The cut-out corner is transparent, even if the source is opaque (e.g. RGB_565)
+        Bitmap mutableBitmap = BitmapPool.get(source.getWidth(), source.getHeight(),
+                Bitmap.Config.ARGB_8888);
+        mutableBitmap.setDensity(source.getDensity());
         Canvas canvas = new Canvas(mutableBitmap);
 
         BitmapShader shader = new BitmapShader(source, BitmapShader.TileMode.CLAMP, BitmapShader.TileMode.CLAMP);
@@ -72,18 +99,17 @@ public class CutOutTriangleTransform implements Transformation {
 
         canvas.drawPath(path, paint);
 
-        source.recycle();
-
         return mutableBitmap;
     }
 
     /**
-     * TODO How can I determine a unique key for a bitmap?
+     * The transformation has no parameters, so all instances share one key and Picasso reuses
+     * cached results across activities.
      *
-     * @return The objec's hashCode. This is not a good choice, but not a big deal neither.
+     * @return The class name.
      */
     @Override
     public String key() {
-        return String.valueOf(this.hashCode());
+        return CutOutTriangleTransform.class.getName();
     }
 }
\ No newline at end of file
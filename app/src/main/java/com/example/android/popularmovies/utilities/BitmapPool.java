@@ -0,0 +1,270 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.example.android.popularmovies.utilities;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Pool of unused bitmaps, bucketed by width, height and config, so poster decodes (through
+ * {@link android.graphics.BitmapFactory.Options#inBitmap}) and transformations can reuse the
+ * pixel memory of posters that are no longer displayed instead of allocating new bitmaps.
+ * <p>
+ * Bitmaps are reference counted: the {@link PosterCache} and every view displaying a bitmap
+ * hold a reference ({@link #acquire(Bitmap)}). When the last reference is released, e.g. the
+ * poster was evicted from the cache and its ViewHolder was recycled, the bitmap goes to the
+ * pool. The pool is bounded in bytes and shrinks on memory pressure ({@link #trimMemory(int)}).
+ * <p>
+ * Only mutable bitmaps are pooled. Use {@link #getStatistics()} to check the allocations saved.
+ */
+public final class BitmapPool {
+
+    private static final String LOG_TAG = BitmapPool.class.getSimpleName();
+
+
+    //The pool may use 1/16 of the app's memory class
+    private static final int MEMORY_FRACTION = 16;
+    private static final int DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+
+    //Guards the pool and the references. Held by the PosterCache while it looks up and
+    //references a poster, so the poster cannot be pooled in between.
+    static final Object sLock = new Object();
+
+    //Unused bitmaps per size bucket, most recently released last
+    private static final Map<String, ArrayDeque<Bitmap>> sBuckets = new HashMap<>();
+
+    //References held on bitmaps in use. Weak keys, so untracked bitmaps do not leak.
+    private static final Map<Bitmap, Integer> sReferences = new WeakHashMap<>();
+
+    private static int sPooledBytes;
+    private static int sMaxPooledBytes = DEFAULT_MAX_BYTES;
+
+    //Allocate every bitmap instead (for comparison)
+    private static boolean sEnabled = true;
+
+    private static int sAllocationCount;
+    private static int sReuseCount;
+
+
+    private BitmapPool() {
+    }
+
+    /**
+     * Sizes the pool by the memory class of the device, usually called in
+     * {@link android.app.Application#onCreate()}.
+     *
+     * @param context Any context.
+     */
+    public static void init(Context context) {
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        synchronized (sLock) {
+            sMaxPooledBytes = activityManager.getMemoryClass() * 1024 * 1024 / MEMORY_FRACTION;
+        }
+    }
+
+    /**
+     * Returns a cleared, mutable bitmap of the size, reused from the pool if possible.
+     *
+     * @param width  The width in pixels.
+     * @param height The height in pixels.
+     * @param config The bitmap config.
+     * @return A transparent bitmap.
+     */
+    public static Bitmap get(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = getReusable(width, height, config);
+        if (bitmap != null) {
+            bitmap.eraseColor(Color.TRANSPARENT);
+            return bitmap;
+        }
+        onAllocated();
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * Takes a bitmap of the size out of the pool, e.g. to decode into it. Its pixels are not
+     * cleared.
+     *
+     * @param width  The width in pixels.
+     * @param height The height in pixels.
+     * @param config The bitmap config.
+     * @return A pooled bitmap, null if there is none of the size.
+     */
+    static Bitmap getReusable(int width, int height, Bitmap.Config config) {
+        synchronized (sLock) {
+            ArrayDeque<Bitmap> bucket = sBuckets.get(getBucketKey(width, height, config));
+            Bitmap bitmap = bucket == null ? null : bucket.pollLast();
+            if (bitmap == null) {
+                return null;
+            }
+            sPooledBytes -= PosterCache.getByteCount(bitmap);
+            sReuseCount++;
+            return bitmap;
+        }
+    }
+
+    /**
+     * Counts a bitmap allocated because the pool had none to reuse.
+     */
+    static void onAllocated() {
+        synchronized (sLock) {
+            sAllocationCount++;
+        }
+    }
+
+    /**
+     * Adds a reference to a bitmap in use.
+     *
+     * @param bitmap The bitmap, e.g. cached or displayed.
+     */
+    public static void acquire(Bitmap bitmap) {
+        synchronized (sLock) {
+            Integer references = sReferences.get(bitmap);
+            sReferences.put(bitmap, references == null ? 1 : references + 1);
+        }
+    }
+
+    /**
+     * Removes a reference. The bitmap goes to the pool when the last reference is released.
+     *
+     * @param bitmap The bitmap no longer cached or displayed.
+     */
+    public static void release(Bitmap bitmap) {
+        synchronized (sLock) {
+            Integer references = sReferences.get(bitmap);
+            if (references == null) {
+                return;
+            }
+            if (references > 1) {
+                sReferences.put(bitmap, references - 1);
+                return;
+            }
+            sReferences.remove(bitmap);
+            put(bitmap);
+        }
+    }
+
+    /**
+     * Shrinks the pool according to the memory pressure signaled by the system.
+     *
+     * @param level The trim level of {@link ComponentCallbacks2#onTrimMemory(int)}.
+     */
+    public static void trimMemory(int level) {
+        synchronized (sLock) {
+            if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND ||
+                    level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+                trimToSize(0);
+            } else if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+                trimToSize(sMaxPooledBytes / 2);
+            }
+        }
+        Log.d(LOG_TAG, "Trimmed to level " + level + ". " + getStatistics());
+    }
+
+    /**
+     * Enables or disables pooling. Disabling empties the pool.
+     *
+     * @param enabled False to allocate every bitmap.
+     */
+    public static void setEnabled(boolean enabled) {
+        synchronized (sLock) {
+            sEnabled = enabled;
+            if (!enabled) {
+                trimToSize(0);
+            }
+        }
+    }
+
+    /**
+     * @return Number of bitmaps allocated because there was none to reuse.
+     */
+    public static int getAllocationCount() {
+        synchronized (sLock) {
+            return sAllocationCount;
+        }
+    }
+
+    /**
+     * @return Number of bitmaps reused from the pool.
+     */
+    public static int getReuseCount() {
+        synchronized (sLock) {
+            return sReuseCount;
+        }
+    }
+
+    /**
+     * @return Human readable summary of the pool usage (for logging).
+     */
+    public static String getStatistics() {
+        synchronized (sLock) {
+            return String.format(Locale.US,
+                    "Bitmap pool: %d allocated, %d reused, %d of %d KB pooled",
+                    sAllocationCount, sReuseCount, sPooledBytes / 1024, sMaxPooledBytes / 1024);
+        }
+    }
+
+    //Called with the lock held
+    private static void put(Bitmap bitmap) {
+        if (!sEnabled || bitmap.isRecycled() || !bitmap.isMutable() || bitmap.getConfig() == null) {
+            return;
+        }
+        String key = getBucketKey(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+        ArrayDeque<Bitmap> bucket = sBuckets.get(key);
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            sBuckets.put(key, bucket);
+        }
+        bucket.addLast(bitmap);
+        sPooledBytes += PosterCache.getByteCount(bitmap);
+        trimToSize(sMaxPooledBytes);
+    }
+
+    //Called with the lock held. Drops the least recently released bitmaps of each bucket.
+    private static void trimToSize(int maxBytes) {
+        Iterator<ArrayDeque<Bitmap>> buckets = sBuckets.values().iterator();
+        while (sPooledBytes > maxBytes && buckets.hasNext()) {
+            ArrayDeque<Bitmap> bucket = buckets.next();
+            while (sPooledBytes > maxBytes && !bucket.isEmpty()) {
+                sPooledBytes -= PosterCache.getByteCount(bucket.pollFirst());
+            }
+            if (bucket.isEmpty()) {
+                buckets.remove();
+            }
+        }
+    }
+
+    private static String getBucketKey(int width, int height, Bitmap.Config config) {
+        return width + "x" + height + "_" + config;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.example.android.popularmovies.utilities;
+
+import android.annotation.TargetApi;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.net.ConnectivityManagerCompat;
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps the current network state (online, metered, network type) in memory. The state is
+ * updated by the system's connectivity callbacks (network callback from Android N, connectivity
+ * broadcast before), so reading it is cheap and never blocks.
+ * <p>
+ * Registered {@link ConnectivityListener}s are informed on the main thread when the device is
+ * online again, e.g. to retry queries that failed.
+ */
+public final class ConnectivityMonitor {
+
+    private static final String LOG_TAG = ConnectivityMonitor.class.getSimpleName();
+
+    //Network type if there is no active network
+    public static final int TYPE_NONE = -1;
+
+
+    private static ConnectivityManager sConnectivityManager;
+
+    private static volatile boolean sOnline;
+    private static volatile boolean sMetered;
+    private static volatile int sNetworkType = TYPE_NONE;
+
+    private static final List<ConnectivityListener> sListeners = new CopyOnWriteArrayList<>();
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+
+    private ConnectivityMonitor() {
+    }
+
+    /**
+     * Listener informed about a reconnect.
+     */
+    public interface ConnectivityListener {
+
+        /**
+         * Invoked on the main thread when the device went from offline to online.
+         */
+        void onReconnected();
+    }
+
+    /**
+     * Reads the current network state and registers for connectivity changes. Should be called
+     * once, usually in {@link android.app.Application#onCreate()}.
+     *
+     * @param context Any context, the application context is used.
+     */
+    public static synchronized void init(Context context) {
+        if (sConnectivityManager != null) {
+            return;
+        }
+
+        Context appContext = context.getApplicationContext();
+        sConnectivityManager =
+                (ConnectivityManager) appContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+
+        refresh();
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            registerNetworkCallback();
+        } else {
+            appContext.registerReceiver(new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    refresh();
+                }
+            }, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+        }
+    }
+
+    /**
+     * @return true if there is a connected network. If the monitor was not initialized true is
+     * returned, so the caller simply tries.
+     */
+    public static boolean isOnline() {
+        return sConnectivityManager == null || sOnline;
+    }
+
+    /**
+     * @return true if the active network is metered (e.g. mobile data).
+     */
+    public static boolean isMetered() {
+        return sMetered;
+    }
+
+    /**
+     * @return The type of the active network (e.g. {@link ConnectivityManager#TYPE_WIFI}) or
+     * {@link #TYPE_NONE}.
+     */
+    public static int getNetworkType() {
+        return sNetworkType;
+    }
+
+    /**
+     * @param listener Listener to be informed on reconnect.
+     */
+    public static void addListener(ConnectivityListener listener) {
+        sListeners.add(listener);
+    }
+
+    /**
+     * @param listener Listener not to be informed anymore.
+     */
+    public static void removeListener(ConnectivityListener listener) {
+        sListeners.remove(listener);
+    }
+
+    @TargetApi(Build.VERSION_CODES.N)
+    private static void registerNetworkCallback() {
+        sConnectivityManager.registerDefaultNetworkCallback(
+                new ConnectivityManager.NetworkCallback() {
+                    @Override
+                    public void onAvailable(Network network) {
+                        refresh();
+                    }
+
+                    @Override
+                    public void onCapabilitiesChanged(Network network,
+                                                      NetworkCapabilities capabilities) {
+                        refresh();
+                    }
+
+                    @Override
+                    public void onLost(Network network) {
+                        refresh();
+                    }
+                });
+    }
+
+    /**
+     * Updates the network state and informs the listeners on reconnect.
+     */
+    private static void refresh() {
+        NetworkInfo networkInfo = sConnectivityManager.getActiveNetworkInfo();
+
+        boolean wasOnline = sOnline;
+        boolean online = networkInfo != null && networkInfo.isConnected();
+
+        sNetworkType = online ? networkInfo.getType() : TYPE_NONE;
+        sMetered = online && ConnectivityManagerCompat.isActiveNetworkMetered(sConnectivityManager);
+        sOnline = online;
+
+        Log.d(LOG_TAG, "Online: " + online + ", metered: " + sMetered + ", type: " + sNetworkType);
+
+        if (online && !wasOnline) {
+            sMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    for (ConnectivityListener listener : sListeners) {
+                        listener.onReconnected();
+                    }
+                }
+            });
+        }
+    }
+}
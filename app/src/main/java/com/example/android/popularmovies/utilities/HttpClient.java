@@ -0,0 +1,399 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.example.android.popularmovies.utilities;
+
+import android.content.Context;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Cache;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Shared HTTP client used for all TMDb requests.
+ * <p>
+ * Connections are kept alive in a bounded pool and reused by subsequent requests, so browsing
+ * several detail pages in a row does not pay for a new TCP handshake every time. The number of
+ * concurrent connections to a single host is limited as well.
+ * <p>
+ * Every request that reaches the network is counted as pool hit (reused connection) or pool miss
+ * (new connection). Use {@link #getPoolStatistics()} to check the reuse.
+ * <p>
+ * Once {@link #init(Context)} was called, responses are stored in a size-bounded disk cache
+ * together with their validators (ETag, Last-Modified). Stale entries are revalidated with a
+ * conditional request, and a 304 response is served from the cache without downloading the body
+ * again. Use {@link #getCacheStatistics()} to check the cache hit ratio per endpoint.
+ */
+public final class HttpClient {
+
+    private static final String LOG_TAG = HttpClient.class.getSimpleName();
+
+
+    //Connection pool settings
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+    private static final long KEEP_ALIVE_DURATION_MINUTES = 5;
+    private static final int MAX_CONNECTIONS_PER_HOST = 4;
+
+    //Timeouts (same values as used before with HttpURLConnection)
+    private static final long CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final long READ_TIMEOUT_MILLIS = 10000;
+
+    //Disk cache settings
+    private static final String CACHE_DIRECTORY_NAME = "http";
+    private static final long CACHE_MAX_SIZE_BYTES = 10 * 1024 * 1024;
+
+    //Path segment replacing movie ids, so all movie detail requests count as one endpoint
+    private static final String ENDPOINT_ID_SEGMENT = "{id}";
+
+    private static File sCacheDirectory;
+
+    private static OkHttpClient sClient;
+
+    private static final Map<String, Semaphore> sHostPermits = new HashMap<>();
+
+    //Connections seen so far. Weak keys, so evicted connections do not leak.
+    private static final Set<Connection> sSeenConnections =
+            Collections.newSetFromMap(new WeakHashMap<Connection, Boolean>());
+
+    private static final AtomicInteger sPoolHits = new AtomicInteger();
+    private static final AtomicInteger sPoolMisses = new AtomicInteger();
+
+    private static final Map<String, EndpointCacheStatistics> sCacheStatistics = new TreeMap<>();
+
+    //Start and first response time (nanos) of the timer running on the current thread
+    private static final ThreadLocal<long[]> sFirstByteTimer = new ThreadLocal<>();
+
+
+    private HttpClient() {
+    }
+
+    /**
+     * Reads the body of a successful HTTP response.
+     *
+     * @param <T> The type of the result read from the body.
+     */
+    public interface ResponseReader<T> {
+
+        /**
+         * Invoked while the connection is still open. The body is closed afterwards.
+         *
+         * @param body The response body.
+         * @return The result read from the body.
+         * @throws IOException Related to network and stream reading.
+         */
+        T read(ResponseBody body) throws IOException;
+    }
+
+    /**
+     * Enables the disk response cache in the application's cache directory. Must be called
+     * before the first request, usually in {@link android.app.Application#onCreate()}.
+     *
+     * @param context Any context, the application context is used.
+     */
+    public static synchronized void init(Context context) {
+        if (sClient != null) {
+            Log.w(LOG_TAG, "HttpClient already in use. Disk cache is not enabled.");
+            return;
+        }
+        sCacheDirectory = new File(context.getApplicationContext().getCacheDir(),
+                CACHE_DIRECTORY_NAME);
+    }
+
+    /**
+     * Returns the shared client, creating it on first use.
+     *
+     * @return The shared OkHttpClient.
+     */
+    public static synchronized OkHttpClient getInstance() {
+        if (sClient == null) {
+            OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool(
+                            MAX_IDLE_CONNECTIONS, KEEP_ALIVE_DURATION_MINUTES, TimeUnit.MINUTES))
+                    .connectTimeout(CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                    .readTimeout(READ_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                    .addInterceptor(new CacheStatisticsInterceptor())
+                    .addNetworkInterceptor(new ConnectionReuseInterceptor());
+            if (sCacheDirectory != null) {
+                builder.cache(new Cache(sCacheDirectory, CACHE_MAX_SIZE_BYTES));
+            } else {
+                Log.w(LOG_TAG, "HttpClient not initialized. Responses are not cached.");
+            }
+            sClient = builder.build();
+        }
+        return sClient;
+    }
+
+    /**
+     * Performs a GET request and hands the body to the reader. The connection is given back to
+     * the pool afterwards instead of being disconnected.
+     *
+     * @param url    The URL to fetch the HTTP response from.
+     * @param reader Reads the result from the response body.
+     * @param <T>    The type of the result.
+     * @return The result of the reader.
+     * @throws IOException Related to network and stream reading, or if the response was not
+     *                     successful.
+     */
+    public static <T> T execute(URL url, ResponseReader<T> reader) throws IOException {
+
+        Semaphore permits = getHostPermits(url.getHost());
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a connection to " +
+                    url.getHost());
+        }
+
+        try {
+            Request request = new Request.Builder().url(url).build();
+            Response response = getInstance().newCall(request).execute();
+            onFirstByte();
+            try {
+                if (!response.isSuccessful()) {
+                    throw new IOException("Unexpected HTTP response " + response.code() +
+                            " for " + url);
+                }
+                return reader.read(response.body());
+            } finally {
+                response.close();
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Starts measuring the time until the first response of a request executed on the calling
+     * thread arrives, i.e. until its headers were received. Requests sharing the result of an
+     * identical request running on another thread are not measured.
+     */
+    public static void startFirstByteTimer() {
+        sFirstByteTimer.set(new long[]{System.nanoTime(), 0});
+    }
+
+    /**
+     * Stops the timer started on the calling thread.
+     *
+     * @return Milliseconds from {@link #startFirstByteTimer()} to the first response on this
+     * thread, -1 if no response arrived on this thread.
+     */
+    public static long stopFirstByteTimer() {
+        long[] timer = sFirstByteTimer.get();
+        sFirstByteTimer.remove();
+        if (timer == null || timer[1] == 0) {
+            return -1;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(timer[1] - timer[0]);
+    }
+
+    private static void onFirstByte() {
+        long[] timer = sFirstByteTimer.get();
+        if (timer != null && timer[1] == 0) {
+            timer[1] = System.nanoTime();
+        }
+    }
+
+    /**
+     * @return Number of requests that reused a pooled connection.
+     */
+    public static int getPoolHitCount() {
+        return sPoolHits.get();
+    }
+
+    /**
+     * @return Number of requests that had to open a new connection.
+     */
+    public static int getPoolMissCount() {
+        return sPoolMisses.get();
+    }
+
+    /**
+     * @return Human readable summary of the connection pool usage (for logging).
+     */
+    public static String getPoolStatistics() {
+        ConnectionPool pool = getInstance().connectionPool();
+        return String.format(Locale.US,
+                "Connection pool: %d hits, %d misses, %d connections (%d idle)",
+                getPoolHitCount(), getPoolMissCount(),
+                pool.connectionCount(), pool.idleConnectionCount());
+    }
+
+    /**
+     * Returns the cache hit ratio of an endpoint. Revalidated responses (304) count as hits.
+     *
+     * @param endpoint The endpoint path, e.g. "/3/movie/popular" or "/3/movie/{id}".
+     * @return The hit ratio between 0 and 1, or 0 if the endpoint was not requested yet.
+     */
+    public static double getCacheHitRatio(String endpoint) {
+        synchronized (sCacheStatistics) {
+            EndpointCacheStatistics statistics = sCacheStatistics.get(endpoint);
+            return statistics == null ? 0 : statistics.getHitRatio();
+        }
+    }
+
+    /**
+     * @return Human readable summary of the cache hit ratio per endpoint (for logging).
+     */
+    public static String getCacheStatistics() {
+        StringBuilder builder = new StringBuilder("HTTP cache:");
+        synchronized (sCacheStatistics) {
+            for (Map.Entry<String, EndpointCacheStatistics> entry : sCacheStatistics.entrySet()) {
+                builder.append(' ').append(entry.getKey()).append(' ').append(entry.getValue());
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Maps a URL to its endpoint. Numeric path segments (movie ids) are replaced by a
+     * placeholder and the query is ignored.
+     *
+     * @param url The requested URL.
+     * @return The endpoint path.
+     */
+    private static String getEndpoint(HttpUrl url) {
+        StringBuilder endpoint = new StringBuilder();
+        for (String segment : url.encodedPathSegments()) {
+            endpoint.append('/');
+            if (!segment.isEmpty() && TextUtils.isDigitsOnly(segment)) {
+                endpoint.append(ENDPOINT_ID_SEGMENT);
+            } else {
+                endpoint.append(segment);
+            }
+        }
+        return endpoint.toString();
+    }
+
+    /**
+     * Returns the semaphore limiting the concurrent connections to a host.
+     *
+     * @param host The host name.
+     * @return The semaphore of the host.
+     */
+    private static Semaphore getHostPermits(String host) {
+        synchronized (sHostPermits) {
+            Semaphore permits = sHostPermits.get(host);
+            if (permits == null) {
+                permits = new Semaphore(MAX_CONNECTIONS_PER_HOST, true);
+                sHostPermits.put(host, permits);
+            }
+            return permits;
+        }
+    }
+
+    /**
+     * Counts whether the connection of a network request was taken from the pool or is new.
+     */
+    private static class ConnectionReuseInterceptor implements Interceptor {
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Connection connection = chain.connection();
+            if (connection != null) {
+                boolean isNew;
+                synchronized (sSeenConnections) {
+                    isNew = sSeenConnections.add(connection);
+                }
+                if (isNew) {
+                    sPoolMisses.incrementAndGet();
+                } else {
+                    sPoolHits.incrementAndGet();
+                }
+                Log.v(LOG_TAG, (isNew ? "New connection " : "Reused connection ") + connection);
+            }
+            return chain.proceed(chain.request());
+        }
+    }
+
+    /**
+     * Counts per endpoint whether a response came from the cache, was revalidated (304) or was
+     * downloaded completely.
+     */
+    private static class CacheStatisticsInterceptor implements Interceptor {
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Response response = chain.proceed(chain.request());
+
+            String endpoint = getEndpoint(chain.request().url());
+            synchronized (sCacheStatistics) {
+                EndpointCacheStatistics statistics = sCacheStatistics.get(endpoint);
+                if (statistics == null) {
+                    statistics = new EndpointCacheStatistics();
+                    sCacheStatistics.put(endpoint, statistics);
+                }
+                if (response.networkResponse() == null) {
+                    statistics.mHits++;
+                } else if (response.cacheResponse() != null) {
+                    statistics.mConditionalHits++;
+                } else {
+                    statistics.mMisses++;
+                }
+            }
+            return response;
+        }
+    }
+
+    /**
+     * Cache counters of one endpoint. Guarded by the statistics map.
+     */
+    private static class EndpointCacheStatistics {
+
+        private int mHits;
+        private int mConditionalHits;
+        private int mMisses;
+
+        double getHitRatio() {
+            int total = mHits + mConditionalHits + mMisses;
+            return total == 0 ? 0 : (double) (mHits + mConditionalHits) / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "[%d hits, %d revalidated, %d misses, ratio %.2f]",
+                    mHits, mConditionalHits, mMisses, getHitRatio());
+        }
+    }
+}
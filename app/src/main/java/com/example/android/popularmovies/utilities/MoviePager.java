@@ -0,0 +1,252 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.example.android.popularmovies.utilities;
+
+import android.content.Context;
+import android.os.AsyncTask;
+import android.os.SystemClock;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+
+import com.example.android.popularmovies.MainActivity;
+import com.example.android.popularmovies.adapters.MovieAdapter;
+import com.example.android.popularmovies.asyncTasks.AsyncTaskListener;
+import com.example.android.popularmovies.asyncTasks.MoviesQueryTask;
+import com.example.android.popularmovies.models.Movie;
+import com.example.android.popularmovies.models.MoviePage;
+
+import java.net.URL;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the popular or top-rated movies page by page (using {@link MoviesQueryTask}) and appends
+ * them to the {@link MovieAdapter}.
+ * <p>
+ * Registered as scroll listener of the RecyclerView, the next page is requested as soon as the
+ * last visible item is within the prefetch distance of the end of the list. Every page is
+ * requested only once, so fast scrolling never fires the same request twice.
+ * <p>
+ * Paging ends at the last page reported by TMDb. A failed page is requested again on the next
+ * scroll after a delay, which doubles with every failure, or as soon as the device reconnects
+ * (see {@link #retry()}).
+ */
+public class MoviePager extends RecyclerView.OnScrollListener {
+
+    private static final String LOG_TAG = MoviePager.class.getSimpleName();
+
+    public static final int FIRST_PAGE = 1;
+
+    //TMDb answers with an error after this page, even if it reports more pages
+    private static final int MAX_PAGE = 500;
+
+    //Delay before a failed page is requested again, doubled with every failure
+    private static final long INITIAL_RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(2);
+    private static final long MAX_RETRY_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+
+    private final Context mContext;
+    private final MovieAdapter mMovieAdapter;
+    private final GridLayoutManager mLayoutManager;
+    private final int mPrefetchDistance;
+
+    //Informed about the first page, e.g. to show loading indicator or error message
+    private final AsyncTaskListener<Movie[]> mFirstPageListener;
+
+    private int mMovieQuery;
+    private boolean mActive;
+
+    //Incremented on start and stop, so results of a previous query are ignored
+    private int mGeneration;
+
+    //Pages in flight or loaded
+    private final Set<Integer> mRequestedPages = new HashSet<>();
+    private int mLastLoadedPage;
+    private boolean mEndReached;
+
+    //Consecutive failed pages and the time before which no page is requested again
+    private int mFailedAttempts;
+    private long mRetryAtMillis;
+
+    /**
+     * @param context          The activity using this pager.
+     * @param movieAdapter     The adapter the pages are added to.
+     * @param layoutManager    The layout manager of the RecyclerView.
+     * @param prefetchDistance Number of items before the end of the list at which the next page
+     *                         is requested.
+     * @param listener         Listener to the query of the first page.
+     */
+    public MoviePager(Context context, MovieAdapter movieAdapter,
+                      GridLayoutManager layoutManager, int prefetchDistance,
+                      AsyncTaskListener<Movie[]> listener) {
+        this.mContext = context;
+        this.mMovieAdapter = movieAdapter;
+        this.mLayoutManager = layoutManager;
+        this.mPrefetchDistance = prefetchDistance;
+        this.mFirstPageListener = listener;
+    }
+
+    /**
+     * Starts paging through a movie query from the first page.
+     *
+     * @param movieQuery Either popular or top-rated movies.
+     */
+    public void start(@MainActivity.MOVIES_QUERY int movieQuery) {
+        reset();
+        mMovieQuery = movieQuery;
+        mActive = true;
+        loadPage(FIRST_PAGE);
+    }
+
+    /**
+     * Stops paging, e.g. when the favorites are displayed. Pages still in flight are ignored.
+     */
+    public void stop() {
+        reset();
+        mActive = false;
+    }
+
+    /**
+     * @return true if the first page of the current query has been loaded.
+     */
+    public boolean hasLoadedFirstPage() {
+        return mLastLoadedPage >= FIRST_PAGE;
+    }
+
+    /**
+     * Requests the next page right away if it failed before, e.g. when the device reconnects.
+     */
+    public void retry() {
+        mFailedAttempts = 0;
+        mRetryAtMillis = 0;
+        prefetchIfNeeded();
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        prefetchIfNeeded();
+    }
+
+    private void reset() {
+        mGeneration++;
+        mRequestedPages.clear();
+        mLastLoadedPage = 0;
+        mEndReached = false;
+        mFailedAttempts = 0;
+        mRetryAtMillis = 0;
+    }
+
+    /**
+     * Requests the next page if the last visible item is close enough to the end.
+     */
+    private void prefetchIfNeeded() {
+        if (!mActive || mEndReached || !hasLoadedFirstPage() ||
+                SystemClock.uptimeMillis() < mRetryAtMillis) {
+            return;
+        }
+
+        int lastVisiblePosition = mLayoutManager.findLastVisibleItemPosition();
+        if (lastVisiblePosition + mPrefetchDistance >= mMovieAdapter.getItemCount()) {
+            loadPage(mLastLoadedPage + 1);
+        }
+    }
+
+    /**
+     * Requests a page unless it is already in flight or loaded.
+     *
+     * @param page The page to load.
+     */
+    private void loadPage(int page) {
+        if (!mRequestedPages.add(page)) {
+            return;
+        }
+
+        Log.d(LOG_TAG, "Loading page " + page);
+
+        URL url = NetworkUtils.buildMoviesURL(mMovieQuery, page);
+        new MoviesQueryTask(mContext, new PageListener(page, mGeneration))
+                .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, url);
+    }
+
+    /**
+     * Adds a loaded page to the adapter. The first page is delegated to the first page listener.
+     */
+    private class PageListener implements AsyncTaskListener<MoviePage> {
+
+        private final int mPage;
+        private final int mPageGeneration;
+
+        PageListener(int page, int generation) {
+            this.mPage = page;
+            this.mPageGeneration = generation;
+        }
+
+        @Override
+        public void onTaskComplete(MoviePage moviePage) {
+            if (mPageGeneration != mGeneration) {
+                Log.d(LOG_TAG, "Ignoring page " + mPage + " of previous query");
+                return;
+            }
+
+            Movie[] movieArray = null;
+            if (moviePage == null) {
+                //Failed, so allow requesting the page again after a delay
+                mRequestedPages.remove(mPage);
+                mFailedAttempts++;
+                long delay = Math.min(MAX_RETRY_DELAY_MILLIS,
+                        INITIAL_RETRY_DELAY_MILLIS << Math.min(mFailedAttempts - 1, 16));
+                mRetryAtMillis = SystemClock.uptimeMillis() + delay;
+                Log.d(LOG_TAG, "Page " + mPage + " failed, retrying in " + delay + " ms");
+            } else {
+                mFailedAttempts = 0;
+                mRetryAtMillis = 0;
+                movieArray = moviePage.getMovies();
+                if (movieArray.length == 0) {
+                    mEndReached = true;
+                } else {
+                    mLastLoadedPage = mPage;
+                    //Without total_pages, paging ends at an empty page or at MAX_PAGE
+                    int lastPage = moviePage.getTotalPages() > 0 ?
+                            Math.min(moviePage.getTotalPages(), MAX_PAGE) : MAX_PAGE;
+                    mEndReached = mPage >= lastPage;
+                }
+            }
+
+            if (mPage == FIRST_PAGE) {
+                mFirstPageListener.onTaskComplete(movieArray);
+            } else if (movieArray != null) {
+                mMovieAdapter.addMovieData(movieArray);
+            }
+
+            prefetchIfNeeded();
+        }
+
+        @Override
+        public void beforeTaskExecution() {
+            if (mPage == FIRST_PAGE) {
+                mFirstPageListener.beforeTaskExecution();
+            }
+        }
+    }
+}
@@ -26,13 +26,17 @@ import android.util.Log;
 import com.example.android.popularmovies.BuildConfig;
 import com.example.android.popularmovies.MainActivity;
 import com.example.android.popularmovies.models.Movie;
+import com.example.android.popularmovies.models.MoviePage;
+
+import org.json.JSONException;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Scanner;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+import okhttp3.ResponseBody;
 
 /**
  * These utilities will be used to communicate with the internet.
@@ -45,7 +49,8 @@ import java.util.Scanner;
  * The movie data from TMDb is made of the base URL, the sort option (popular or top-rated) and
  * the API key. Use the method @builtUri to build either of the possible query URLs.
  * <p>
- * Use @getResponseFromHttpUrl method to retrieve the movie data base on a URL.
+ * Use @getMoviePageFromHttpUrl and @getMovieFromHttpUrl methods to retrieve the movie data base on
+ * a URL, or @getResponseFromHttpUrl to retrieve the raw response.
  *
  * @see Movie
  */
@@ -61,12 +66,16 @@ public class NetworkUtils {
 
     //TMDb URL components
     private final static String TMDb_BASE_URL = "http://api.themoviedb.org/3/movie/";
+    private final static String TMDb_CONFIGURATION_URL =
+            "http://api.themoviedb.org/3/configuration";
     private final static String TMDb_popular = "popular";
     private final static String TMDb_top_rated = "top_rated";
 
     private final static String TMDb_QUERY_API_KEY_PARAM = "api_key";
     private final static String TMDb_QUERY_API_KEY_VALUE = BuildConfig.TMDb_API_KEY;
 
+    private final static String TMDb_QUERY_PAGE_PARAM = "page";
+
     //Request videos and reviews together with a movie data
     private final static String TMDb_QUERY_APPEND_TO_RESPONSE_KEY = "append_to_response";
     private final static String TMDb_QUERY_APPEND_TO_RESPONSE_VALUES = "videos,reviews";
@@ -74,14 +83,32 @@ public class NetworkUtils {
     //Youtube base URL
     public final static String YOUTUBE_BASE_URL = "https://www.youtube.com/watch?v=";
 
+    //Parse responses while reading them from the connection (false falls back to org.json)
+    private static volatile boolean sStreamingParserEnabled = true;
+
+    //Concurrent identical requests share one network call and parse result
+    private static final RequestCoalescer<MoviePage> sMoviesCoalescer = new RequestCoalescer<>();
+    private static final RequestCoalescer<Movie> sMovieCoalescer = new RequestCoalescer<>();
+
 
     /**
-     * Builds the URL used to query TMDb for list of movies, either top-rated or popular
+     * Builds the URL used to query TMDb for the first page of movies, either top-rated or popular
      *
      * @param movieQuery The movie query to create the URL.
      * @return The URL used to query the TMDb server.
      */
     public static URL buildMoviesURL(@MainActivity.MOVIES_QUERY int movieQuery) {
+        return buildMoviesURL(movieQuery, MoviePager.FIRST_PAGE);
+    }
+
+    /**
+     * Builds the URL used to query TMDb for a page of movies, either top-rated or popular
+     *
+     * @param movieQuery The movie query to create the URL.
+     * @param page       The page to query, starting at 1.
+     * @return The URL used to query the TMDb server.
+     */
+    public static URL buildMoviesURL(@MainActivity.MOVIES_QUERY int movieQuery, int page) {
 
         Uri builtUri = Uri.parse(TMDb_BASE_URL);
 
@@ -89,11 +116,13 @@ public class NetworkUtils {
             builtUri = builtUri.buildUpon().
                     appendEncodedPath(TMDb_top_rated).
                     appendQueryParameter(TMDb_QUERY_API_KEY_PARAM, BuildConfig.TMDb_API_KEY).
+                    appendQueryParameter(TMDb_QUERY_PAGE_PARAM, String.valueOf(page)).
                     build();
         } else if (movieQuery == MainActivity.POPULAR_MOVIES) {
             builtUri = builtUri.buildUpon().
                     appendEncodedPath(TMDb_popular).
                     appendQueryParameter(TMDb_QUERY_API_KEY_PARAM, BuildConfig.TMDb_API_KEY).
+                    appendQueryParameter(TMDb_QUERY_PAGE_PARAM, String.valueOf(page)).
                     build();
         } else {
             Log.d(LOG_TAG, "Movie query unknown.");
@@ -112,6 +141,41 @@ public class NetworkUtils {
         return url;
     }
 
+    /**
+     * Builds the poster URL from the image base URL of the TMDb configuration (see
+     * {@link PosterSizeSelector}), or the default base URL until it was fetched.
+     *
+     * @param size       The poster size, e.g. "w92" or "w185".
+     * @param posterPath The poster path of the movie.
+     * @return The poster URL string.
+     */
+    public static String buildPosterURLString(String size, String posterPath) {
+        return PosterSizeSelector.getImageBaseUrl() + size + posterPath;
+    }
+
+    /**
+     * Builds the URL used to query TMDb for its configuration, e.g. the image sizes.
+     *
+     * @return The URL used to query for the TMDb configuration.
+     */
+    public static URL buildConfigurationURL() {
+
+        Uri builtUri = Uri.parse(TMDb_CONFIGURATION_URL).buildUpon().
+                appendQueryParameter(TMDb_QUERY_API_KEY_PARAM, TMDb_QUERY_API_KEY_VALUE).
+                build();
+
+        URL url = null;
+        try {
+            url = new URL(builtUri.toString());
+        } catch (MalformedURLException e) {
+            e.printStackTrace();
+        }
+
+        Log.d(LOG_TAG, "URL created (buildConfigurationURL) " + url);
+
+        return url;
+    }
+
     /**
      * Builds the URL used to query TMDb for the movie.
      *
@@ -135,62 +199,145 @@ public class NetworkUtils {
             e.printStackTrace();
         }
 
-        Log.d(LOG_TAG, "URL created (buildMovieURL)" + url);
+        Log.d(LOG_TAG, "URL created (buildMovieURL) " + url);
 
         return url;
     }
 
     /**
-     * This method returns the entire result from the HTTP response.
+     * This method returns the entire result from the HTTP response. The request goes through the
+     * shared {@link HttpClient}, so the connection is kept alive for the next request.
      *
      * @param url The URL to fetch the HTTP response from.
      * @return The contents of the HTTP response.
      * @throws IOException Related to network and stream reading
      */
     public static String getResponseFromHttpUrl(URL url) throws IOException {
-        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        return HttpClient.execute(url, new HttpClient.ResponseReader<String>() {
+            @Override
+            public String read(ResponseBody body) throws IOException {
+                String response = body.string();
+                if (response.isEmpty()) {
+                    return null;
+                } else {
+                    return response;
+                }
+            }
+        });
+    }
+
+    /**
+     * Downloads and parses a page of a movie list. By default the response is parsed directly
+     * from the connection's stream, otherwise it is read into a String and parsed with org.json.
+     * <p>
+     * Callers requesting the same URL concurrently share one request and the parsed page.
+     *
+     * @param url The movies URL (see {@link #buildMoviesURL(int, int)}).
+     * @return MoviePage containing all movies of the response and the total number of pages.
+     * @throws IOException   Related to network and stream reading
+     * @throws JSONException Related to the fallback Json parser
+     */
+    public static MoviePage getMoviePageFromHttpUrl(final URL url)
+            throws IOException, JSONException {
+        return sMoviesCoalescer.execute(url.toString(), new Callable<MoviePage>() {
+            @Override
+            public MoviePage call() throws Exception {
+                return downloadMoviePage(url);
+            }
+        });
+    }
 
-        // set the connection timeout to 5 seconds
-        urlConnection.setConnectTimeout(5000);
-        // set the reading timeout to 10 seconds
-        urlConnection.setReadTimeout(10000);
+    /**
+     * Downloads and parses the details, trailers and reviews of a movie into the movie object.
+     * By default the response is parsed directly from the connection's stream, otherwise it is
+     * read into a String and parsed with org.json.
+     * <p>
+     * Callers requesting the same URL concurrently share one request. The shared result is
+     * copied into each caller's movie object.
+     *
+     * @param url   The movie URL (see {@link #buildMovieURL(String)}).
+     * @param movie The movie to enhance with the downloaded data.
+     * @return The movie object.
+     * @throws IOException   Related to network and stream reading
+     * @throws JSONException Related to the fallback Json parser
+     */
+    public static Movie getMovieFromHttpUrl(final URL url, final Movie movie)
+            throws IOException, JSONException {
+
+        Movie downloadedMovie = sMovieCoalescer.execute(url.toString(), new Callable<Movie>() {
+            @Override
+            public Movie call() throws Exception {
+                return downloadMovie(url, new Movie(movie.getMovieID(), movie.getPosterPath(),
+                        null, null, 0));
+            }
+        });
 
-        try {
-            InputStream in = urlConnection.getInputStream();
+        movie.copyDetailsFrom(downloadedMovie);
+        return movie;
+    }
+
+    /**
+     * @return Number of requests that shared the result of an identical request in flight.
+     */
+    public static int getCollapsedRequestCount() {
+        return sMoviesCoalescer.getCollapsedCount() + sMovieCoalescer.getCollapsedCount();
+    }
+
+    /**
+     * @return Human readable summary of the request coalescing (for logging).
+     */
+    public static String getCoalescingStatistics() {
+        return String.format(Locale.US,
+                "Request coalescing: movies %d executed, %d collapsed; movie %d executed, %d collapsed",
+                sMoviesCoalescer.getExecutedCount(), sMoviesCoalescer.getCollapsedCount(),
+                sMovieCoalescer.getExecutedCount(), sMovieCoalescer.getCollapsedCount());
+    }
 
-            Scanner scanner = new Scanner(in);
-            scanner.useDelimiter("\\A");
+    private static MoviePage downloadMoviePage(URL url) throws IOException, JSONException {
 
-            boolean hasInput = scanner.hasNext();
-            if (hasInput) {
-                return scanner.next();
-            } else {
-                return null;
+        if (!sStreamingParserEnabled) {
+            return TMDbJsonUtils.getMoviePageFromJson(getResponseFromHttpUrl(url));
+        }
+
+        return HttpClient.execute(url, new HttpClient.ResponseReader<MoviePage>() {
+            @Override
+            public MoviePage read(ResponseBody body) throws IOException {
+                return TMDbJsonUtils.readMoviePageFromStream(body.byteStream());
             }
-        } finally {
-            urlConnection.disconnect();
+        });
+    }
+
+    private static Movie downloadMovie(URL url, final Movie movie)
+            throws IOException, JSONException {
+
+        if (!sStreamingParserEnabled) {
+            return TMDbJsonUtils.getMovieFromJson(getResponseFromHttpUrl(url), movie);
         }
+
+        return HttpClient.execute(url, new HttpClient.ResponseReader<Movie>() {
+            @Override
+            public Movie read(ResponseBody body) throws IOException {
+                return TMDbJsonUtils.readMovieFromStream(body.byteStream(), movie);
+            }
+        });
     }
 
     /**
-     * Simple check (ping -c 8.8.8.8) to see if internet is accessible.
+     * Switches between the streaming parser and the String based org.json parser.
+     *
+     * @param enabled True to parse responses from the stream, false to use the fallback.
+     */
+    public static void setStreamingParserEnabled(boolean enabled) {
+        sStreamingParserEnabled = enabled;
+    }
+
+    /**
+     * Reads the network state kept by the {@link ConnectivityMonitor}. Does not block.
      *
      * @return true if internet is accessible, false otherwise
      */
     public static boolean isOnline() {
-
-        Runtime runtime = Runtime.getRuntime();
-        try {
-
-            Process ipProcess = runtime.exec("/system/bin/ping -c 1 8.8.8.8");
-            int exitValue = ipProcess.waitFor();
-            return (exitValue == 0);
-
-        } catch (IOException | InterruptedException e) {
-            e.printStackTrace();
-        }
-
-        return false;
+        return ConnectivityMonitor.isOnline();
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,228 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.example.android.popularmovies.utilities;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * In-memory cache of decoded posters of stored movies, keyed by movie id and poster size.
+ * A poster downsampled for a view is cached under its sampled size
+ * ({@link #getSampledSize(String, int, int)}). Shared by all activities.
+ * <p>
+ * The cache is bounded by the bytes of the bitmaps it holds: a fraction of the app's memory
+ * class once {@link #init(Context)} was called. The least recently used posters are evicted
+ * first. {@link #trimMemory(int)} shrinks or clears the cache when the system is low on memory.
+ * The cache holds a {@link BitmapPool} reference on its posters, so an evicted poster is
+ * reused once no view displays it anymore.
+ * <p>
+ * Use {@link #getStatistics()} to check the hit rate and the bytes held.
+ */
+public final class PosterCache {
+
+    private static final String LOG_TAG = PosterCache.class.getSimpleName();
+
+
+    //The cache may use 1/8 of the app's memory class
+    private static final int MEMORY_FRACTION = 8;
+
+    private static final String SAMPLED_SIZE_SEPARATOR = "@";
+
+    private static LruCache<String, Bitmap> sCache;
+
+
+    private PosterCache() {
+    }
+
+    /**
+     * Sizes the cache by the memory class of the device. Must be called before the first
+     * poster is cached, usually in {@link android.app.Application#onCreate()}.
+     *
+     * @param context Any context.
+     */
+    public static synchronized void init(Context context) {
+        if (sCache != null) {
+            Log.w(LOG_TAG, "PosterCache already in use. Cache size is not changed.");
+            return;
+        }
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        sCache = createCache(activityManager.getMemoryClass() * 1024 * 1024 / MEMORY_FRACTION);
+    }
+
+    /**
+     * @param movieID The movie id.
+     * @param size    The poster size, e.g. "w92" or "w185".
+     * @return The cached poster, null if it is not cached.
+     */
+    public static Bitmap get(int movieID, String size) {
+        return getCache().get(getKey(movieID, size));
+    }
+
+    /**
+     * Like {@link #get(int, String)}, and adds a {@link BitmapPool} reference to the poster,
+     * which the caller has to release.
+     *
+     * @param movieID The movie id.
+     * @param size    The poster size, e.g. "w92" or "w185".
+     * @return The cached poster, null if it is not cached.
+     */
+    public static Bitmap acquire(int movieID, String size) {
+        synchronized (BitmapPool.sLock) {
+            Bitmap poster = get(movieID, size);
+            if (poster != null) {
+                BitmapPool.acquire(poster);
+            }
+            return poster;
+        }
+    }
+
+    /**
+     * @param movieID The movie id.
+     * @param size    The poster size, e.g. "w92" or "w185".
+     * @param poster  The decoded poster.
+     */
+    public static void put(int movieID, String size, Bitmap poster) {
+        BitmapPool.acquire(poster);
+        getCache().put(getKey(movieID, size), poster);
+    }
+
+    /**
+     * Removes the poster and its downsampled variants, e.g. when the movie is removed from the
+     * favorites.
+     *
+     * @param movieID The movie id.
+     * @param size    The poster size, e.g. "w92" or "w185".
+     */
+    public static void remove(int movieID, String size) {
+        LruCache<String, Bitmap> cache = getCache();
+        String key = getKey(movieID, size);
+        for (String cachedKey : cache.snapshot().keySet()) {
+            if (cachedKey.equals(key) || cachedKey.startsWith(key + SAMPLED_SIZE_SEPARATOR)) {
+                cache.remove(cachedKey);
+            }
+        }
+    }
+
+    /**
+     * @param size   The poster size, e.g. "w92" or "w185".
+     * @param width  The width the poster was downsampled to, 0 if not constrained.
+     * @param height The height the poster was downsampled to, 0 if not constrained.
+     * @return The size to cache the downsampled poster under, e.g. "w185@270x405".
+     */
+    public static String getSampledSize(String size, int width, int height) {
+        if (width <= 0 && height <= 0) {
+            return size;
+        }
+        return size + SAMPLED_SIZE_SEPARATOR + width + "x" + height;
+    }
+
+    /**
+     * Shrinks the cache according to the memory pressure signaled by the system.
+     *
+     * @param level The trim level of {@link ComponentCallbacks2#onTrimMemory(int)}.
+     */
+    public static void trimMemory(int level) {
+        LruCache<String, Bitmap> cache = getCache();
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE ||
+                level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            cache.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND ||
+                level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            cache.trimToSize(cache.maxSize() / 2);
+        }
+        Log.d(LOG_TAG, "Trimmed to level " + level + ". " + getStatistics());
+    }
+
+    /**
+     * @return Human readable summary of the cache usage (for logging).
+     */
+    public static String getStatistics() {
+        LruCache<String, Bitmap> cache = getCache();
+        int hits = cache.hitCount();
+        int requests = hits + cache.missCount();
+        return String.format(Locale.US,
+                "Poster cache: %d posters, %d of %d KB, %d hits of %d requests (%d%%), %d evicted",
+                cache.snapshot().size(), cache.size() / 1024,
+                cache.maxSize() / 1024, hits, requests,
+                requests == 0 ? 0 : hits * 100 / requests, cache.evictionCount());
+    }
+
+    /**
+     * @return The bytes held by the cached posters.
+     */
+    public static int getSize() {
+        return getCache().size();
+    }
+
+    /**
+     * @return The maximum bytes of the cached posters.
+     */
+    public static int getMaxSize() {
+        return getCache().maxSize();
+    }
+
+    private static synchronized LruCache<String, Bitmap> getCache() {
+        if (sCache == null) {
+            Log.w(LOG_TAG, "PosterCache not initialized. Sized by the maximum heap.");
+            sCache = createCache((int) (Runtime.getRuntime().maxMemory() / MEMORY_FRACTION));
+        }
+        return sCache;
+    }
+
+    private static LruCache<String, Bitmap> createCache(int maxBytes) {
+        return new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap poster) {
+                return getByteCount(poster);
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldPoster,
+                                        Bitmap newPoster) {
+                BitmapPool.release(oldPoster);
+            }
+        };
+    }
+
+    /**
+     * @param bitmap The bitmap.
+     * @return The bytes of the bitmap's pixel memory.
+     */
+    static int getByteCount(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getByteCount();
+    }
+
+    private static String getKey(int movieID, String size) {
+        return movieID + "_" + size;
+    }
+}
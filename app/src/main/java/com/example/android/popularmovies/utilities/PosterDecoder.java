@@ -0,0 +1,510 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.example.android.popularmovies.utilities;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.DrawableRes;
+import android.view.ViewTreeObserver;
+import android.widget.ImageView;
+
+import com.example.android.popularmovies.data.PosterStore;
+import com.example.android.popularmovies.transform.PooledTransformation;
+import com.squareup.picasso.Transformation;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes stored posters on a pool of worker threads, one thread per core, and sets them on
+ * their ImageView on the main thread.
+ * <p>
+ * A poster is decoded either from its {@link PosterStore} file or from bytes in memory, unless
+ * it is in the {@link PosterCache}. Decoded posters are added to the cache. Decodes and
+ * {@link PooledTransformation}s reuse bitmaps of the {@link BitmapPool}.
+ * <p>
+ * Posters are downsampled to the measured size of their view: the image bounds are read
+ * first, then the decode is subsampled ({@code inSampleSize}) and density scaled down to the
+ * view, so no more pixels are decoded than displayed. A request for a view that is not laid
+ * out yet waits for its first layout. Posters without transformation are decoded to RGB_565,
+ * as they have no transparency. An
+ * ImageView has at most one pending request. A new request for the same view or
+ * {@link #cancel(ImageView)} cancels the pending one, so a recycled view never shows the poster
+ * of its previous position.
+ * <p>
+ * Each view holds a {@link BitmapPool} reference on the poster it displays, until it displays
+ * something else or {@link #release(ImageView)} is called, e.g. when its ViewHolder is recycled.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+public final class PosterDecoder {
+
+    private static final String LOG_TAG = PosterDecoder.class.getSimpleName();
+
+
+    private static final int POOL_SIZE = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    private static final ExecutorService sExecutor =
+            Executors.newFixedThreadPool(POOL_SIZE, new DecoderThreadFactory());
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    //Pending request and displayed poster per view. Only accessed on the main thread.
+    private static final Map<ImageView, DecodeRequest> sRequests = new WeakHashMap<>();
+    private static final Map<ImageView, Bitmap> sDisplayed = new WeakHashMap<>();
+
+    //Decode on the main thread instead (for comparison)
+    private static boolean sAsyncDecodingEnabled = true;
+
+    //Decode opaque posters to ARGB_8888 instead (for comparison)
+    private static boolean sRgb565Enabled = true;
+
+    private static final AtomicInteger sDecodedCount = new AtomicInteger();
+    private static final AtomicInteger sCancelledCount = new AtomicInteger();
+
+
+    private PosterDecoder() {
+    }
+
+    /**
+     * Decodes the poster stored in the {@link PosterStore} into the view.
+     *
+     * @param context        Any context.
+     * @param movieID        The movie id.
+     * @param size           The poster size, e.g. "w92" or "w185".
+     * @param target         The view to display the poster.
+     * @param placeholder    Displayed while decoding and if the poster cannot be decoded.
+     * @param transformation Applied to the decoded poster on the worker thread, may be null.
+     */
+    public static void loadStoredPoster(Context context, int movieID, String size,
+                                        ImageView target, @DrawableRes int placeholder,
+                                        Transformation transformation) {
+        submit(new DecodeRequest(target, movieID, size,
+                PosterStore.getPosterFile(context, movieID, size), null, placeholder,
+                transformation));
+    }
+
+    /**
+     * Decodes the poster bytes into the view.
+     *
+     * @param movieID        The movie id.
+     * @param size           The poster size, e.g. "w92" or "w185".
+     * @param bytes          The encoded poster, e.g. JPEG.
+     * @param target         The view to display the poster.
+     * @param placeholder    Displayed while decoding and if the poster cannot be decoded.
+     * @param transformation Applied to the decoded poster on the worker thread, may be null.
+     */
+    public static void loadPoster(int movieID, String size, byte[] bytes, ImageView target,
+                                  @DrawableRes int placeholder, Transformation transformation) {
+        submit(new DecodeRequest(target, movieID, size, null, bytes, placeholder,
+                transformation));
+    }
+
+    /**
+     * Cancels the pending request of the view, if any. The view keeps its current drawable.
+     *
+     * @param target The view.
+     */
+    public static void cancel(ImageView target) {
+        DecodeRequest request = sRequests.remove(target);
+        if (request != null) {
+            request.cancel();
+            sCancelledCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Cancels the pending request of the view and removes the poster it displays, which can
+     * then be reused by the {@link BitmapPool}. Call it before the view displays an image from
+     * another source, or when it is recycled.
+     *
+     * @param target The view.
+     */
+    public static void release(ImageView target) {
+        cancel(target);
+        if (sDisplayed.containsKey(target)) {
+            target.setImageDrawable(null);
+            display(target, null);
+        }
+    }
+
+    /**
+     * Switches between decoding on the worker threads and decoding on the main thread.
+     *
+     * @param enabled True to decode on the worker threads.
+     */
+    public static void setAsyncDecodingEnabled(boolean enabled) {
+        sAsyncDecodingEnabled = enabled;
+    }
+
+    /**
+     * Switches between decoding posters without transformation to RGB_565, which halves their
+     * memory, and decoding all posters to ARGB_8888.
+     *
+     * @param enabled True to decode opaque posters to RGB_565.
+     */
+    public static void setRgb565Enabled(boolean enabled) {
+        sRgb565Enabled = enabled;
+    }
+
+    /**
+     * @return Human readable summary of the decodes (for logging).
+     */
+    public static String getStatistics() {
+        return String.format(Locale.US, "Poster decodes: %d decoded, %d cancelled, %d threads",
+                sDecodedCount.get(), sCancelledCount.get(), POOL_SIZE);
+    }
+
+    private static void submit(DecodeRequest request) {
+        ImageView target = request.mTarget.get();
+        cancel(target);
+
+        if (target.getWidth() > 0) {
+            start(request, target);
+            return;
+        }
+
+        //Not laid out yet, decode once the view size is known
+        display(target, null);
+        target.setImageResource(request.mPlaceholder);
+        sRequests.put(target, request);
+        target.getViewTreeObserver().addOnPreDrawListener(request);
+    }
+
+    private static void start(DecodeRequest request, ImageView target) {
+        request.setTargetSize(target);
+
+        //A cached poster without transformation is displayed right away
+        Bitmap cached = request.mTransformation == null ?
+                PosterCache.acquire(request.mMovieID, request.mCacheSize) : null;
+        if (cached != null) {
+            display(target, cached);
+            return;
+        }
+
+        if (!sAsyncDecodingEnabled) {
+            request.deliver(request.decode());
+            return;
+        }
+
+        display(target, null);
+        target.setImageResource(request.mPlaceholder);
+        sRequests.put(target, request);
+        request.mFuture = sExecutor.submit(request);
+    }
+
+    /**
+     * Displays the poster, or nothing, and releases the poster displayed before.
+     *
+     * @param target The view.
+     * @param poster The poster with a reference handed over to the view, null for none.
+     */
+    private static void display(ImageView target, Bitmap poster) {
+        Bitmap previous = poster != null ?
+                sDisplayed.put(target, poster) : sDisplayed.remove(target);
+        if (poster != null) {
+            target.setImageBitmap(poster);
+        }
+        if (previous != null && previous != poster) {
+            BitmapPool.release(previous);
+        } else if (previous != null) {
+            //Displayed again, the view keeps one reference only
+            BitmapPool.release(poster);
+        }
+    }
+
+    /**
+     * Decodes a poster downsampled to the requested size, into a bitmap of the
+     * {@link BitmapPool} if there is one of the size. A requested width or height of 0 does not
+     * constrain the decode. Posters are never scaled up.
+     */
+    static Bitmap decodeSampled(File file, byte[] bytes, int reqWidth, int reqHeight,
+                                Bitmap.Config config) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decode(file, bytes, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        options.inPreferredConfig = config;
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight,
+                reqWidth, reqHeight);
+
+        //Scale the subsampled poster down to the requested size
+        int sampledWidth = options.outWidth / options.inSampleSize;
+        int sampledHeight = options.outHeight / options.inSampleSize;
+        float scale = Math.min(1f, Math.max(
+                reqWidth > 0 ? (float) reqWidth / sampledWidth : 0f,
+                reqHeight > 0 ? (float) reqHeight / sampledHeight : 0f));
+        if (scale <= 0f) {
+            scale = 1f;
+        }
+        int width = Math.max(1, Math.round(sampledWidth * scale));
+        int height = Math.max(1, Math.round(sampledHeight * scale));
+        if (width < sampledWidth) {
+            options.inScaled = true;
+            options.inDensity = sampledWidth;
+            options.inTargetDensity = width;
+        }
+
+        //Before KitKat a bitmap can only be reused by a decode that is neither sampled nor scaled
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT ||
+                (options.inSampleSize == 1 && width == sampledWidth)) {
+            options.inBitmap = BitmapPool.getReusable(width, height, config);
+        }
+
+        Bitmap bitmap;
+        try {
+            bitmap = decode(file, bytes, options);
+        } catch (IllegalArgumentException e) {
+            //The pooled bitmap does not fit the image
+            options.inBitmap = null;
+            bitmap = decode(file, bytes, options);
+        }
+        if (bitmap != null && options.inBitmap == null) {
+            BitmapPool.onAllocated();
+        }
+        if (bitmap != null && options.inScaled) {
+            //Displayed like an unscaled decode, not enlarged by the target density
+            bitmap.setDensity(Resources.getSystem().getDisplayMetrics().densityDpi);
+        }
+        return bitmap;
+    }
+
+    /**
+     * @return The largest power of 2 that keeps the subsampled image at least as large as the
+     * requested size.
+     */
+    static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int inSampleSize = 1;
+        while ((reqWidth <= 0 || width / (inSampleSize * 2) >= reqWidth) &&
+                (reqHeight <= 0 || height / (inSampleSize * 2) >= reqHeight) &&
+                (reqWidth > 0 || reqHeight > 0)) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    private static Bitmap decode(File file, byte[] bytes, BitmapFactory.Options options) {
+        if (file != null) {
+            return BitmapFactory.decodeFile(file.getPath(), options);
+        } else if (bytes != null) {
+            return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        }
+        return null;
+    }
+
+    /**
+     * Decodes a poster on a worker thread and delivers it on the main thread, unless the
+     * request was cancelled meanwhile.
+     */
+    private static final class DecodeRequest implements Runnable,
+            ViewTreeObserver.OnPreDrawListener {
+
+        private final WeakReference<ImageView> mTarget;
+        private final int mMovieID;
+        private final String mSize;
+        private final File mFile;
+        private final byte[] mBytes;
+        private final int mPlaceholder;
+        private final Transformation mTransformation;
+
+        //Set on the main thread before the request is submitted
+        private int mWidth;
+        private int mHeight;
+        private Bitmap.Config mConfig;
+        private String mCacheSize;
+
+        private volatile boolean mCancelled;
+        private Future<?> mFuture;
+
+        DecodeRequest(ImageView target, int movieID, String size, File file, byte[] bytes,
+                      int placeholder, Transformation transformation) {
+            this.mTarget = new WeakReference<>(target);
+            this.mMovieID = movieID;
+            this.mSize = size;
+            this.mFile = file;
+            this.mBytes = bytes;
+            this.mPlaceholder = placeholder;
+            this.mTransformation = transformation;
+        }
+
+        /**
+         * Requests the size of the view without padding. Downsampled posters are cached
+         * separately per size.
+         */
+        void setTargetSize(ImageView target) {
+            mWidth = Math.max(0,
+                    target.getWidth() - target.getPaddingLeft() - target.getPaddingRight());
+            mHeight = Math.max(0,
+                    target.getHeight() - target.getPaddingTop() - target.getPaddingBottom());
+            mConfig = mTransformation == null && sRgb565Enabled ?
+                    Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+            mCacheSize = PosterCache.getSampledSize(mSize, mWidth, mHeight);
+        }
+
+        /**
+         * Starts the deferred request once the view is laid out.
+         */
+        @Override
+        public boolean onPreDraw() {
+            ImageView target = mTarget.get();
+            if (target == null || mCancelled || sRequests.get(target) != this) {
+                if (target != null) {
+                    target.getViewTreeObserver().removeOnPreDrawListener(this);
+                }
+                return true;
+            }
+            if (target.getWidth() <= 0) {
+                return true;
+            }
+            target.getViewTreeObserver().removeOnPreDrawListener(this);
+            sRequests.remove(target);
+            start(this, target);
+            return true;
+        }
+
+        @Override
+        public void run() {
+            if (mCancelled) {
+                return;
+            }
+            final Bitmap bitmap = decode();
+            sMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    ImageView target = mTarget.get();
+                    if (mCancelled || target == null
+                            || sRequests.get(target) != DecodeRequest.this) {
+                        if (bitmap != null) {
+                            BitmapPool.release(bitmap);
+                        }
+                        return;
+                    }
+                    sRequests.remove(target);
+                    deliver(bitmap);
+                }
+            });
+        }
+
+        /**
+         * @return The poster with a {@link BitmapPool} reference for the view, null if it
+         * could not be decoded.
+         */
+        Bitmap decode() {
+            Bitmap bitmap = PosterCache.acquire(mMovieID, mCacheSize);
+            if (bitmap == null) {
+                bitmap = decodeSampled(mFile, mBytes, mWidth, mHeight, mConfig);
+                if (bitmap == null) {
+                    return null;
+                }
+                sDecodedCount.incrementAndGet();
+                BitmapPool.acquire(bitmap);
+                PosterCache.put(mMovieID, mCacheSize, bitmap);
+            }
+            if (mTransformation != null && !mCancelled) {
+                Bitmap transformed;
+                if (mTransformation instanceof PooledTransformation) {
+                    transformed = ((PooledTransformation) mTransformation).transformToPool(bitmap);
+                } else {
+                    //The transformation recycles its source, the cached poster must stay intact
+                    Bitmap.Config config = bitmap.getConfig() != null ?
+                            bitmap.getConfig() : Bitmap.Config.ARGB_8888;
+                    transformed = mTransformation.transform(bitmap.copy(config, false));
+                }
+                BitmapPool.release(bitmap);
+                if (transformed != null) {
+                    BitmapPool.acquire(transformed);
+                }
+                bitmap = transformed;
+            }
+            return bitmap;
+        }
+
+        /**
+         * @param bitmap The poster with a reference for the view, null to show the placeholder.
+         */
+        void deliver(Bitmap bitmap) {
+            ImageView target = mTarget.get();
+            if (target == null) {
+                if (bitmap != null) {
+                    BitmapPool.release(bitmap);
+                }
+                return;
+            }
+            if (bitmap != null) {
+                display(target, bitmap);
+            } else {
+                display(target, null);
+                target.setImageResource(mPlaceholder);
+            }
+        }
+
+        void cancel() {
+            mCancelled = true;
+            ImageView target = mTarget.get();
+            if (target != null) {
+                target.getViewTreeObserver().removeOnPreDrawListener(this);
+            }
+            if (mFuture != null) {
+                mFuture.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Creates the decoder threads with background priority, so they do not compete with the
+     * main thread.
+     */
+    private static final class DecoderThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger mThreadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, LOG_TAG + "-" + mThreadCount.incrementAndGet());
+        }
+    }
+}
@@ -0,0 +1,293 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.example.android.popularmovies.utilities;
+
+import android.content.Context;
+import android.net.Uri;
+import android.support.v4.util.LruCache;
+
+import com.squareup.picasso.Downloader;
+import com.squareup.picasso.NetworkPolicy;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+
+/**
+ * Picasso downloader sharing the connection pool of the {@link HttpClient}. Posters are cached
+ * on disk separately from the TMDb responses, so they do not evict each other.
+ * <p>
+ * The bytes of each poster read from the network are counted, e.g. to find out how many were
+ * downloaded for images that were never displayed (see {@link PosterScheduler}). Each download
+ * is reported to the {@link PosterSizeSelector}, which estimates the throughput.
+ * <p>
+ * The original bytes of a displayed poster stay in the disk cache, so
+ * {@link #openPoster(Context, String)} can copy them, e.g. when the movie is added to the
+ * favorites, without encoding the displayed bitmap again.
+ */
+public class PosterDownloader implements Downloader {
+
+    private static final String CACHE_DIRECTORY_NAME = "posters";
+    private static final long CACHE_MAX_SIZE_BYTES = 50 * 1024 * 1024;
+
+    //Network bytes read per poster URL, for the most recently downloaded posters only
+    private static final int DOWNLOADED_BYTES_MAX_ENTRIES = 500;
+    private static final LruCache<String, Long> sDownloadedBytes =
+            new LruCache<>(DOWNLOADED_BYTES_MAX_ENTRIES);
+    private static final AtomicLong sTotalDownloadedBytes = new AtomicLong();
+
+    //Posters do not change, so any cached copy is good
+    private static final CacheControl ANY_CACHED_COPY = new CacheControl.Builder()
+            .maxStale(Integer.MAX_VALUE, TimeUnit.SECONDS)
+            .build();
+
+    //Shared by all downloaders and openPoster, so they use the same disk cache
+    private static OkHttpClient sClient;
+
+    private final OkHttpClient mClient;
+
+    /**
+     * @param context Any context, the application's cache directory is used.
+     */
+    public PosterDownloader(Context context) {
+        mClient = getClient(context);
+    }
+
+    /**
+     * Opens the original bytes of a poster: the cached copy if the poster was downloaded
+     * before, even if it is stale, otherwise the download. Must not be called on the main
+     * thread.
+     *
+     * @param context Any context.
+     * @param url     The poster URL.
+     * @return The poster stream, to be closed by the caller.
+     * @throws IOException If the poster is neither cached nor can be downloaded.
+     */
+    public static InputStream openPoster(Context context, String url) throws IOException {
+        okhttp3.Response response = getClient(context).newCall(new Request.Builder()
+                .url(url)
+                .cacheControl(ANY_CACHED_COPY)
+                .build()).execute();
+        if (!response.isSuccessful()) {
+            response.close();
+            throw new IOException("Unexpected HTTP response " + response.code() + " for " + url);
+        }
+        return openStream(response, url);
+    }
+
+    /**
+     * Opens the original bytes of a poster from the disk cache only, even if they are stale.
+     * Must not be called on the main thread.
+     *
+     * @param context Any context.
+     * @param url     The poster URL.
+     * @return The poster stream, to be closed by the caller. Null if the poster is not cached.
+     * @throws IOException If the cache could not be read.
+     */
+    public static InputStream openCachedPoster(Context context, String url) throws IOException {
+        okhttp3.Response response = getClient(context).newCall(new Request.Builder()
+                .url(url)
+                .cacheControl(CacheControl.FORCE_CACHE)
+                .build()).execute();
+        if (!response.isSuccessful()) {
+            response.close();
+            return null;
+        }
+        return openStream(response, url);
+    }
+
+    @Override
+    public Response load(Uri uri, int networkPolicy) throws IOException {
+        Request.Builder requestBuilder = new Request.Builder().url(uri.toString());
+        if (networkPolicy != 0) {
+            if (NetworkPolicy.isOfflineOnly(networkPolicy)) {
+                requestBuilder.cacheControl(CacheControl.FORCE_CACHE);
+            } else {
+                CacheControl.Builder cacheControl = new CacheControl.Builder();
+                if (!NetworkPolicy.shouldReadFromDiskCache(networkPolicy)) {
+                    cacheControl.noCache();
+                }
+                if (!NetworkPolicy.shouldWriteToDiskCache(networkPolicy)) {
+                    cacheControl.noStore();
+                }
+                requestBuilder.cacheControl(cacheControl.build());
+            }
+        }
+
+        okhttp3.Response response = mClient.newCall(requestBuilder.build()).execute();
+        if (!response.isSuccessful()) {
+            response.close();
+            throw new ResponseException(response.code() + " " + response.message(),
+                    networkPolicy, response.code());
+        }
+
+        return new Response(openStream(response, uri.toString()), !isFromNetwork(response),
+                response.body().contentLength());
+    }
+
+    /**
+     * Keeps the shared disk cache open, it is still used by {@link #openPoster(Context, String)}.
+     */
+    @Override
+    public void shutdown() {
+    }
+
+    /**
+     * @param url The poster URL.
+     * @return The bytes read from the network for the poster, 0 if it was never downloaded or
+     * not among the last {@value #DOWNLOADED_BYTES_MAX_ENTRIES} downloaded posters.
+     */
+    public static long getDownloadedBytes(String url) {
+        synchronized (sDownloadedBytes) {
+            Long bytes = sDownloadedBytes.get(url);
+            return bytes == null ? 0 : bytes;
+        }
+    }
+
+    /**
+     * @return The bytes read from the network for all posters.
+     */
+    public static long getTotalDownloadedBytes() {
+        return sTotalDownloadedBytes.get();
+    }
+
+    private static synchronized OkHttpClient getClient(Context context) {
+        if (sClient == null) {
+            Cache cache = new Cache(new File(context.getApplicationContext().getCacheDir(),
+                    CACHE_DIRECTORY_NAME), CACHE_MAX_SIZE_BYTES);
+            OkHttpClient.Builder builder = HttpClient.getInstance().newBuilder().cache(cache);
+            //The cache and connection reuse statistics are kept for the TMDb endpoints only
+            builder.interceptors().clear();
+            builder.networkInterceptors().clear();
+            sClient = builder.build();
+        }
+        return sClient;
+    }
+
+    private static boolean isFromNetwork(okhttp3.Response response) {
+        okhttp3.Response networkResponse = response.networkResponse();
+        return networkResponse != null && networkResponse.code() != 304;
+    }
+
+    private static InputStream openStream(okhttp3.Response response, String url) {
+        InputStream stream = response.body().byteStream();
+        return isFromNetwork(response) ?
+                new CountingInputStream(stream, url, response) : stream;
+    }
+
+    private static void onBytesRead(String url, long bytes) {
+        sTotalDownloadedBytes.addAndGet(bytes);
+        synchronized (sDownloadedBytes) {
+            sDownloadedBytes.put(url, getDownloadedBytes(url) + bytes);
+        }
+    }
+
+    /**
+     * Counts the bytes read from a poster download. Once the download is read completely, or
+     * closed early (decoders stop at the end of the image), its size and transfer time are
+     * reported to the {@link PosterSizeSelector}. The transfer time is the time to the response
+     * headers plus the time spent in the reads, so decoding between the reads is not included.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private final String mUrl;
+        private final long mContentLength;
+        private long mTransferNanos;
+        private long mBytes;
+        private boolean mFinished;
+
+        CountingInputStream(InputStream in, String url, okhttp3.Response response) {
+            super(in);
+            this.mUrl = url;
+            this.mContentLength = response.body().contentLength();
+            this.mTransferNanos = TimeUnit.MILLISECONDS.toNanos(
+                    response.receivedResponseAtMillis() - response.sentRequestAtMillis());
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            int b = super.read();
+            mTransferNanos += System.nanoTime() - start;
+            if (b != -1) {
+                onBytesRead(mUrl, 1);
+                mBytes++;
+            }
+            finishIfComplete(b == -1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            long start = System.nanoTime();
+            int read = super.read(buffer, offset, count);
+            mTransferNanos += System.nanoTime() - start;
+            if (read > 0) {
+                onBytesRead(mUrl, read);
+                mBytes += read;
+            }
+            finishIfComplete(read == -1);
+            return read;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long start = System.nanoTime();
+            long skipped = super.skip(count);
+            mTransferNanos += System.nanoTime() - start;
+            if (skipped > 0) {
+                onBytesRead(mUrl, skipped);
+                mBytes += skipped;
+            }
+            finishIfComplete(false);
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+            super.close();
+        }
+
+        private void finishIfComplete(boolean endOfStream) {
+            if (endOfStream || (mContentLength > 0 && mBytes >= mContentLength)) {
+                finish();
+            }
+        }
+
+        private void finish() {
+            if (!mFinished && mBytes > 0) {
+                mFinished = true;
+                PosterSizeSelector.onDownloadFinished(mBytes,
+                        TimeUnit.NANOSECONDS.toMillis(mTransferNanos));
+            }
+        }
+    }
+}
@@ -0,0 +1,466 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.example.android.popularmovies.utilities;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
+import android.support.annotation.DrawableRes;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewParent;
+import android.widget.ImageView;
+
+import com.example.android.popularmovies.adapters.MovieAdapter;
+import com.squareup.picasso.Callback;
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.Target;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Schedules the poster downloads of the movie grid by the scroll state of the RecyclerView.
+ * <p>
+ * While the list flings, new poster loads are deferred and the loads in flight are paused, as
+ * their cells are likely off-screen before the poster arrives. When the list settles or is
+ * dragged again, the deferred loads start, the visible cells first and with high priority.
+ * Loads of recycled cells are cancelled. Once the list is idle, the posters of the next rows
+ * in the scroll direction are prefetched into Picasso's memory cache.
+ * <p>
+ * Loads are progressive: unless the poster is in the memory cache, its thumbnail (e.g. w92) is
+ * shown scaled up as soon as it arrives, which is often cached already, until the poster
+ * replaces it. The time from the start of a load to the first image shown in the cell is
+ * measured, {@link #setProgressiveLoadingEnabled(boolean)} switches back to poster-only loads
+ * for comparison.
+ * <p>
+ * Registered as scroll listener of the RecyclerView. Use {@link #getStatistics()} to check the
+ * bytes downloaded for posters that were cancelled before they were displayed.
+ */
+public class PosterScheduler extends RecyclerView.OnScrollListener {
+
+    private static final String LOG_TAG = PosterScheduler.class.getSimpleName();
+
+
+    private final Context mContext;
+    private final MovieAdapter mMovieAdapter;
+    private final GridLayoutManager mLayoutManager;
+    private final int mPrefetchRows;
+
+    //Tags all requests of this scheduler, to pause, resume and cancel them together
+    private final Object mTag = new Object();
+
+    //Loads deferred while flinging, in bind order
+    private final Map<ImageView, PosterLoad> mDeferredLoads = new LinkedHashMap<>();
+
+    //Loads started and not displayed yet
+    private final Map<ImageView, String> mPendingLoads = new HashMap<>();
+
+    //Posters cancelled before they were displayed, their download may have been wasted
+    private final Set<String> mCancelledURLs = new HashSet<>();
+
+    //Thumbnails requested for the pending loads. Picasso only keeps weak references.
+    private final Map<ImageView, ThumbnailTarget> mThumbnails = new HashMap<>();
+
+    private boolean mProgressiveLoadingEnabled = true;
+
+    private boolean mFlinging;
+    private int mScrollDirection = 1;
+    private int mLastPrefetchPosition = RecyclerView.NO_POSITION;
+
+    private int mLoadCount;
+    private int mDeferredCount;
+    private int mCancelledCount;
+    private int mPrefetchCount;
+
+    //Time to the first image shown in a cell, the thumbnail or the poster
+    private int mFirstPixelCount;
+    private long mFirstPixelMillis;
+
+    /**
+     * @param context       The activity displaying the grid.
+     * @param movieAdapter  The adapter of the grid, provides the poster URLs to prefetch.
+     * @param layoutManager The layout manager of the RecyclerView.
+     * @param prefetchRows  Number of rows ahead in the scroll direction to prefetch.
+     */
+    public PosterScheduler(Context context, MovieAdapter movieAdapter,
+                           GridLayoutManager layoutManager, int prefetchRows) {
+        this.mContext = context;
+        this.mMovieAdapter = movieAdapter;
+        this.mLayoutManager = layoutManager;
+        this.mPrefetchRows = prefetchRows;
+    }
+
+    /**
+     * Loads the poster into the view, or defers the load while the list flings. A previous load
+     * of the view is cancelled.
+     *
+     * @param target       The poster view of a grid cell.
+     * @param url          The poster URL.
+     * @param thumbnailUrl The URL of a smaller rendition shown until the poster arrives, may be
+     *                     null.
+     * @param placeholder  Displayed until the poster is loaded and if it cannot be loaded.
+     */
+    public void load(ImageView target, String url, String thumbnailUrl,
+                     @DrawableRes int placeholder) {
+        cancel(target);
+        PosterLoad load = new PosterLoad(url, thumbnailUrl, placeholder);
+        if (mFlinging) {
+            target.setImageResource(placeholder);
+            mDeferredLoads.put(target, load);
+            mDeferredCount++;
+            return;
+        }
+        start(target, load, Picasso.Priority.NORMAL);
+    }
+
+    /**
+     * Cancels the deferred or pending load of the view, e.g. when its cell is recycled.
+     *
+     * @param target The poster view of a grid cell.
+     */
+    public void cancel(ImageView target) {
+        mDeferredLoads.remove(target);
+        Picasso.with(mContext).cancelRequest(target);
+        cancelThumbnail(target);
+        String url = mPendingLoads.remove(target);
+        if (url != null) {
+            mCancelledURLs.add(url);
+            mCancelledCount++;
+        }
+    }
+
+    /**
+     * Cancels all loads and prefetches, e.g. when the activity is destroyed.
+     */
+    public void shutdown() {
+        Picasso.with(mContext).cancelTag(mTag);
+        mDeferredLoads.clear();
+        mPendingLoads.clear();
+        mThumbnails.clear();
+    }
+
+    /**
+     * Switches between showing a thumbnail until the poster arrives and showing the
+     * placeholder.
+     *
+     * @param enabled True to show thumbnails first.
+     */
+    public void setProgressiveLoadingEnabled(boolean enabled) {
+        mProgressiveLoadingEnabled = enabled;
+    }
+
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        if (newState == RecyclerView.SCROLL_STATE_SETTLING) {
+            mFlinging = true;
+            Picasso.with(mContext).pauseTag(mTag);
+            return;
+        }
+
+        if (mFlinging) {
+            mFlinging = false;
+            Picasso.with(mContext).resumeTag(mTag);
+            startDeferredLoads(recyclerView);
+        }
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+            prefetch();
+        }
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        if (dy != 0) {
+            mScrollDirection = dy > 0 ? 1 : -1;
+        }
+    }
+
+    /**
+     * @return The bytes downloaded for posters that were cancelled and not displayed since.
+     */
+    public long getWastedBytes() {
+        long wastedBytes = 0;
+        for (String url : mCancelledURLs) {
+            wastedBytes += PosterDownloader.getDownloadedBytes(url);
+        }
+        return wastedBytes;
+    }
+
+    /**
+     * @return Human readable summary of the scheduled loads (for logging).
+     */
+    public String getStatistics() {
+        return String.format(Locale.US,
+                "Poster requests: %d loaded, %d deferred, %d cancelled, %d prefetched, " +
+                        "%d KB wasted on cancelled posters of %d KB downloaded, " +
+                        "time to first pixel %d ms average (progressive %b)",
+                mLoadCount, mDeferredCount, mCancelledCount, mPrefetchCount,
+                getWastedBytes() / 1024, PosterDownloader.getTotalDownloadedBytes() / 1024,
+                getAverageFirstPixelMillis(), mProgressiveLoadingEnabled);
+    }
+
+    /**
+     * @return Average milliseconds from the start of a load to the first image in the cell, 0 if
+     * nothing was shown yet.
+     */
+    public long getAverageFirstPixelMillis() {
+        return mFirstPixelCount == 0 ? 0 : mFirstPixelMillis / mFirstPixelCount;
+    }
+
+    /**
+     * @return Number of loads deferred until the list stops flinging.
+     */
+    int getDeferredLoadCount() {
+        return mDeferredLoads.size();
+    }
+
+    /**
+     * @return Number of loads started and not displayed yet.
+     */
+    int getPendingLoadCount() {
+        return mPendingLoads.size();
+    }
+
+    /**
+     * @return Number of thumbnails requested for pending loads.
+     */
+    int getThumbnailCount() {
+        return mThumbnails.size();
+    }
+
+    private void start(ImageView target, PosterLoad load, Picasso.Priority priority) {
+        mPendingLoads.put(target, load.mUrl);
+        mLoadCount++;
+        DisplayCallback callback = new DisplayCallback(target, load.mUrl);
+        Picasso.with(mContext)
+                .load(load.mUrl)
+                .tag(mTag)
+                .priority(priority)
+                .placeholder(load.mPlaceholder)
+                .error(load.mPlaceholder)
+                .into(target, callback);
+
+        //Not in the memory cache, show the thumbnail until the poster arrives
+        if (mProgressiveLoadingEnabled && load.mThumbnailUrl != null && !callback.mDone) {
+            ThumbnailTarget thumbnail = new ThumbnailTarget(target, callback);
+            mThumbnails.put(target, thumbnail);
+            Picasso.with(mContext)
+                    .load(load.mThumbnailUrl)
+                    .tag(mTag)
+                    .priority(Picasso.Priority.HIGH)
+                    .into(thumbnail);
+        }
+    }
+
+    private void cancelThumbnail(ImageView target) {
+        ThumbnailTarget thumbnail = mThumbnails.remove(target);
+        if (thumbnail != null) {
+            Picasso.with(mContext).cancelRequest(thumbnail);
+        }
+    }
+
+    /**
+     * Starts the loads deferred while flinging. The loads of visible cells are started first and
+     * with high priority, so they are downloaded before the others.
+     */
+    private void startDeferredLoads(RecyclerView recyclerView) {
+        if (mDeferredLoads.isEmpty()) {
+            return;
+        }
+
+        int firstVisible = mLayoutManager.findFirstVisibleItemPosition();
+        int lastVisible = mLayoutManager.findLastVisibleItemPosition();
+        List<ImageView> otherTargets = new ArrayList<>();
+        Map<ImageView, PosterLoad> deferredLoads = new LinkedHashMap<>(mDeferredLoads);
+        mDeferredLoads.clear();
+
+        for (Map.Entry<ImageView, PosterLoad> entry : deferredLoads.entrySet()) {
+            int position = getAdapterPosition(recyclerView, entry.getKey());
+            if (position != RecyclerView.NO_POSITION &&
+                    position >= firstVisible && position <= lastVisible) {
+                start(entry.getKey(), entry.getValue(), Picasso.Priority.HIGH);
+            } else {
+                otherTargets.add(entry.getKey());
+            }
+        }
+        for (ImageView target : otherTargets) {
+            start(target, deferredLoads.get(target), Picasso.Priority.NORMAL);
+        }
+
+        Log.d(LOG_TAG, "Started " + deferredLoads.size() + " deferred poster loads, " +
+                (deferredLoads.size() - otherTargets.size()) + " visible first.");
+    }
+
+    /**
+     * Prefetches the posters of the next rows in the scroll direction with low priority.
+     */
+    private void prefetch() {
+        int position = mScrollDirection > 0 ?
+                mLayoutManager.findLastVisibleItemPosition() :
+                mLayoutManager.findFirstVisibleItemPosition();
+        if (position == RecyclerView.NO_POSITION || position == mLastPrefetchPosition) {
+            return;
+        }
+        mLastPrefetchPosition = position;
+
+        int count = mPrefetchRows * mLayoutManager.getSpanCount();
+        for (int i = 1; i <= count; i++) {
+            int prefetchPosition = position + i * mScrollDirection;
+            if (prefetchPosition < 0 || prefetchPosition >= mMovieAdapter.getItemCount()) {
+                break;
+            }
+            String url = mMovieAdapter.getPosterURLString(prefetchPosition);
+            if (url != null) {
+                Picasso.with(mContext)
+                        .load(url)
+                        .tag(mTag)
+                        .priority(Picasso.Priority.LOW)
+                        .fetch();
+                mPrefetchCount++;
+            }
+        }
+    }
+
+    /**
+     * @return The adapter position of the cell containing the view, NO_POSITION if the view is
+     * not attached to the RecyclerView.
+     */
+    private static int getAdapterPosition(RecyclerView recyclerView, View view) {
+        ViewParent parent = view.getParent();
+        while (parent instanceof View && parent != recyclerView) {
+            view = (View) parent;
+            parent = view.getParent();
+        }
+        if (parent != recyclerView) {
+            return RecyclerView.NO_POSITION;
+        }
+        return recyclerView.getChildAdapterPosition(view);
+    }
+
+    /**
+     * A poster load of a grid cell.
+     */
+    private static class PosterLoad {
+
+        private final String mUrl;
+        private final String mThumbnailUrl;
+        private final int mPlaceholder;
+
+        PosterLoad(String url, String thumbnailUrl, int placeholder) {
+            this.mUrl = url;
+            this.mThumbnailUrl = thumbnailUrl;
+            this.mPlaceholder = placeholder;
+        }
+    }
+
+    /**
+     * Marks a load as displayed, so its download is not counted as wasted, and measures the
+     * time to its first image.
+     */
+    private class DisplayCallback implements Callback {
+
+        private final ImageView mTarget;
+        private final String mUrl;
+        private final long mStartMillis = SystemClock.uptimeMillis();
+
+        private boolean mDone;
+        private boolean mFirstPixelShown;
+
+        DisplayCallback(ImageView target, String url) {
+            this.mTarget = target;
+            this.mUrl = url;
+        }
+
+        @Override
+        public void onSuccess() {
+            onFirstPixel();
+            onDone();
+            mCancelledURLs.remove(mUrl);
+        }
+
+        @Override
+        public void onError() {
+            onDone();
+        }
+
+        void onFirstPixel() {
+            if (!mFirstPixelShown) {
+                mFirstPixelShown = true;
+                mFirstPixelCount++;
+                mFirstPixelMillis += SystemClock.uptimeMillis() - mStartMillis;
+            }
+        }
+
+        private void onDone() {
+            mDone = true;
+            if (mUrl.equals(mPendingLoads.get(mTarget))) {
+                mPendingLoads.remove(mTarget);
+                cancelThumbnail(mTarget);
+            }
+        }
+    }
+
+    /**
+     * Shows the thumbnail in the cell while its poster is still loading.
+     */
+    private class ThumbnailTarget implements Target {
+
+        private final ImageView mTarget;
+        private final DisplayCallback mPosterCallback;
+
+        ThumbnailTarget(ImageView target, DisplayCallback posterCallback) {
+            this.mTarget = target;
+            this.mPosterCallback = posterCallback;
+        }
+
+        @Override
+        public void onBitmapLoaded(Bitmap bitmap, Picasso.LoadedFrom from) {
+            if (mThumbnails.get(mTarget) != this || mPosterCallback.mDone) {
+                return;
+            }
+            mThumbnails.remove(mTarget);
+            //Picasso fades from the thumbnail to the poster
+            mTarget.setImageBitmap(bitmap);
+            mPosterCallback.onFirstPixel();
+        }
+
+        @Override
+        public void onBitmapFailed(Drawable errorDrawable) {
+            if (mThumbnails.get(mTarget) == this) {
+                mThumbnails.remove(mTarget);
+            }
+        }
+
+        @Override
+        public void onPrepareLoad(Drawable placeHolderDrawable) {
+        }
+    }
+}
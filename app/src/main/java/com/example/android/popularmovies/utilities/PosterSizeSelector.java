@@ -0,0 +1,396 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.example.android.popularmovies.utilities;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.AsyncTask;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.example.android.popularmovies.models.ImageConfiguration;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks the poster size of the movie grid by the cell size and the network quality.
+ * <p>
+ * The image base URL and the poster sizes are taken from the TMDb configuration, which is
+ * fetched in the background, kept in the shared preferences and refreshed every few days.
+ * The throughput is estimated from the recent poster downloads of the {@link PosterDownloader}.
+ * <p>
+ * The smallest poster size at least as wide as the cell is selected. On a metered or slow
+ * network one size smaller is used instead, on a fast network one size larger. A network stays
+ * slow or fast until the estimate is well past the threshold again, so small changes of the
+ * estimate do not flip the size (and miss the caches). Use {@link #getStatistics()} to check the
+ * decisions and the throughput estimate.
+ */
+public final class PosterSizeSelector {
+
+    private static final String LOG_TAG = PosterSizeSelector.class.getSimpleName();
+
+
+    //Configuration kept in the shared preferences
+    private static final String PREFERENCES_NAME = "image_configuration";
+    private static final String KEY_BASE_URL = "base_url";
+    private static final String KEY_POSTER_SIZES = "poster_sizes";
+    private static final String KEY_FETCHED_AT = "fetched_at";
+    private static final String SIZE_SEPARATOR = ",";
+
+    //TMDb recommends to refresh the configuration every few days
+    private static final long CONFIGURATION_MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(3);
+
+    //Width sizes are named like "w185", others like "original" are not selected
+    private static final String WIDTH_SIZE_PREFIX = "w";
+
+    //Throughput below which posters are one size smaller, above which one size larger
+    private static final long SLOW_BYTES_PER_SECOND = 100 * 1024;
+    private static final long FAST_BYTES_PER_SECOND = 1024 * 1024;
+
+    //A slow network is normal again above SLOW * factor, a fast one below FAST / factor
+    private static final double HYSTERESIS_FACTOR = 1.5;
+
+    private static final int NETWORK_SLOW = -1;
+    private static final int NETWORK_NORMAL = 0;
+    private static final int NETWORK_FAST = 1;
+
+    //Weight of the latest download in the throughput estimate
+    private static final double THROUGHPUT_WEIGHT = 0.3;
+
+
+    private static SharedPreferences sPreferences;
+
+    private static volatile String sBaseUrl = NetworkUtils.IMDB_IMAGE_BASE_URL;
+    private static volatile int[] sPosterWidths = {92, 185};
+
+    private static final Object sThroughputLock = new Object();
+    private static double sBytesPerSecond;
+    private static int sDownloadCount;
+    private static int sNetworkSpeed = NETWORK_NORMAL;
+
+    //Use the w185 posters instead (for comparison)
+    private static boolean sAdaptiveEnabled = true;
+
+    private static String sLastSize;
+    private static String sLastDecision = "none";
+
+
+    private PosterSizeSelector() {
+    }
+
+    /**
+     * Reads the stored configuration and fetches it again in the background if it is missing or
+     * old, now or once the device is online. Should be called once, usually in
+     * {@link android.app.Application#onCreate()}.
+     *
+     * @param context Any context, the application context is used.
+     */
+    public static synchronized void init(Context context) {
+        if (sPreferences != null) {
+            return;
+        }
+        sPreferences = context.getApplicationContext()
+                .getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+
+        String baseUrl = sPreferences.getString(KEY_BASE_URL, null);
+        String posterSizes = sPreferences.getString(KEY_POSTER_SIZES, null);
+        if (baseUrl != null && posterSizes != null) {
+            setConfiguration(baseUrl, TextUtils.split(posterSizes, SIZE_SEPARATOR));
+        }
+
+        refreshIfOld();
+        ConnectivityMonitor.addListener(new ConnectivityMonitor.ConnectivityListener() {
+            @Override
+            public void onReconnected() {
+                refreshIfOld();
+            }
+        });
+    }
+
+    /**
+     * @return The image base URL of the TMDb configuration, the default until it was fetched.
+     */
+    public static String getImageBaseUrl() {
+        return sBaseUrl;
+    }
+
+    /**
+     * Selects the poster size for a grid cell. Must be called on the main thread.
+     *
+     * @param cellWidth The width of the cell in pixels, 0 if not known.
+     * @return The poster size, e.g. "w185".
+     */
+    public static String selectPosterSize(int cellWidth) {
+        if (!sAdaptiveEnabled || cellWidth <= 0) {
+            return NetworkUtils.IMDB_IMAGE_W185_SIZE;
+        }
+
+        int[] posterWidths = sPosterWidths;
+        int index = posterWidths.length - 1;
+        for (int i = 0; i < posterWidths.length; i++) {
+            if (posterWidths[i] >= cellWidth) {
+                index = i;
+                break;
+            }
+        }
+
+        long bytesPerSecond = getBytesPerSecond();
+        int networkSpeed = updateNetworkSpeed(bytesPerSecond);
+        String reason = "fills cell";
+        if (ConnectivityMonitor.isMetered()) {
+            index = Math.max(0, index - 1);
+            reason = "metered network";
+        } else if (networkSpeed == NETWORK_SLOW) {
+            index = Math.max(0, index - 1);
+            reason = "slow network";
+        } else if (networkSpeed == NETWORK_FAST) {
+            index = Math.min(posterWidths.length - 1, index + 1);
+            reason = "fast network";
+        }
+
+        String size = WIDTH_SIZE_PREFIX + posterWidths[index];
+        sLastDecision = String.format(Locale.US, "%s for %d px cells (%s, %d KB/s)",
+                size, cellWidth, reason, bytesPerSecond / 1024);
+        if (!size.equals(sLastSize)) {
+            sLastSize = size;
+            Log.d(LOG_TAG, "Selected " + sLastDecision);
+        }
+        return size;
+    }
+
+    /**
+     * @param posterSize A poster size, e.g. "w185".
+     * @return The poster sizes that can stand in for the size, e.g. when a cached poster is
+     * copied: the size itself, then the larger sizes from small to large, then the smaller sizes
+     * from large to small.
+     */
+    public static List<String> getSubstituteSizes(String posterSize) {
+        List<String> sizes = new ArrayList<>();
+        sizes.add(posterSize);
+
+        int width = parseWidth(posterSize);
+        if (width <= 0) {
+            return sizes;
+        }
+        int[] posterWidths = sPosterWidths;
+        for (int posterWidth : posterWidths) {
+            if (posterWidth > width) {
+                sizes.add(WIDTH_SIZE_PREFIX + posterWidth);
+            }
+        }
+        for (int i = posterWidths.length - 1; i >= 0; i--) {
+            if (posterWidths[i] < width) {
+                sizes.add(WIDTH_SIZE_PREFIX + posterWidths[i]);
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * @param posterSize The selected poster size.
+     * @return The smallest poster size, to show until the selected one is loaded. Null if the
+     * selected size is the smallest.
+     */
+    public static String getThumbnailSize(String posterSize) {
+        String thumbnailSize = WIDTH_SIZE_PREFIX + sPosterWidths[0];
+        return thumbnailSize.equals(posterSize) ? null : thumbnailSize;
+    }
+
+    /**
+     * Adds a poster download to the throughput estimate. The time includes the latency, which
+     * dominates small downloads.
+     *
+     * @param bytes  The downloaded bytes.
+     * @param millis Milliseconds of the transfer, from the request to the response headers plus
+     *               the time spent reading the body.
+     */
+    static void onDownloadFinished(long bytes, long millis) {
+        double bytesPerSecond = bytes * 1000.0 / Math.max(1, millis);
+        synchronized (sThroughputLock) {
+            sBytesPerSecond = sDownloadCount == 0 ? bytesPerSecond :
+                    THROUGHPUT_WEIGHT * bytesPerSecond + (1 - THROUGHPUT_WEIGHT) * sBytesPerSecond;
+            sDownloadCount++;
+        }
+    }
+
+    /**
+     * @return The estimated throughput of the poster downloads, 0 if there was none yet.
+     */
+    public static long getBytesPerSecond() {
+        synchronized (sThroughputLock) {
+            return (long) sBytesPerSecond;
+        }
+    }
+
+    /**
+     * @return Number of downloads in the throughput estimate.
+     */
+    public static int getDownloadCount() {
+        synchronized (sThroughputLock) {
+            return sDownloadCount;
+        }
+    }
+
+    /**
+     * Forgets the throughput of the previous downloads.
+     */
+    static void resetThroughput() {
+        synchronized (sThroughputLock) {
+            sBytesPerSecond = 0;
+            sDownloadCount = 0;
+            sNetworkSpeed = NETWORK_NORMAL;
+        }
+    }
+
+    /**
+     * Switches between selecting the poster size adaptively and always using w185.
+     *
+     * @param enabled True to select the poster size adaptively.
+     */
+    public static void setAdaptiveEnabled(boolean enabled) {
+        sAdaptiveEnabled = enabled;
+    }
+
+    /**
+     * @return Human readable summary of the configuration and decisions (for logging).
+     */
+    public static String getStatistics() {
+        return String.format(Locale.US,
+                "Poster sizes: %s at %s, throughput %d KB/s of %d downloads, metered %b, " +
+                        "last decision: %s",
+                Arrays.toString(sPosterWidths), sBaseUrl, getBytesPerSecond() / 1024,
+                getDownloadCount(), ConnectivityMonitor.isMetered(), sLastDecision);
+    }
+
+    /**
+     * Keeps the base URL and the width sizes of the configuration, in ascending order.
+     */
+    static void setConfiguration(String baseUrl, String[] posterSizes) {
+        List<Integer> widths = new ArrayList<>();
+        for (String posterSize : posterSizes) {
+            int width = parseWidth(posterSize);
+            if (width > 0) {
+                widths.add(width);
+            }
+        }
+        if (widths.isEmpty() || TextUtils.isEmpty(baseUrl)) {
+            Log.w(LOG_TAG, "Configuration without poster sizes ignored.");
+            return;
+        }
+
+        int[] posterWidths = new int[widths.size()];
+        for (int i = 0; i < posterWidths.length; i++) {
+            posterWidths[i] = widths.get(i);
+        }
+        Arrays.sort(posterWidths);
+
+        sBaseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        sPosterWidths = posterWidths;
+    }
+
+    /**
+     * @return The width of a width size like "w185", 0 for other sizes like "original".
+     */
+    private static int parseWidth(String posterSize) {
+        if (!posterSize.startsWith(WIDTH_SIZE_PREFIX)) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(posterSize.substring(WIDTH_SIZE_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            Log.w(LOG_TAG, "Unknown poster size " + posterSize);
+            return 0;
+        }
+    }
+
+    /**
+     * Classifies the network as slow, normal or fast. Leaving slow or fast needs the estimate to
+     * be past the threshold by the hysteresis factor.
+     */
+    private static int updateNetworkSpeed(long bytesPerSecond) {
+        synchronized (sThroughputLock) {
+            if (sDownloadCount == 0) {
+                return NETWORK_NORMAL;
+            }
+            if (sNetworkSpeed == NETWORK_SLOW &&
+                    bytesPerSecond > SLOW_BYTES_PER_SECOND * HYSTERESIS_FACTOR) {
+                sNetworkSpeed = NETWORK_NORMAL;
+            } else if (sNetworkSpeed == NETWORK_FAST &&
+                    bytesPerSecond < FAST_BYTES_PER_SECOND / HYSTERESIS_FACTOR) {
+                sNetworkSpeed = NETWORK_NORMAL;
+            }
+            if (sNetworkSpeed == NETWORK_NORMAL) {
+                if (bytesPerSecond < SLOW_BYTES_PER_SECOND) {
+                    sNetworkSpeed = NETWORK_SLOW;
+                } else if (bytesPerSecond > FAST_BYTES_PER_SECOND) {
+                    sNetworkSpeed = NETWORK_FAST;
+                }
+            }
+            return sNetworkSpeed;
+        }
+    }
+
+    private static void refreshIfOld() {
+        long age = System.currentTimeMillis() - sPreferences.getLong(KEY_FETCHED_AT, 0);
+        if (age < CONFIGURATION_MAX_AGE_MILLIS || !ConnectivityMonitor.isOnline()) {
+            return;
+        }
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                fetchConfiguration();
+            }
+        });
+    }
+
+    private static void fetchConfiguration() {
+        ImageConfiguration configuration;
+        try {
+            String response = NetworkUtils.getResponseFromHttpUrl(
+                    NetworkUtils.buildConfigurationURL());
+            if (response == null) {
+                Log.w(LOG_TAG, "Empty configuration response.");
+                return;
+            }
+            configuration = TMDbJsonUtils.getImageConfigurationFromJson(response);
+        } catch (IOException | JSONException e) {
+            Log.w(LOG_TAG, "Configuration could not be fetched.", e);
+            return;
+        }
+
+        setConfiguration(configuration.getBaseUrl(), configuration.getPosterSizes());
+        sPreferences.edit()
+                .putString(KEY_BASE_URL, configuration.getBaseUrl())
+                .putString(KEY_POSTER_SIZES,
+                        TextUtils.join(SIZE_SEPARATOR, configuration.getPosterSizes()))
+                .putLong(KEY_FETCHED_AT, System.currentTimeMillis())
+                .apply();
+        Log.d(LOG_TAG, "Configuration fetched. " + getStatistics());
+    }
+}
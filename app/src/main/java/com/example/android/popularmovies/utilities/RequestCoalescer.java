@@ -0,0 +1,123 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.example.android.popularmovies.utilities;
+
+import android.util.Log;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coalesces concurrent identical requests (single flight). The first caller of a key executes
+ * the request, callers arriving while it is in flight wait for it and share its result, or its
+ * exception. Once the request completed the next caller executes it again.
+ *
+ * @param <T> The type of the (parsed) result shared by the callers.
+ */
+public class RequestCoalescer<T> {
+
+    private static final String LOG_TAG = RequestCoalescer.class.getSimpleName();
+
+
+    private final Map<String, FutureTask<T>> mInFlight = new HashMap<>();
+
+    private final AtomicInteger mExecutedCount = new AtomicInteger();
+    private final AtomicInteger mCollapsedCount = new AtomicInteger();
+
+    /**
+     * Executes the request, or waits for the identical request in flight.
+     *
+     * @param key     Identifies identical requests, e.g. the URL.
+     * @param request Performs the request and parses the result.
+     * @return The result of the request.
+     * @throws IOException   Related to network and stream reading
+     * @throws JSONException Related to Json parsing
+     */
+    public T execute(String key, Callable<T> request) throws IOException, JSONException {
+
+        FutureTask<T> task;
+        boolean isOwner = false;
+
+        synchronized (mInFlight) {
+            task = mInFlight.get(key);
+            if (task == null) {
+                task = new FutureTask<>(request);
+                mInFlight.put(key, task);
+                isOwner = true;
+            }
+        }
+
+        if (isOwner) {
+            mExecutedCount.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                synchronized (mInFlight) {
+                    mInFlight.remove(key);
+                }
+            }
+        } else {
+            mCollapsedCount.incrementAndGet();
+            Log.d(LOG_TAG, "Request collapsed: " + key);
+        }
+
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + key);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof JSONException) {
+                throw (JSONException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new RuntimeException(cause);
+            }
+        }
+    }
+
+    /**
+     * @return Number of requests actually executed.
+     */
+    public int getExecutedCount() {
+        return mExecutedCount.get();
+    }
+
+    /**
+     * @return Number of requests that shared the result of a request in flight.
+     */
+    public int getCollapsedCount() {
+        return mCollapsedCount.get();
+    }
+}
@@ -21,9 +21,13 @@
 
 package com.example.android.popularmovies.utilities;
 
+import android.util.JsonReader;
+import android.util.JsonToken;
 import android.util.Log;
 
+import com.example.android.popularmovies.models.ImageConfiguration;
 import com.example.android.popularmovies.models.Movie;
+import com.example.android.popularmovies.models.MoviePage;
 import com.example.android.popularmovies.models.Review;
 import com.example.android.popularmovies.models.Trailer;
 
@@ -31,13 +35,51 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Utility class to convert Json strings into a Movie object or array.
+ * <p>
+ * The read...FromStream methods parse the Json directly from an InputStream with a pull parser
+ * ({@link JsonReader}) and fill the Movie, Trailer and Review objects without building a String
+ * or a JSONObject tree first. The get...FromJson methods are kept as fallback.
  */
 public final class TMDbJsonUtils {
 
     private static final String LOG_TAG = TMDbJsonUtils.class.getSimpleName();
 
+    private static final String CHARSET_NAME = "UTF-8";
+
+    //Json names used by the stream parser
+    private static final String TMDB_RESULTS = "results";
+    private static final String TMDB_PAGE = "page";
+    private static final String TMDB_TOTAL_PAGES = "total_pages";
+    private static final String TMDB_VIDEOS = "videos";
+    private static final String TMDB_REVIEWS = "reviews";
+
+    private static final String TMDB_MOVIE_ID = "id";
+    private static final String TMDB_MOVIE_POSTER_PATH = "poster_path";
+    private static final String TMDB_MOVIE_OVERVIEW = "overview";
+    private static final String TMDB_MOVIE_RELEASE_DATE = "release_date";
+    private static final String TMDB_MOVIE_TITLE = "title";
+    private static final String TMDB_MOVIE_RUNTIME = "runtime";
+    private static final String TMDB_MOVIE_VOTE_AVERAGE = "vote_average";
+
+    private static final String TMDB_VIDEO_ID = "id";
+    private static final String TMDB_VIDEO_KEY = "key";
+    private static final String TMDB_VIDEO_NAME = "name";
+    private static final String TMDB_VIDEO_SITE = "site";
+    private static final String TMDB_VIDEO_TYPE = "type";
+
+    private static final String TMDB_REVIEW_ID = "id";
+    private static final String TMDB_REVIEW_AUTHOR = "author";
+    private static final String TMDB_REVIEW_CONTENT = "content";
+    private static final String TMDB_REVIEW_URL = "url";
+
 
     /**
      * Helper function to transform Json result into Movie[] array.
@@ -47,6 +89,18 @@ public final class TMDbJsonUtils {
      * @throws JSONException Generic Json exception.
      */
     public static Movie[] getMoviesFromJson(String jsonString) throws JSONException {
+        return getMoviePageFromJson(jsonString).getMovies();
+    }
+
+    /**
+     * Helper function to transform Json result into a page of movies.
+     *
+     * @param jsonString Json string as returned by the TMDb list queries.
+     * @return MoviePage containing all movies from Json string, the page number and the total
+     * number of pages. Both numbers are 0 if missing.
+     * @throws JSONException Generic Json exception.
+     */
+    public static MoviePage getMoviePageFromJson(String jsonString) throws JSONException {
 
         final String TMDB_MOVIE_ID = "id";
         final String TMDB_POSTER_PATH = "poster_path";
@@ -87,7 +141,8 @@ public final class TMDbJsonUtils {
 
         Log.d(LOG_TAG, "Movie array created with " + parsedMovies.length + " movies.");
 
-        return parsedMovies;
+        return new MoviePage(parsedMovies, moviesJson.optInt(TMDB_PAGE),
+                moviesJson.optInt(TMDB_TOTAL_PAGES));
     }
 
     /**
@@ -141,7 +196,8 @@ public final class TMDbJsonUtils {
         movieReleaseDate = movieJson.getString(TMDB_MOVIE_RELEASE_DATE);
         movieTitle = movieJson.getString(TMDB_MOVIE_TITLE);
         movieVoteAverage = movieJson.getDouble(TMDB_MOVIE_VOTE_AVERAGE);
-        movieRuntime = movieJson.getInt(TMDB_MOVIE_RUNTIME);
+        //Runtime is null for some (unreleased) movies
+        movieRuntime = movieJson.optInt(TMDB_MOVIE_RUNTIME);
 
 //        movie = new Movie(
 //                movieID, moviePosterPath, movieOverview, movieReleaseDate,
@@ -193,8 +249,324 @@ public final class TMDbJsonUtils {
         }
         movie.setReviewArray(reviewArray);
 
-        Log.d(LOG_TAG, "Movie object + " + movie.getMovieID() + " created.");
+        Log.d(LOG_TAG, "Movie object " + movie.getMovieID() + " created.");
+
+        return movie;
+    }
+
+    /**
+     * Helper function to transform the Json result of the configuration query into the image
+     * configuration.
+     *
+     * @param jsonString Json string as returned by the TMDb configuration query.
+     * @return The image base URL and poster sizes.
+     * @throws JSONException Generic Json exception.
+     */
+    public static ImageConfiguration getImageConfigurationFromJson(String jsonString)
+            throws JSONException {
+
+        final String TMDB_IMAGES = "images";
+        final String TMDB_BASE_URL = "base_url";
+        final String TMDB_POSTER_SIZES = "poster_sizes";
+
+        JSONObject imagesJson = new JSONObject(jsonString).getJSONObject(TMDB_IMAGES);
+        JSONArray posterSizesJsonArray = imagesJson.getJSONArray(TMDB_POSTER_SIZES);
+
+        String[] posterSizes = new String[posterSizesJsonArray.length()];
+        for (int i = 0; i < posterSizesJsonArray.length(); i++) {
+            posterSizes[i] = posterSizesJsonArray.getString(i);
+        }
+
+        return new ImageConfiguration(imagesJson.getString(TMDB_BASE_URL), posterSizes);
+    }
+
+    /**
+     * Streaming counterpart of {@link #getMoviesFromJson(String)}.
+     *
+     * @param in Json stream as returned by the TMDb queries. It is closed afterwards.
+     * @return Movie[] array containing all movies from Json stream
+     * @throws IOException Related to stream reading or if the Json is malformed.
+     */
+    public static Movie[] readMoviesFromStream(InputStream in) throws IOException {
+        return readMoviePageFromStream(in).getMovies();
+    }
+
+    /**
+     * Streaming counterpart of {@link #getMoviePageFromJson(String)}.
+     *
+     * @param in Json stream as returned by the TMDb list queries. It is closed afterwards.
+     * @return MoviePage containing all movies from Json stream, the page number and the total
+     * number of pages. Both numbers are 0 if missing.
+     * @throws IOException Related to stream reading or if the Json is malformed.
+     */
+    public static MoviePage readMoviePageFromStream(InputStream in) throws IOException {
+
+        JsonReader reader = new JsonReader(new InputStreamReader(in, CHARSET_NAME));
+        List<Movie> movieList = new ArrayList<>();
+        int page = 0;
+        int totalPages = 0;
+
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case TMDB_RESULTS:
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            movieList.add(readMovie(reader));
+                        }
+                        reader.endArray();
+                        break;
+                    case TMDB_PAGE:
+                        page = reader.nextInt();
+                        break;
+                    case TMDB_TOTAL_PAGES:
+                        totalPages = reader.nextInt();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException e) {
+            throw new IOException("Unexpected Json structure", e);
+        } finally {
+            reader.close();
+        }
+
+        Movie[] parsedMovies = movieList.toArray(new Movie[movieList.size()]);
+
+        Log.d(LOG_TAG, "Movie array streamed with " + parsedMovies.length + " movies.");
+
+        return new MoviePage(parsedMovies, page, totalPages);
+    }
+
+    /**
+     * Streaming counterpart of {@link #getMovieFromJson(String, Movie)}.
+     *
+     * @param in    Json stream as returned by the TMDb queries. It is closed afterwards.
+     * @param movie Existing movie object might be enhanced with data.
+     * @return Movie object containing details, trailers and reviews.
+     * @throws IOException Related to stream reading or if the Json is malformed.
+     */
+    public static Movie readMovieFromStream(InputStream in, Movie movie) throws IOException {
+
+        JsonReader reader = new JsonReader(new InputStreamReader(in, CHARSET_NAME));
+
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case TMDB_MOVIE_OVERVIEW:
+                        movie.setOverview(nextString(reader));
+                        break;
+                    case TMDB_MOVIE_RELEASE_DATE:
+                        movie.setReleaseDate(nextString(reader));
+                        break;
+                    case TMDB_MOVIE_TITLE:
+                        movie.setTitle(nextString(reader));
+                        break;
+                    case TMDB_MOVIE_RUNTIME:
+                        //Runtime is null for some (unreleased) movies
+                        if (reader.peek() == JsonToken.NULL) {
+                            reader.nextNull();
+                        } else {
+                            movie.setRuntime(reader.nextInt());
+                        }
+                        break;
+                    case TMDB_MOVIE_VOTE_AVERAGE:
+                        movie.setVoteAverage(reader.nextDouble());
+                        break;
+                    case TMDB_VIDEOS:
+                        movie.setTrailerArray(readTrailers(reader));
+                        break;
+                    case TMDB_REVIEWS:
+                        movie.setReviewArray(readReviews(reader));
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException e) {
+            throw new IOException("Unexpected Json structure", e);
+        } finally {
+            reader.close();
+        }
+
+        Log.d(LOG_TAG, "Movie object " + movie.getMovieID() + " streamed.");
 
         return movie;
     }
+
+    /**
+     * Reads a movie of a movie list.
+     *
+     * @param reader Reader positioned at the movie object.
+     * @return The movie.
+     * @throws IOException Related to stream reading.
+     */
+    private static Movie readMovie(JsonReader reader) throws IOException {
+
+        int movieID = 0;
+        String posterPath = null;
+        String overview = null;
+        String releaseDate = null;
+        String title = null;
+        double voteAverage = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case TMDB_MOVIE_ID:
+                    movieID = reader.nextInt();
+                    break;
+                case TMDB_MOVIE_POSTER_PATH:
+                    posterPath = nextString(reader);
+                    break;
+                case TMDB_MOVIE_OVERVIEW:
+                    overview = nextString(reader);
+                    break;
+                case TMDB_MOVIE_RELEASE_DATE:
+                    releaseDate = nextString(reader);
+                    break;
+                case TMDB_MOVIE_TITLE:
+                    title = nextString(reader);
+                    break;
+                case TMDB_MOVIE_VOTE_AVERAGE:
+                    voteAverage = reader.nextDouble();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new Movie(movieID, posterPath, overview, releaseDate,
+                title, 0, voteAverage, null, null, 0);
+    }
+
+    /**
+     * Reads the results of the appended videos.
+     *
+     * @param reader Reader positioned at the videos object.
+     * @return The trailers.
+     * @throws IOException Related to stream reading.
+     */
+    private static Trailer[] readTrailers(JsonReader reader) throws IOException {
+
+        List<Trailer> trailerList = new ArrayList<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (TMDB_RESULTS.equals(reader.nextName())) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    String trailerID = null, trailerKey = null, trailerName = null,
+                            trailerSite = null, trailerType = null;
+
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case TMDB_VIDEO_ID:
+                                trailerID = nextString(reader);
+                                break;
+                            case TMDB_VIDEO_KEY:
+                                trailerKey = nextString(reader);
+                                break;
+                            case TMDB_VIDEO_NAME:
+                                trailerName = nextString(reader);
+                                break;
+                            case TMDB_VIDEO_SITE:
+                                trailerSite = nextString(reader);
+                                break;
+                            case TMDB_VIDEO_TYPE:
+                                trailerType = nextString(reader);
+                                break;
+                            default:
+                                reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+
+                    trailerList.add(new Trailer(
+                            trailerID, trailerKey, trailerName, trailerType, trailerSite
+                    ));
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return trailerList.toArray(new Trailer[trailerList.size()]);
+    }
+
+    /**
+     * Reads the results of the appended reviews.
+     *
+     * @param reader Reader positioned at the reviews object.
+     * @return The reviews.
+     * @throws IOException Related to stream reading.
+     */
+    private static Review[] readReviews(JsonReader reader) throws IOException {
+
+        List<Review> reviewList = new ArrayList<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (TMDB_RESULTS.equals(reader.nextName())) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    String reviewID = null, author = null, content = null, reviewURL = null;
+
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case TMDB_REVIEW_ID:
+                                reviewID = nextString(reader);
+                                break;
+                            case TMDB_REVIEW_AUTHOR:
+                                author = nextString(reader);
+                                break;
+                            case TMDB_REVIEW_CONTENT:
+                                content = nextString(reader);
+                                break;
+                            case TMDB_REVIEW_URL:
+                                reviewURL = nextString(reader);
+                                break;
+                            default:
+                                reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+
+                    reviewList.add(new Review(reviewID, author, content, reviewURL));
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return reviewList.toArray(new Review[reviewList.size()]);
+    }
+
+    /**
+     * Reads a string value. A Json null is read as "null", like JSONObject.getString does, so
+     * both parsers produce the same movies.
+     *
+     * @param reader Reader positioned at the value.
+     * @return The string value.
+     * @throws IOException Related to stream reading.
+     */
+    private static String nextString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return String.valueOf((Object) null);
+        }
+        return reader.nextString();
+    }
 }
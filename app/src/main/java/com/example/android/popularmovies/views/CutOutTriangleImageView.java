@@ -0,0 +1,98 @@
+/*
+  MIT License
+
+  Copyright (c) 2017 Elyasin Shaladi
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+  associated documentation files (the "Software"), to deal in the Software without restriction,
+  including without limitation the rights to use, copy, modify, merge, publish, distribute,
+  sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all copies or
+  substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+  NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+  DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.example.android.popularmovies.views;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.support.v7.widget.AppCompatImageView;
+import android.util.AttributeSet;
+
+import com.example.android.popularmovies.transform.CutOutTriangleTransform;
+
+/**
+ * ImageView that cuts out a triangle from the upper left corner of its image, like
+ * {@link CutOutTriangleTransform}, by painting the corner white over the image while drawing.
+ * The image itself is not modified, so no transformed copy of the poster bitmap is needed and
+ * the decoded poster can be shared with the poster cache.
+ * <p>
+ * The corner is drawn with an anti-aliased paint, so the diagonal edge is as smooth as the one
+ * of the transformation. Drawing a path is hardware accelerated on all API levels, unlike
+ * clipping to it.
+ */
+public class CutOutTriangleImageView extends AppCompatImageView {
+
+    private final Path mCornerPath = new Path();
+    private final RectF mImageBounds = new RectF();
+    private final Paint mCornerPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+
+    public CutOutTriangleImageView(Context context) {
+        this(context, null);
+    }
+
+    public CutOutTriangleImageView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public CutOutTriangleImageView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        mCornerPaint.setColor(Color.WHITE);
+        mCornerPaint.setStyle(Paint.Style.FILL);
+    }
+
+    /**
+     * Draws the image and paints its upper left corner white.
+     *
+     * @param canvas The canvas of the view.
+     */
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+
+        Drawable drawable = getDrawable();
+        if (drawable == null || drawable.getBounds().isEmpty()) {
+            return;
+        }
+
+        //The image as drawn in the view, after scaling and padding
+        mImageBounds.set(drawable.getBounds());
+        getImageMatrix().mapRect(mImageBounds);
+        mImageBounds.offset(getPaddingLeft(), getPaddingTop());
+
+        float left = mImageBounds.left;
+        float top = mImageBounds.top;
+        float corner = mImageBounds.width() / 2;
+
+        mCornerPath.rewind();
+        mCornerPath.moveTo(left, top);
+        mCornerPath.lineTo(left + corner, top);
+        mCornerPath.lineTo(left, top + corner);
+        mCornerPath.close();
+
+        canvas.drawPath(mCornerPath, mCornerPaint);
+    }
+}